@@ -64,9 +64,26 @@ public class MultiplicitySectionsBuilder {
             multSections.put(mult, new ArrayList<>());
         }
         // set the mult. sections 
+        this.addMultiplicitySections(spectrum, 0, multSections);
+
+        return multSections;
+    }
+
+    /**
+     * Adds the mult. sections of all signals from a given signal index on to
+     * already built mult. sections, e.g. for signals which were appended to a
+     * spectrum after the mult. sections were built.
+     *
+     * @param spectrum spectrum
+     * @param fromSignalIndex index of the first signal to add
+     * @param multSections mult. sections to add to, as built by
+     * {@link #getMultiplicitySections(Spectrum)}
+     * @throws CDKException
+     */
+    public void addMultiplicitySections(final Spectrum spectrum, final int fromSignalIndex, final HashMap<String, ArrayList<Integer>> multSections) throws CDKException {
         Signal signal;
         int shiftSection;
-        for (int i = 0; i < spectrum.getSignalCount(); i++) {
+        for (int i = fromSignalIndex; i < spectrum.getSignalCount(); i++) {
             signal = spectrum.getSignal(i);
             if ((signal == null) || (signal.getShift(0) == null)
                     || (signal.getMultiplicity() == null)
@@ -77,8 +94,6 @@ public class MultiplicitySectionsBuilder {
             shiftSection = (int) ((signal.getShift(0) - this.minLimit) / this.stepSize);
             multSections.get(signal.getMultiplicity()).add(shiftSection);
         }
-
-        return multSections;
     }
     
     public HashSet<String> getMultiplicities(){
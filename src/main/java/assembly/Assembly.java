@@ -11,17 +11,18 @@
  */
 package assembly;
 
+import assembly.strategy.AssemblyStrategy;
 import casekit.NMR.Utils;
-import casekit.NMR.match.Matcher;
-import casekit.NMR.model.Assignment;
 import casekit.NMR.model.Signal;
 import casekit.NMR.model.Spectrum;
 import hose.HOSECodeBuilder;
 import hose.model.ConnectionTree;
 import hose.model.ConnectionTreeNode;
+import logging.Log;
 import match.Match;
 import model.SSC;
 import model.SSCLibrary;
+import model.StructureHash;
 import org.openscience.cdk.aromaticity.Kekulization;
 import org.openscience.cdk.exception.CDKException;
 import org.openscience.cdk.interfaces.IAtom;
@@ -33,13 +34,9 @@ import org.openscience.cdk.smiles.SmiFlavor;
 import org.openscience.cdk.smiles.SmilesGenerator;
 import start.Start;
 
-import java.io.BufferedWriter;
-import java.io.FileWriter;
+import java.io.IOException;
 import java.util.*;
 import java.util.Map.Entry;
-import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
 
 /**
  *
@@ -48,16 +45,67 @@ import java.util.concurrent.ExecutorService;
 public class Assembly {  
 
 
-    private static HashMap<Integer, ArrayList<Integer[]>> getOverlapsHOSECodeNew(final SSC ssc1, final SSC ssc2, final int minMatchingSphereCount, final double shiftTol){
+    /**
+     * Returns all atom pairs of two SSCs which match in at least the minimum
+     * number of spheres, grouped by their maximum matching sphere. <br>
+     * Candidate atom pairs are found via a hash join on the HOSE codes at
+     * the minimum matching sphere; only for those, the further spheres and
+     * multiplicities are compared. The HOSE codes and connection trees per
+     * sphere are cached in the SSCs. <br>
+     * Only one atom pair per pair of symmetry classes is returned, see
+     * {@link SSC#getSymmetryClasses()}.
+     *
+     * @param ssc1
+     * @param ssc2
+     * @param minMatchingSphereCount
+     * @param shiftTol
+     * @param assemblyStatistics statistics to count the tested atom pairs in
+     * @return
+     *
+     * @see Match#getMaximumMatchingSphereHOSECode(model.SSC, model.SSC, int, int, double)
+     */
+    private static HashMap<Integer, ArrayList<Integer[]>> getOverlapsHOSECodeNew(final SSC ssc1, final SSC ssc2, final int minMatchingSphereCount, final double shiftTol,
+                                                                                 final AssemblyStatistics assemblyStatistics){
         final HashMap<Integer, ArrayList<Integer[]>> overlapsInSpheres = new HashMap<>();
+        final int joinSphere = Integer.max(0, minMatchingSphereCount);
+        if(joinSphere > Integer.min(ssc1.getMaxSphere(), ssc2.getMaxSphere())){
+            return overlapsInSpheres;
+        }
+        // hash the atoms of SSC2 by their HOSE codes in join sphere
+        final HashMap<String, ArrayList<Integer>> atomIndicesSSC2 = new HashMap<>();
+        for (int j = 0; j < ssc2.getAtomCount(); j++) {
+            try {
+                atomIndicesSSC2.computeIfAbsent(ssc2.getHOSECode(j, joinSphere), key -> new ArrayList<>()).add(j);
+            } catch (CDKException e) {
+                // atom can not be part of any overlap
+            }
+        }
+        ArrayList<Integer> joinedAtomIndicesSSC2;
         int maxMatchingSphere;
+        // symmetry-equivalent atom pairs lead to the same extensions, so only the first pair of each pair of symmetry classes is tested
+        final long[] symmetryClassesSSC1 = ssc1.getSymmetryClasses();
+        final long[] symmetryClassesSSC2 = ssc2.getSymmetryClasses();
+        final HashMap<Long, HashSet<Long>> testedSymmetryClassesSSC2 = new HashMap<>();
         for (int i = 0; i < ssc1.getAtomCount(); i++) {
-            for (int j = 0; j < ssc2.getAtomCount(); j++) {
+            try {
+                joinedAtomIndicesSSC2 = atomIndicesSSC2.get(ssc1.getHOSECode(i, joinSphere));
+            } catch (CDKException e) {
+                continue;
+            }
+            if(joinedAtomIndicesSSC2 == null){
+                continue;
+            }
+            for (final int j : joinedAtomIndicesSSC2) {
+                if(!testedSymmetryClassesSSC2.computeIfAbsent(symmetryClassesSSC1[i], key -> new HashSet<>()).add(symmetryClassesSSC2[j])){
+                    assemblyStatistics.countPrune(AssemblyStatistics.PruneReason.SYMMETRIC_OVERLAP);
+                    continue;
+                }
                 try {
                     maxMatchingSphere = Match.getMaximumMatchingSphereHOSECode(ssc1, ssc2, i, j, shiftTol);
                 } catch (CDKException e) {
                    maxMatchingSphere = -1;
                 }
+                assemblyStatistics.countTestedOverlapPair(maxMatchingSphere);
                 if(maxMatchingSphere < minMatchingSphereCount){
                     continue;
                 }
@@ -92,9 +140,11 @@ public class Assembly {
                 connectionTreeSSC1 = connectionTrees.get(0);
                 connectionTreeSSC2 = connectionTrees.get(1);
                 maxMatchingSphere = connectionTreeSSC1.getMaxSphere();
-                System.out.println("-> maxMatchingSphere " + maxMatchingSphere + " is valid!!!");
-                System.out.println("conn. tree 1: -> " + connectionTreeSSC1.getMaxSphere() + " -> " + connectionTreeSSC1);
-                System.out.println("conn. tree 2: -> " + connectionTreeSSC2.getMaxSphere() + " -> " + connectionTreeSSC2);
+                if (Log.isEnabled(Log.Subsystem.ASSEMBLY, Log.Level.TRACE)) {
+                    Log.log(Log.Subsystem.ASSEMBLY, Log.Level.TRACE, "-> maxMatchingSphere " + maxMatchingSphere + " is valid!!!");
+                    Log.log(Log.Subsystem.ASSEMBLY, Log.Level.TRACE, "conn. tree 1: -> " + connectionTreeSSC1.getMaxSphere() + " -> " + connectionTreeSSC1);
+                    Log.log(Log.Subsystem.ASSEMBLY, Log.Level.TRACE, "conn. tree 2: -> " + connectionTreeSSC2.getMaxSphere() + " -> " + connectionTreeSSC2);
+                }
                 // count number and calculate deviations of overlapping atoms until max. matching sphere; for ranking later
                 overlappingAtomsCount = 0;
                 final ArrayList<Double> deviations = new ArrayList<>();
@@ -195,10 +245,10 @@ public class Assembly {
         ){
             return connectionTrees;
         }
-        System.out.println("\n-> i: " + atomIndexSSC1 + ", j: " + atomIndexSSC2);
+        Log.trace(Log.Subsystem.ASSEMBLY, () -> "\n-> i: " + atomIndexSSC1 + ", j: " + atomIndexSSC2);
         // check for pure structural identity via HOSE code for each further sphere
         int maxMatchingSphere = Match.getMaximumMatchingSphereHOSECode(ssc1, ssc2, atomIndexSSC1, atomIndexSSC2, shiftTol);
-        System.out.println("-> maxMatchingSphere: " + maxMatchingSphere);
+        Log.trace(Log.Subsystem.ASSEMBLY, () -> "-> maxMatchingSphere: " + maxMatchingSphere);
         // skip non-matching atom pairs
         if (maxMatchingSphere == -1) {
             return connectionTrees;
@@ -365,14 +415,18 @@ public class Assembly {
                 rootMappedAtomIndexSSC2 = entry[1].intValue();
                 connectionTreeSSC1 = HOSECodeBuilder.buildConnectionTree(ssc1.getSubstructure(), rootMappedAtomIndexSSC1, m);
                 connectionTreeSSC2 = HOSECodeBuilder.buildConnectionTree(ssc2.getSubstructure(), rootMappedAtomIndexSSC2, m);
-                System.out.println("rootMappedAtomIndexSSC1: " + rootMappedAtomIndexSSC1 + "\t-> " + connectionTreeSSC1.toString());
-                System.out.println("rootMappedAtomIndexSSC2: " + rootMappedAtomIndexSSC2 + "\t-> " + connectionTreeSSC2.toString());
+                if (Log.isEnabled(Log.Subsystem.ASSEMBLY, Log.Level.TRACE)) {
+                    Log.log(Log.Subsystem.ASSEMBLY, Log.Level.TRACE, "rootMappedAtomIndexSSC1: " + rootMappedAtomIndexSSC1 + "\t-> " + connectionTreeSSC1.toString());
+                    Log.log(Log.Subsystem.ASSEMBLY, Log.Level.TRACE, "rootMappedAtomIndexSSC2: " + rootMappedAtomIndexSSC2 + "\t-> " + connectionTreeSSC2.toString());
+                }
                 nodeKeysSSC1 = new ArrayList<>(connectionTreeSSC1.getKeys(true));
                 nodeKeysSSC2 = new ArrayList<>(connectionTreeSSC2.getKeys(true));
                 for (int k = 0; k < nodeKeysSSC1.size(); k++) {
                     mappedAtomIndexSSC1 = nodeKeysSSC1.get(k);
                     mappedAtomIndexSSC2 = nodeKeysSSC2.get(k);
-                    System.out.println(" -> trying to insert: " + mappedAtomIndexSSC1 + ", " + mappedAtomIndices.get(mappedAtomIndexSSC1));
+                    if (Log.isEnabled(Log.Subsystem.ASSEMBLY, Log.Level.TRACE)) {
+                        Log.log(Log.Subsystem.ASSEMBLY, Log.Level.TRACE, " -> trying to insert: " + mappedAtomIndexSSC1 + ", " + mappedAtomIndices.get(mappedAtomIndexSSC1));
+                    }
                     if (!mappedAtomIndices.containsKey(mappedAtomIndexSSC1)
                             && !mappedAtomIndices.containsValue(mappedAtomIndexSSC2)) {
 
@@ -392,10 +446,12 @@ public class Assembly {
 //                        }
 
                         mappedAtomIndices.put(mappedAtomIndexSSC1, mappedAtomIndexSSC2);
-                        System.out.println(" ---> inserted: " + mappedAtomIndexSSC1 + ", " + mappedAtomIndices.get(mappedAtomIndexSSC1));
+                        if (Log.isEnabled(Log.Subsystem.ASSEMBLY, Log.Level.TRACE)) {
+                            Log.log(Log.Subsystem.ASSEMBLY, Log.Level.TRACE, " ---> inserted: " + mappedAtomIndexSSC1 + ", " + mappedAtomIndices.get(mappedAtomIndexSSC1));
+                        }
                     }
                 }
-                System.out.println();
+                Log.trace(Log.Subsystem.ASSEMBLY, () -> "");
             }
         }
 
@@ -404,49 +460,71 @@ public class Assembly {
     
     public static boolean isValidBondAddition(final IAtomContainer ac, final int atomIndex, final IBond bondToAdd){        
 
-        System.out.println(atomIndex + " --> " + Utils.getBondOrderSum(ac, atomIndex, true) + " + " + Utils.getBondOrderAsNumeric(bondToAdd) + " = " + (Utils.getBondOrderSum(ac, atomIndex, true) + Utils.getBondOrderAsNumeric(bondToAdd)) + " <= " + ac.getAtom(atomIndex).getValency() + " ? -> " + ((Utils.getBondOrderSum(ac, atomIndex, true) + Utils.getBondOrderAsNumeric(bondToAdd)) <= ac.getAtom(atomIndex).getValency()));
+        Log.trace(Log.Subsystem.ASSEMBLY, () -> atomIndex + " --> " + Utils.getBondOrderSum(ac, atomIndex, true) + " + " + Utils.getBondOrderAsNumeric(bondToAdd) + " = " + (Utils.getBondOrderSum(ac, atomIndex, true) + Utils.getBondOrderAsNumeric(bondToAdd)) + " <= " + ac.getAtom(atomIndex).getValency() + " ? -> " + ((Utils.getBondOrderSum(ac, atomIndex, true) + Utils.getBondOrderAsNumeric(bondToAdd)) <= ac.getAtom(atomIndex).getValency()));
         
         return (Utils.getBondOrderSum(ac, atomIndex, true) + Utils.getBondOrderAsNumeric(bondToAdd)) <= ac.getAtom(atomIndex).getValency();
     }
     
+    /**
+     * Checks whether all signals of a subspectrum can be matched to the query
+     * spectrum, regarding the equivalences in query spectrum and the match
+     * factor threshold. For growing subspectra, use a
+     * {@link SubspectrumValidator} directly to match only the added signals.
+     *
+     * @param subspectrum
+     * @param querySpectrum
+     * @param shiftTol
+     * @param thrsMatchFactor
+     * @return
+     */
     public static boolean isValidSubspectrum(final Spectrum subspectrum, final Spectrum querySpectrum, final double shiftTol, final double thrsMatchFactor){
         if((subspectrum == null) || (subspectrum.getSignalCount() > querySpectrum.getSignalCount())){
             return false;
         }
-        final Assignment matchAssignments = Matcher.matchSpectra(subspectrum, querySpectrum, 0, 0, shiftTol);
-        // filter for unset assignments
-        if (!matchAssignments.isFullyAssigned(0)){//matchAssignments.getSetAssignmentsCount(0) < matchAssignments.getAssignmentsCount()) {
-//            System.out.println("-> set assigments not allowed!!!");
-            return false;
-        }
-        // filter for multiple assignments
-        // there might be multiple assignments to same signals, so check for possible symmetry (equivalences)
-        for (final int matchedSignalIndexInQuerySpectrum : matchAssignments.getAssignments(0)) {
-            if (Collections.frequency(matchAssignments.getAssignments(0), matchedSignalIndexInQuerySpectrum)
-                    > querySpectrum.getEquivalentSignals(matchedSignalIndexInQuerySpectrum).size() + 1) { 
-                // note: + 1 to query spectrum equ. signal count, because in frequencies count the requested (equ.) signal always occurs at least once and in query spectrum equ. signal count it could be zero
-//                System.out.println("-> equivalences not allowed!!!");
-                return false;
-            }
-        }
-        // filter for intensities
-        // -> still open
-//        for (int i = 0; i < matchAssignments.getAssignmentsCount(); i++) {            
-//            if(Math.abs(predictedSpectrum.getIntensity(i) - this.querySpectrum.getIntensity(matchAssignments.getAtomIndex(0, i))) > this.toleranceIntensityMatching){
-//                return false;
-//            }
-//        }   
-        // filter for match factor
-        if (Utils.roundDouble(Matcher.calculateAverageDeviation(subspectrum, querySpectrum, 0, 0, shiftTol),  Start.DECIMAL_PLACES) > thrsMatchFactor) {
-//            System.out.println("-> match factor not allowed!!!");
-            return false;
-        }
-        
-        return true;
+        // filter for unset assignments, multiple assignments beyond equivalences and match factor
+        // -> intensities still open
+
+        return new SubspectrumValidator(querySpectrum, shiftTol, thrsMatchFactor).addSignals(subspectrum, 0);
     }
     
-    public static HashMap<String, SSC> assemble(final long nStarts, final int nThreads, final SSCLibrary rankedSSCLibrary, final int minMatchingSphereCount,
-            final Spectrum querySpectrum, final double thrsMatchFactor, final double shiftTol, final String pathToOutputsFolder, final long querySpectrumCounter) throws InterruptedException {
+    /**
+     * Assembles the ranked SSCs in parallel by the given search strategy.
+     * <br>
+     * The given search budget is shared by all threads and checked
+     * cooperatively. If it is exhausted before the search is done, the
+     * solutions found so far are returned and the result is marked as
+     * truncated. <br>
+     * Before, the pairwise overlap compatibility of all ranked SSCs is
+     * built once to skip impossible extension attempts. <br>
+     * Final SSC candidates are validated in background by a
+     * {@link SolutionValidationStage}. Its confirmed solutions are collected
+     * by one {@link SolutionSink}, which also writes them into a partial
+     * results file in the outputs folder.
+     *
+     * @param startSSCIndices ranked SSC indices of the start SSCs
+     * @param nThreads number of threads to use
+     * @param rankedSSCLibrary ranked SSC library
+     * @param minMatchingSphereCount minimum matching sphere count
+     * @param querySpectrum query spectrum
+     * @param thrsMatchFactor threshold for the match factor
+     * @param shiftTol shift tolerance
+     * @param pathToOutputsFolder path to outputs folder
+     * @param querySpectrumCounter index of the query spectrum
+     * @param searchBudget time and node budget for this query
+     * @param depictionStage depiction stage for accepted intermediates
+     * @param strategy search strategy, see {@link AssemblyStrategy}
+     * @param overlapPruning whether to skip extensions by ranked SSCs without
+     * any possible overlap to a ranked SSC of the path, which is a heuristic,
+     * see {@link OverlapCompatibility}
+     * @param containmentPruning whether to skip extensions by ranked SSCs which
+     * are contained in a ranked SSC of the path with a higher max. sphere,
+     * which is a heuristic, see {@link SphereContainment}
+     * @return
+     * @throws Exception
+     */
+    public static AssemblyResult assemble(final List<Long> startSSCIndices, final int nThreads, final SSCLibrary rankedSSCLibrary, final int minMatchingSphereCount,
+            final Spectrum querySpectrum, final double thrsMatchFactor, final double shiftTol, final String pathToOutputsFolder, final long querySpectrumCounter, final SearchBudget searchBudget,
+            final DepictionStage depictionStage, final AssemblyStrategy strategy, final boolean overlapPruning, final boolean containmentPruning) throws Exception {
 
 //        long counter = 0;
 //        for (final long sscindex : rankedSSCLibrary.getSSCIndices()) {
@@ -463,57 +541,161 @@ public class Assembly {
 //        }
 
 
-        final HashMap<String, SSC> solutions = new HashMap<>();
-        // initialize an executor for parallelization
-        final ExecutorService executor = Utils.initExecuter(nThreads);
-        final ArrayList<Callable<HashMap<String, SSC>>> callables = new ArrayList<>();
-        // add all task to do
-        for (int i = 0; i < nStarts; i++) {
-            final int j = i;
-            callables.add(() -> {
-                return Assembly.assembleDFS(rankedSSCLibrary, j, minMatchingSphereCount, querySpectrum, thrsMatchFactor, shiftTol, pathToOutputsFolder, querySpectrumCounter);
-//                return Assembly.assembleBFS(rankedSSCLibrary, j, minMatchingSphereCount, querySpectrum, thrsMatchFactor, shiftTol);
-//                return Assembly.assembleSeq(rankedSSCLibrary, j, minMatchingSphereCount, querySpectrum, thrsMatchFactor, shiftTol);
-            });
+        final AssemblyStatistics assemblyStatistics = new AssemblyStatistics(startSSCIndices);
+        final long preparationStartTime = System.nanoTime();
+        // if enabled, precompute which ranked SSCs could overlap at all to skip unlikely extensions
+        final OverlapCompatibility overlapCompatibility = overlapPruning
+                ? OverlapCompatibility.build(rankedSSCLibrary, minMatchingSphereCount, shiftTol, nThreads)
+                : OverlapCompatibility.buildAll((int) rankedSSCLibrary.getSSCCount());
+        Log.info(Log.Subsystem.ASSEMBLY, () -> "\ncompatible ranked SSC pairs: " + overlapCompatibility.getCompatiblePairsCount());
+        // if enabled, link the ranked SSCs of the same source atom to skip smaller sphere versions of SSCs already in a path
+        final SphereContainment sphereContainment = containmentPruning
+                ? SphereContainment.build(rankedSSCLibrary)
+                : SphereContainment.none((int) rankedSSCLibrary.getSSCCount());
+        Log.info(Log.Subsystem.ASSEMBLY, () -> "\nranked SSC containment links: " + sphereContainment.getLinksCount());
+        // build the connection trees and subtrees of the ranked SSCs once to share them between all threads
+        final HitContext[] hitContexts = HitContext.build(rankedSSCLibrary, nThreads);
+        assemblyStatistics.addTime(AssemblyStatistics.Stage.PREPARATION, preparationStartTime);
+        // the solutions of all tasks are validated and collected in one place
+        final SolutionSink solutionSink = new SolutionSink(querySpectrum, pathToOutputsFolder + "/results_" + querySpectrumCounter + "_temp.smiles");
+        final SolutionValidationStage solutionValidationStage = new SolutionValidationStage(querySpectrum, shiftTol, thrsMatchFactor, nThreads, solutionSink, assemblyStatistics);
+        // start SSCs, extensions, final SSC candidates and budget are shared by all strategies
+        final AssemblyEngine assemblyEngine = new AssemblyEngine(rankedSSCLibrary, startSSCIndices, minMatchingSphereCount, querySpectrum, thrsMatchFactor, shiftTol, searchBudget,
+                depictionStage, overlapCompatibility, sphereContainment, hitContexts, solutionValidationStage, assemblyStatistics, nThreads);
+        Log.info(Log.Subsystem.ASSEMBLY, () -> "\nassembly strategy: " + strategy.getName());
+        try {
+            strategy.assemble(assemblyEngine);
+        } finally {
+            assemblyEngine.close();
+            // wait for the candidates still in validation, also if the search failed, and write the buffered solutions
+            try {
+                solutionValidationStage.close();
+            } finally {
+                solutionSink.close();
+            }
         }
-        // execute all task in parallel
-        executor.invokeAll(callables)
-                .stream()
-                .map(future -> {
-                    try {
-                        return future.get();
-                    } catch (InterruptedException | ExecutionException e) {
-                        throw new IllegalStateException(e);
-                    }
-                })
-                .forEach(tempHashMap -> {
-                    solutions.putAll(tempHashMap);
-                });
-        // shut down the executor service
-        Utils.stopExecuter(executor, 5);
-        
-        return solutions;
-    } 
+        final HashMap<Long, SSC> solutions = solutionSink.getSolutions();
+        Log.debug(Log.Subsystem.ASSEMBLY, () -> "\nfinal SSC candidates: " + solutionValidationStage.getSubmittedCount() + " (rejected: " + solutionValidationStage.getRejectedCount() + ")");
+
+        return new AssemblyResult(solutions, solutionSink.getSolutionDepths(), searchBudget.isTruncated(), searchBudget.getExpandedNodesCount(), assemblyStatistics);
+    }
+
+    /**
+     * Adds a solution if there is no solution with the same structure yet.
+     * The solutions are keyed by their structure hash, see
+     * {@link StructureHash}. Canonical SMILES are only built to tell apart
+     * different structures with the same hash.
+     *
+     * @param solutions solutions found so far
+     * @param solution solution to add
+     * @return whether the solution was added
+     * @throws CDKException
+     */
+    public static boolean addSolution(final HashMap<Long, SSC> solutions, final SSC solution) throws CDKException {
+        return Assembly.addSolution(solutions, solution, StructureHash.calculate(solution.getSubstructure()));
+    }
+
+    /**
+     * Adds a solution with an already calculated structure hash if there is
+     * no solution with the same structure yet.
+     *
+     * @param solutions solutions found so far
+     * @param solution solution to add
+     * @param structureHash structure hash of the solution, see
+     * {@link StructureHash#calculate(IAtomContainer)}
+     * @return whether the solution was added
+     * @throws CDKException
+     */
+    public static boolean addSolution(final HashMap<Long, SSC> solutions, final SSC solution, final long structureHash) throws CDKException {
+        long key = structureHash;
+        String structureAsSMILES = null;
+        SmilesGenerator smilesGenerator = null;
+        while (solutions.containsKey(key)) {
+            if (smilesGenerator == null) {
+                smilesGenerator = new SmilesGenerator(SmiFlavor.Absolute);
+                structureAsSMILES = smilesGenerator.create(solution.getSubstructure());
+            }
+            if (structureAsSMILES.equals(smilesGenerator.create(solutions.get(key).getSubstructure()))) {
+                return false;
+            }
+            // different structure with same hash -> next free key
+            key++;
+        }
+        solutions.put(key, solution);
+
+        return true;
+    }
+
+    /**
+     * Logs a new solution. No SMILES is built here; it is built only once
+     * when the solution is written.
+     *
+     * @param solutionsCount number of solutions incl. the new one
+     * @param solution new solution
+     * @param structureHash structure hash of the solution, see
+     * {@link StructureHash}
+     * @param querySpectrum query spectrum
+     */
+    static void logSolution(final int solutionsCount, final SSC solution, final long structureHash, final Spectrum querySpectrum) {
+        if (Log.isEnabled(Log.Subsystem.ASSEMBLY, Log.Level.INFO)) {
+            Log.log(Log.Subsystem.ASSEMBLY, Log.Level.INFO, "--> new solution found!!! -> " + solutionsCount + " -> structure hash " + Long.toHexString(structureHash));
+        }
+        if (Log.isEnabled(Log.Subsystem.ASSEMBLY, Log.Level.DEBUG)) {
+            Log.log(Log.Subsystem.ASSEMBLY, Log.Level.DEBUG, "-> atom count: " + solution.getAtomCount() + ", bond count: " + solution.getBondCount()
+                    + "\n-> query spectrum:\t" + querySpectrum.getShifts(0)
+                    + "\n-> equivalences:\t" + querySpectrum.getEquivalences()
+                    + "\n-> pred. spectrum:\t" + solution.getSubspectrum().getShifts(0)
+                    + "\n-> equivalences:\t" + solution.getSubspectrum().getEquivalences());
+        }
+    }
 
     public static boolean isFinalSSC(final SSC ssc, final Spectrum querySpectrum, final double shiftTol, final double thrsMatchFactor) {
-        System.out.println("\nno more unsaturated atoms left? -> " + !ssc.hasUnsaturatedAtoms());
+        return Assembly.isFinalSSCCandidate(ssc, querySpectrum) && Assembly.isValidFinalSSC(ssc, querySpectrum, shiftTol, thrsMatchFactor);
+    }
+
+    /**
+     * Cheap checks whether an SSC could be final: it has no unsaturated atoms
+     * left and its subspectrum has the size of the query spectrum. Such an
+     * SSC can not be extended anymore.
+     *
+     * @param ssc
+     * @param querySpectrum
+     * @return
+     */
+    public static boolean isFinalSSCCandidate(final SSC ssc, final Spectrum querySpectrum) {
+        Log.trace(Log.Subsystem.ASSEMBLY, () -> "\nno more unsaturated atoms left? -> " + !ssc.hasUnsaturatedAtoms());
         if(ssc.hasUnsaturatedAtoms()){
             return false;
         }
-        System.out.println("query spectrum size reached? -> " + ssc.getSubspectrum().getSignalCount() + " == " + querySpectrum.getSignalCount() + " -> " + (ssc.getSubspectrum().getSignalCount() == querySpectrum.getSignalCount()));
+        Log.trace(Log.Subsystem.ASSEMBLY, () -> "query spectrum size reached? -> " + ssc.getSubspectrum().getSignalCount() + " == " + querySpectrum.getSignalCount() + " -> " + (ssc.getSubspectrum().getSignalCount() == querySpectrum.getSignalCount()));
         if((ssc.getSubspectrum().getSignalCount() != querySpectrum.getSignalCount())){
             return false;
         }
-        System.out.println("isValidSpectrum? -> " + Assembly.isValidSubspectrum(ssc.getSubspectrum(), querySpectrum, shiftTol, thrsMatchFactor));
+
+        return true;
+    }
+
+    /**
+     * Expensive checks whether a final SSC candidate is a solution: full
+     * subspectrum validation and kekulization of its substructure.
+     *
+     * @param ssc candidate, see {@link #isFinalSSCCandidate(SSC, Spectrum)}
+     * @param querySpectrum
+     * @param shiftTol
+     * @param thrsMatchFactor
+     * @return
+     */
+    public static boolean isValidFinalSSC(final SSC ssc, final Spectrum querySpectrum, final double shiftTol, final double thrsMatchFactor) {
+        Log.trace(Log.Subsystem.ASSEMBLY, () -> "isValidSpectrum? -> " + Assembly.isValidSubspectrum(ssc.getSubspectrum(), querySpectrum, shiftTol, thrsMatchFactor));
         if(!Assembly.isValidSubspectrum(ssc.getSubspectrum(), querySpectrum, shiftTol, thrsMatchFactor)){
             return false;
         }
 
         try {
             Kekulization.kekulize(ssc.getSubstructure());
-            System.out.println("kekulization? -> true");
+            Log.trace(Log.Subsystem.ASSEMBLY, () -> "kekulization? -> true");
         } catch (CDKException e) {
-            System.out.println("kekulization? -> false");
+            Log.trace(Log.Subsystem.ASSEMBLY, () -> "kekulization? -> false");
             return false;
         }
         
@@ -576,7 +758,9 @@ public class Assembly {
                         ssc1.getSubstructure().addBond(bondToAdd);
                         ssc1.update();  
                         addedAnyBond = true;           
-                        System.out.println("in addMissingBonds: new bond (" + bondToAdd.getOrder().numeric() + ", " + bondToAdd.isAromatic() + ") between " + mappedAtomIndexSSC1 + ", " + connectedAtomSSC1.getIndex() + " added!!!");
+                        if (Log.isEnabled(Log.Subsystem.ASSEMBLY, Log.Level.TRACE)) {
+                            Log.log(Log.Subsystem.ASSEMBLY, Log.Level.TRACE, "in addMissingBonds: new bond (" + bondToAdd.getOrder().numeric() + ", " + bondToAdd.isAromatic() + ") between " + mappedAtomIndexSSC1 + ", " + connectedAtomSSC1.getIndex() + " added!!!");
+                        }
                     }                    
                 }
             }
@@ -661,278 +845,6 @@ public class Assembly {
 //
 //        return ssc1;
 //    }
-    
-    public static HashMap<String, SSC> assembleBFS(final SSCLibrary rankedSSCLibrary, final long startSSCIndex, final int minMatchingSphereCount, 
-            final Spectrum querySpectrum, final double thrsMatchFactor, final double shiftTol) throws Exception {
-         
-        final SmilesGenerator smilesGenerator = new SmilesGenerator(SmiFlavor.Absolute);
-        String structureAsSMILES;
-        final HashMap<String, SSC> solutions = new HashMap<>();
-        SSC intermediate, newIntermediate, ssc2;
-        // notice: clone (!!!) the SSC contents only; don't use the object (reference) itself because of modifications
-        intermediate = rankedSSCLibrary.getSSC(startSSCIndex).getClone();
-        // check whether the current SSC is already a final SSC
-        if (Assembly.isFinalSSC(intermediate, querySpectrum, shiftTol, thrsMatchFactor)) {
-            structureAsSMILES = smilesGenerator.create(intermediate.getSubstructure());
-            if (!solutions.containsKey(structureAsSMILES)) {
-                solutions.put(structureAsSMILES, intermediate);
-                System.out.println("--> new solution found!!! -> " + solutions.size() + " -> " + structureAsSMILES);
-                System.out.println("-> atom count: " + intermediate.getAtomCount() + ", bond count: " + intermediate.getBondCount());
-                System.out.println("-> query spectrum:\t" + querySpectrum.getShifts(0));
-                System.out.println("-> equivalences:\t" + querySpectrum.getEquivalences());
-                System.out.println("-> pred. spectrum:\t" + intermediate.getSubspectrum().getShifts(0));
-                System.out.println("-> equivalences:\t" + intermediate.getSubspectrum().getEquivalences());
-            }
-            return solutions;
-        }
-                
-        LinkedHashSet<Long> path = new LinkedHashSet<>(), newPath;
-        path.add(startSSCIndex);
-        // create queue with initial state for BFS
-        final Queue<Object[]> intermediates = new LinkedList<>();
-        intermediates.add(new Object[]{intermediate, path});
-        
-        
-        while (!intermediates.isEmpty()) {            
-            intermediate = ((SSC) intermediates.peek()[0]).getClone();
-            path = new LinkedHashSet<>((LinkedHashSet<Long>) intermediates.peek()[1]);
-            System.out.println("--> for path: " + path + "\nnext ssc index: " + (Collections.max(path) + 1));
-            System.out.println("--> ranked SSC indices: " + rankedSSCLibrary.getSSCIndices());
-            for (long i = Collections.max(path) + 1; i < rankedSSCLibrary.getSSCCount(); i++) {
-
-                ssc2 = rankedSSCLibrary.getSSC(i);
-
-                System.out.println("\n\n-------------------------------- " + path + ", " + i + " --------------------------------");                                
-                
-//            backupSSC = intermediate.getClone();
-
-                newIntermediate = Assembly.assemblyCore(intermediate.getClone(), ssc2, querySpectrum, minMatchingSphereCount, shiftTol, thrsMatchFactor);
-                if (newIntermediate == null) {
-//                intermediate = backupSSC.getClone();
-                    continue;
-                }
-
-//                try {
-//                    Utils.generatePicture(newIntermediate.getSubstructure(), "results/temp_" + path + "_" + i + ".png");
-//                } catch (Exception e) {
-//
-//                }
-
-                if (Assembly.isFinalSSC(newIntermediate, querySpectrum, shiftTol, thrsMatchFactor)) {
-                    structureAsSMILES = smilesGenerator.create(newIntermediate.getSubstructure());
-                    if (!solutions.containsKey(structureAsSMILES)) {
-                        solutions.put(structureAsSMILES, newIntermediate);
-                        System.out.println("--> new solution found!!! -> " + solutions.size() + " -> " + structureAsSMILES);
-                        System.out.println("-> atom count: " + newIntermediate.getAtomCount() + ", bond count: " + newIntermediate.getBondCount());
-                        System.out.println("-> query spectrum:\t" + querySpectrum.getShifts(0));
-                        System.out.println("-> equivalences:\t" + querySpectrum.getEquivalences());
-                        System.out.println("-> pred. spectrum:\t" + newIntermediate.getSubspectrum().getShifts(0));
-                        System.out.println("-> equivalences:\t" + newIntermediate.getSubspectrum().getEquivalences());
-                    }
-
-//                intermediate = startSSC.getClone();//backupSSC1.getClone();
-                    continue;
-                }
-                
-                newPath = new LinkedHashSet<>(path);
-                newPath.add(i);
-                intermediates.add(new Object[]{newIntermediate, newPath});
-            }
-            
-            intermediates.poll();
-        }
-        
-        return solutions;
-    }
-
-
-    public static HashMap<String, SSC> assembleDFS(final SSCLibrary rankedSSCLibrary, final long startSSCIndex, final int minMatchingSphereCount,
-                                                   final Spectrum querySpectrum, final double thrsMatchFactor, final double shiftTol, final String pathToOutputsFolder, final long querySpectrumCounter) throws Exception {
-
-        final BufferedWriter bw = new BufferedWriter(new FileWriter(pathToOutputsFolder + "/results_" + querySpectrumCounter + "_temp.smiles"));
-        final SmilesGenerator smilesGenerator = new SmilesGenerator(SmiFlavor.Absolute);
-        String structureAsSMILES;
-        final HashMap<String, SSC> solutions = new HashMap<>();
-        SSC intermediate, newIntermediate, ssc2;
-        // notice: clone (!!!) the SSC contents only; don't use the object (reference) itself because of modifications
-        intermediate = rankedSSCLibrary.getSSC(startSSCIndex).getClone();
-        // check whether the current SSC is already a final SSC
-        if (Assembly.isFinalSSC(intermediate, querySpectrum, shiftTol, thrsMatchFactor)) {
-            structureAsSMILES = smilesGenerator.create(intermediate.getSubstructure());
-            if (!solutions.containsKey(structureAsSMILES)) {
-                solutions.put(structureAsSMILES, intermediate);
-                System.out.println("--> new solution found!!! -> " + solutions.size() + " -> " + structureAsSMILES);
-                System.out.println("-> atom count: " + intermediate.getAtomCount() + ", bond count: " + intermediate.getBondCount());
-                System.out.println("-> query spectrum:\t" + querySpectrum.getShifts(0));
-                System.out.println("-> equivalences:\t" + querySpectrum.getEquivalences());
-                System.out.println("-> pred. spectrum:\t" + intermediate.getSubspectrum().getShifts(0));
-                System.out.println("-> equivalences:\t" + intermediate.getSubspectrum().getEquivalences());
-
-                bw.append(structureAsSMILES);
-                bw.newLine();
-                bw.flush();
-            }
-            return solutions;
-        }
-
-        LinkedHashSet<Long> path = new LinkedHashSet<>(), newPath;
-        path.add(startSSCIndex);
-        // create queue with initial state for BFS
-        final Stack<Object[]> intermediates = new Stack<>();
-        intermediates.push(new Object[]{intermediate, path});
-
-        long j = Collections.max(path) + 1;
-        while (!intermediates.isEmpty()) {
-
-            while ((j < rankedSSCLibrary.getSSCCount() - 1) && !intermediates.isEmpty()) {
-
-                for (long i = j; i < rankedSSCLibrary.getSSCCount(); i++) {
-
-                    if(intermediates.isEmpty()){
-                        break;
-                    }
-
-                    intermediate = ((SSC) intermediates.peek()[0]).getClone();
-                    path = new LinkedHashSet<>((LinkedHashSet<Long>) intermediates.peek()[1]);
-                    System.out.println("--> for path: " + path + "\nnext ssc index: " + i + "/" + (rankedSSCLibrary.getSSCCount() - 1));
-//                System.out.println("--> ranked SSC indices: " + rankedSSCLibrary.getSSCIndices());
-                    ssc2 = rankedSSCLibrary.getSSC(i);
-
-                    System.out.println("\n\n-------------------------------- " + path + ", " + i + " --------------------------------");
-
-                    newIntermediate = Assembly.assemblyCore(intermediate.getClone(), ssc2, querySpectrum, minMatchingSphereCount, shiftTol, thrsMatchFactor);
-                    if (newIntermediate == null) {
-                        continue;
-                    }
-
-                try {
-                    Utils.generatePicture(newIntermediate.getSubstructure(), "results/temp_" + path + "_" + i + ".png");
-                } catch (Exception e) {
-
-                }
-
-                    if (Assembly.isFinalSSC(newIntermediate, querySpectrum, shiftTol, thrsMatchFactor)) {
-                        structureAsSMILES = smilesGenerator.create(newIntermediate.getSubstructure());
-                        if (!solutions.containsKey(structureAsSMILES)) {
-                            solutions.put(structureAsSMILES, newIntermediate);
-                            System.out.println("--> new solution found!!! -> " + solutions.size() + " -> " + structureAsSMILES);
-                            System.out.println("-> atom count: " + newIntermediate.getAtomCount() + ", bond count: " + newIntermediate.getBondCount());
-                            System.out.println("-> query spectrum:\t" + querySpectrum.getShifts(0));
-                            System.out.println("-> equivalences:\t" + querySpectrum.getEquivalences());
-                            System.out.println("-> pred. spectrum:\t" + newIntermediate.getSubspectrum().getShifts(0));
-                            System.out.println("-> equivalences:\t" + newIntermediate.getSubspectrum().getEquivalences());
-
-                            bw.append(structureAsSMILES);
-                            bw.newLine();
-                            bw.flush();
-
-//                            return solutions;
-                        }
-                        continue;
-                    }
-
-//                    if(i < (rankedSSCLibrary.getSSCCount() - 1)){
-                        newPath = new LinkedHashSet<>(path);
-                        newPath.add(i);
-                        intermediates.push(new Object[]{newIntermediate, newPath});
-//                    }
-                }
-                j = Collections.max((LinkedHashSet<Long>) intermediates.peek()[1]) + 1;
-                intermediates.pop();
-            }
-
-            if(intermediates.isEmpty()){
-                break;
-            }
-            j = Collections.max((LinkedHashSet<Long>) intermediates.peek()[1]) + 1;
-            intermediates.pop();
-        }
-
-        bw.close();
-
-        return solutions;
-    }
-    
-    
-    public static HashMap<String, SSC> assembleSeq(final SSCLibrary rankedSSCLibrary, final long startSSCIndex, final int minMatchingSphereCount,
-                                                   final Spectrum querySpectrum, final double thrsMatchFactor, final double shiftTol) throws Exception {
-
-        final SmilesGenerator smilesGenerator = new SmilesGenerator(SmiFlavor.Absolute);
-        String structureAsSMILES;
-        final HashMap<String, SSC> solutions = new HashMap<>();
-        SSC intermediate, backupSSC, ssc2, startSSC;
-        // notice: clone (!!!) the SSC contents only; don't use the object (reference) itself because of modifications
-        startSSC = rankedSSCLibrary.getSSC(startSSCIndex).getClone();
-        intermediate = startSSC.getClone();
-        intermediate.setIndex(startSSCIndex);
-        // check whether the current SSC is already a final SSC
-        if (Assembly.isFinalSSC(intermediate, querySpectrum, shiftTol, thrsMatchFactor)) {
-            structureAsSMILES = smilesGenerator.create(intermediate.getSubstructure());
-            solutions.put(structureAsSMILES, intermediate);
-            System.out.println("--> new solution found!!! -> " + solutions.size() + " -> " + structureAsSMILES);
-            System.out.println("-> atom count: " + intermediate.getAtomCount() + ", bond count: " + intermediate.getBondCount());
-            System.out.println("-> query spectrum:\t" + querySpectrum.getShifts(0));
-            System.out.println("-> equivalences:\t" + querySpectrum.getEquivalences());
-            System.out.println("-> pred. spectrum:\t" + intermediate.getSubspectrum().getShifts(0));
-            System.out.println("-> equivalences:\t" + intermediate.getSubspectrum().getEquivalences());
-
-            if(solutions.containsKey(null)){
-                System.out.println(" NULL key at 1");
-            }
-            if(solutions.containsValue(null)){
-                System.out.println(" NULL value at 1");
-            }
-            return solutions;
-        }
-        
-        for (long i = 0; i < rankedSSCLibrary.getSSCCount(); i++) {
-            if(i == startSSCIndex){
-                continue;
-            }            
-            
-            System.out.println("\n\n-------------------------------- " + startSSCIndex + ", " + i + " --------------------------------");
-            backupSSC = intermediate.getClone();
-            ssc2 = rankedSSCLibrary.getSSC(i);
-            intermediate = Assembly.assemblyCore(intermediate.getClone(), ssc2, querySpectrum, minMatchingSphereCount, shiftTol, thrsMatchFactor);
-            if (intermediate == null) {
-                intermediate = backupSSC.getClone();
-                intermediate.setIndex(startSSCIndex);
-                continue;
-            }
-
-            try {
-                Utils.generatePicture(intermediate.getSubstructure(), "results/temp_" + startSSCIndex + "_" + i + ".png");
-            } catch (Exception e) {
-
-            }
-
-            if (Assembly.isFinalSSC(intermediate, querySpectrum, shiftTol, thrsMatchFactor)) {
-                structureAsSMILES = smilesGenerator.create(intermediate.getSubstructure());
-                if (!solutions.containsKey(structureAsSMILES)) {
-                    solutions.put(structureAsSMILES, intermediate);
-                    System.out.println("--> new solution found!!! -> " + solutions.size() + " -> " + structureAsSMILES);
-                    System.out.println("-> atom count: " + intermediate.getAtomCount() + ", bond count: " + intermediate.getBondCount());
-                    System.out.println("-> query spectrum:\t" + querySpectrum.getShifts(0));
-                    System.out.println("-> equivalences:\t" + querySpectrum.getEquivalences());
-                    System.out.println("-> pred. spectrum:\t" + intermediate.getSubspectrum().getShifts(0));
-                    System.out.println("-> equivalences:\t" + intermediate.getSubspectrum().getEquivalences());
-                }
-
-                intermediate = startSSC.getClone();//backupSSC1.getClone();
-                intermediate.setIndex(startSSCIndex);
-//                continue;
-            }
-            
-        }
-
-        if(solutions.containsKey(null)){
-            System.out.println(" NULL key at 2");
-        }
-        if(solutions.containsValue(null)){
-            System.out.println(" NULL value at 2");
-        }
-        return solutions;
-    }
 
 
 
@@ -972,24 +884,24 @@ public class Assembly {
         if((signalSSC1 != null) && (signalSSC2 != null)){
             // check multiplicities
             if(!signalSSC1.getMultiplicity().equals(signalSSC2.getMultiplicity())){
-                System.out.println("---> atom ssc1: " + atomIndexSSC1 + " (" + signalSSC1.getMultiplicity() + "), atom ssc2: " + atomIndexSSC2 + "(" + signalSSC2.getMultiplicity() + ") have not the same multiplicity!!!!");
-                System.out.println("!!!current subgraph (structural overlap) is not valid -> skip!!!");
+                Log.trace(Log.Subsystem.ASSEMBLY, () -> "---> atom ssc1: " + atomIndexSSC1 + " (" + signalSSC1.getMultiplicity() + "), atom ssc2: " + atomIndexSSC2 + "(" + signalSSC2.getMultiplicity() + ") have not the same multiplicity!!!!");
+                Log.trace(Log.Subsystem.ASSEMBLY, () -> "!!!current subgraph (structural overlap) is not valid -> skip!!!");
                 return false;
             }
             // @TODO add solvent effect deviation to shiftTol?
 
             // check shift deviations
             if(Math.abs(signalSSC1.getShift(0) - signalSSC2.getShift(0)) > shiftTol){
-                System.out.println("---> atom ssc1: " + atomIndexSSC1 + " (" + signalSSC1.getShift(0) + ", " + ssc1.getSubspectrum().getSolvent() + "), atom ssc2: " + atomIndexSSC2 + "(" + signalSSC2.getShift(0) + ", " + ssc2.getSubspectrum().getSolvent() + ") differ in their shifts too much!!!!");
-                System.out.println("!!!current subgraph (structural overlap) is not valid -> skip!!!");
+                Log.trace(Log.Subsystem.ASSEMBLY, () -> "---> atom ssc1: " + atomIndexSSC1 + " (" + signalSSC1.getShift(0) + ", " + ssc1.getSubspectrum().getSolvent() + "), atom ssc2: " + atomIndexSSC2 + "(" + signalSSC2.getShift(0) + ", " + ssc2.getSubspectrum().getSolvent() + ") differ in their shifts too much!!!!");
+                Log.trace(Log.Subsystem.ASSEMBLY, () -> "!!!current subgraph (structural overlap) is not valid -> skip!!!");
                 return false;
             }
         } else if((ssc1.getSubstructure().getAtom(atomIndexSSC1).getImplicitHydrogenCount() != null)
                 && (ssc2.getSubstructure().getAtom(atomIndexSSC2).getImplicitHydrogenCount() != null)
                 && (ssc1.getSubstructure().getAtom(atomIndexSSC1).getImplicitHydrogenCount() != ssc2.getSubstructure().getAtom(atomIndexSSC2).getImplicitHydrogenCount())){
             // atoms without assigned signals
-            System.out.println("---> hetero atom ssc1: " + atomIndexSSC1 + " (" + ssc1.getSubstructure().getAtom(atomIndexSSC1).getImplicitHydrogenCount() + ", " + ssc1.getSubspectrum().getSolvent() + "), atom ssc2: " + atomIndexSSC2 + "(" + ssc2.getSubstructure().getAtom(atomIndexSSC2).getImplicitHydrogenCount() + ", " + ssc2.getSubspectrum().getSolvent() + ") differ in their shifts too much!!!!");
-            System.out.println("!!!current subgraph (structural overlap) is not valid -> skip!!!");
+            Log.trace(Log.Subsystem.ASSEMBLY, () -> "---> hetero atom ssc1: " + atomIndexSSC1 + " (" + ssc1.getSubstructure().getAtom(atomIndexSSC1).getImplicitHydrogenCount() + ", " + ssc1.getSubspectrum().getSolvent() + "), atom ssc2: " + atomIndexSSC2 + "(" + ssc2.getSubstructure().getAtom(atomIndexSSC2).getImplicitHydrogenCount() + ", " + ssc2.getSubspectrum().getSolvent() + ") differ in their shifts too much!!!!");
+            Log.trace(Log.Subsystem.ASSEMBLY, () -> "!!!current subgraph (structural overlap) is not valid -> skip!!!");
             return false;
         }
 
@@ -1040,8 +952,10 @@ public class Assembly {
             if ((ssc1.isUnsaturated(mappedAtomIndexSSC1) == null) || !ssc1.isUnsaturated(mappedAtomIndexSSC1)) {
                 continue;
             }
-            System.out.println("\nmapping: " + mappedAtomIndexSSC1 + ", " + mappedAtomIndexSSC2
-                    + "\n-> " + ssc1.getHOSECode(mappedAtomIndexSSC1) + "\n-> " + ssc2.getHOSECode(mappedAtomIndexSSC2));
+            if (Log.isEnabled(Log.Subsystem.ASSEMBLY, Log.Level.TRACE)) {
+                Log.log(Log.Subsystem.ASSEMBLY, Log.Level.TRACE, "\nmapping: " + mappedAtomIndexSSC1 + ", " + mappedAtomIndexSSC2
+                        + "\n-> " + ssc1.getHOSECode(mappedAtomIndexSSC1) + "\n-> " + ssc2.getHOSECode(mappedAtomIndexSSC2));
+            }
 
             // BFS to build connection tree which contains atoms in SSC2 to add to SSC1;
             // all mapped atom indices in SSC2 are used as list of visited atoms and then used
@@ -1049,8 +963,10 @@ public class Assembly {
             // that means that connected but unmapped atoms in SSC2 should exist in the resulting
             // connection tree to add to SSC1
             connectionTreeToAddFromSSC2 = HOSECodeBuilder.buildConnectionTree(ssc2.getSubstructure(), mappedAtomIndexSSC2, null, new HashSet<>(reversedAtomMappings.keySet()));
-            System.out.println(" -> BFS: " + connectionTreeToAddFromSSC2.toString()
-                    + "\n -> maxSphere: " + connectionTreeToAddFromSSC2.getMaxSphere());
+            if (Log.isEnabled(Log.Subsystem.ASSEMBLY, Log.Level.TRACE)) {
+                Log.log(Log.Subsystem.ASSEMBLY, Log.Level.TRACE, " -> BFS: " + connectionTreeToAddFromSSC2.toString()
+                        + "\n -> maxSphere: " + connectionTreeToAddFromSSC2.getMaxSphere());
+            }
             // traverse connection tree and try to add missing (not mapped) atoms from SSC2 to SSC1
             for (int s = 1; s <= connectionTreeToAddFromSSC2.getMaxSphere(); s++) {
                 // traverse via spheres of connection tree
@@ -1061,9 +977,11 @@ public class Assembly {
                     }
 
                     bondToAdd = connectedNodeInSphereToAddSSC2.getBondsToParents().get(0).clone();
-                    System.out.println(" -> key: " + connectedNodeInSphereToAddSSC2.getParentNodes().get(0).getKey() + " -> " + reversedAtomMappings.get(connectedNodeInSphereToAddSSC2.getParentNodes().get(0).getKey()));
+                    Log.trace(Log.Subsystem.ASSEMBLY, () -> " -> key: " + connectedNodeInSphereToAddSSC2.getParentNodes().get(0).getKey() + " -> " + reversedAtomMappings.get(connectedNodeInSphereToAddSSC2.getParentNodes().get(0).getKey()));
                     parentAtomSSC1 = ssc1.getSubstructure().getAtom(reversedAtomMappings.get(connectedNodeInSphereToAddSSC2.getParentNodes().get(0).getKey()));
-                    System.out.println("in s: " + s + " -> bond: (" + connectedNodeInSphereToAddSSC2.getKey() + ") to " + reversedAtomMappings.get(connectedNodeInSphereToAddSSC2.getParentNodes().get(0).getKey()));
+                    if (Log.isEnabled(Log.Subsystem.ASSEMBLY, Log.Level.TRACE)) {
+                        Log.log(Log.Subsystem.ASSEMBLY, Log.Level.TRACE, "in s: " + s + " -> bond: (" + connectedNodeInSphereToAddSSC2.getKey() + ") to " + reversedAtomMappings.get(connectedNodeInSphereToAddSSC2.getParentNodes().get(0).getKey()));
+                    }
 
                     if (Assembly.isValidBondAddition(ssc1.getSubstructure(), parentAtomSSC1.getIndex(), bondToAdd)) {
 
@@ -1076,7 +994,9 @@ public class Assembly {
                             bondToAdd.setOrder(IBond.Order.SINGLE);
                         }
                         ssc1.getSubstructure().addBond(bondToAdd);
-                        System.out.println("in extendSSC: new bond (" + bondToAdd.getOrder().numeric() + ", " + bondToAdd.isAromatic() + ") between " + parentAtomSSC1.getIndex() + ", " + (ssc1.getAtomCount() - 1) + " added!!!");
+                        if (Log.isEnabled(Log.Subsystem.ASSEMBLY, Log.Level.TRACE)) {
+                            Log.log(Log.Subsystem.ASSEMBLY, Log.Level.TRACE, "in extendSSC: new bond (" + bondToAdd.getOrder().numeric() + ", " + bondToAdd.isAromatic() + ") between " + parentAtomSSC1.getIndex() + ", " + (ssc1.getAtomCount() - 1) + " added!!!");
+                        }
 
                         // add belonging signal from SSC2 to SSC1
                         if (atomToAdd.getSymbol().equals(ssc1.getSubspectrumAtomType())) {
@@ -1090,11 +1010,11 @@ public class Assembly {
                         }
 
                         reversedAtomMappings.put(connectedNodeInSphereToAddSSC2.getKey(), ssc1.getAtomCount() - 1);
-                        System.out.println("-> added atom " + connectedNodeInSphereToAddSSC2.getKey() + " from SSC2 to SSC1");
+                        Log.trace(Log.Subsystem.ASSEMBLY, () -> "-> added atom " + connectedNodeInSphereToAddSSC2.getKey() + " from SSC2 to SSC1");
 
 
                     } else {
-                        System.out.println("not a valid bond addition!!!");
+                        Log.trace(Log.Subsystem.ASSEMBLY, () -> "not a valid bond addition!!!");
                         return null;
                     }
                 }
@@ -1140,325 +1060,475 @@ public class Assembly {
             counter++;
         }
         if(maxValidSubgraphIndex < 0){
-            System.out.println("-> !!! no valid subgraph found!!! -> skip");
+            Log.trace(Log.Subsystem.ASSEMBLY, () -> "-> !!! no valid subgraph found!!! -> skip");
             return null;
         }
-        System.out.println(" --> subgraoh index to use: " + maxValidSubgraphIndex);
+        if (Log.isEnabled(Log.Subsystem.ASSEMBLY, Log.Level.TRACE)) {
+            Log.log(Log.Subsystem.ASSEMBLY, Log.Level.TRACE, " --> subgraoh index to use: " + maxValidSubgraphIndex);
+        }
 
         return subgraphList.get(maxValidSubgraphIndex);
     }
 
-    public static SSC assemblyCore(final SSC ssc1, final SSC ssc2, final Spectrum querySpectrum, final int minMatchingSphereCount, final double shiftTol, final double thrsMatchFactor) throws Exception {
-
-//        // potential approach via spectral matching first (or only)
-//        final Assignment assignment = Matcher.matchSpectra(ssc2.getSubspectrum(), ssc1.getSubspectrum(), 0, 0, shiftTol);
-//        System.out.println(" --> match assignments: " + assignment.isFullyAssigned(0) + " -> " + assignment.getAssignments(0));
-////        System.out.println(" ---> atom pairs: ");
-//        HashMap<Integer, Integer> atomMappingsTemp = new HashMap<>();
-//        for (int i = 0; i < assignment.getAssignmentsCount(); i++) { // iterate over ssc2 signal count via assignments
-////            System.out.println(ssc2.getAssignments().getAssignment(0, i) + " - " + ssc1.getAssignments().getAssignment(0, assignment.getAssignment(0, i)));
-//            if(ssc1.getAssignments().getAssignment(0, assignment.getAssignment(0, i)) != null){
-//                atomMappingsTemp.put(ssc1.getAssignments().getAssignment(0, assignment.getAssignment(0, i)), ssc2.getAssignments().getAssignment(0, i));
-//            }
-//        }
-//        for (final Entry<Integer, Integer> entry : atomMappingsTemp.entrySet()){
-//            System.out.println("-> mapped atoms     : " + entry.getKey() + " - " + entry.getValue());
-//            if(ssc1.isUnsaturated(entry.getKey())){
-//                System.out.println("-> is unsaturated!");
-//            }
-//        }
-//        HashMap<Integer, Integer> atomMappings = Assembly.getAtomMappingsHOSECode(ssc1, ssc2, Assembly.getOverlapsHOSECodeCore(ssc1, ssc2, atomMappingsTemp, minMatchingSphereCount, shiftTol), atomMappingsTemp);
-
-
-
-//        // 1. check for partial structural identity (overlaps) via MCSS
-//        // atom mapping by maximum common (valid) subgraph
-//        HashMap<Integer, Integer> atomMappings = Assembly.getAtomMappingsMCSS(ssc1, ssc2, Assembly.getMaximumCommonSubgraph(ssc1, ssc2, shiftTol));
-
-
-        HashMap<Integer, ArrayList<Integer[]>> overlapsHOSECodeNew = Assembly.getOverlapsHOSECodeNew(ssc1, ssc2, minMatchingSphereCount, shiftTol);
-        if(overlapsHOSECodeNew.isEmpty()){
-            return ssc1;
+    /**
+     * Possible extension of an intermediate by a ranked SSC via one overlapping
+     * atom pair, see {@link #getExtensionPlans(SSC, HitContext, HashMap, int, AssemblyStatistics)}.
+     */
+    private static class ExtensionPlan {
+        // position in order of max. matching sphere (descending) and overlap index
+        private final int ordinal;
+        // indices of matched (root) atoms
+        private final int atomIndexSSC1, atomIndexSSC2;
+        private final ArrayList<Integer> connectionTreeKeysSSC1, connectionTreeKeysSSC2, unsaturatedAtomsSSC1;
+        // upper bound of atom count after extension
+        private final int maxAtomCount;
+
+        private ExtensionPlan(final int ordinal, final int atomIndexSSC1, final int atomIndexSSC2, final ArrayList<Integer> connectionTreeKeysSSC1,
+                              final ArrayList<Integer> connectionTreeKeysSSC2, final ArrayList<Integer> unsaturatedAtomsSSC1, final int maxAtomCount) {
+            this.ordinal = ordinal;
+            this.atomIndexSSC1 = atomIndexSSC1;
+            this.atomIndexSSC2 = atomIndexSSC2;
+            this.connectionTreeKeysSSC1 = connectionTreeKeysSSC1;
+            this.connectionTreeKeysSSC2 = connectionTreeKeysSSC2;
+            this.unsaturatedAtomsSSC1 = unsaturatedAtomsSSC1;
+            this.maxAtomCount = maxAtomCount;
         }
+    }
 
-        final ArrayList<SSC> validSSCExtensions = new ArrayList<>();
+    /**
+     * Returns the possible extensions of SSC1 by SSC2 for each overlapping atom
+     * pair, without cloning or modifying SSC1. Each extension contains an upper
+     * bound of the atom count it could reach.
+     *
+     * @param ssc1 SSC to extend
+     * @param hitContext context of SSC2
+     * @param overlapsHOSECodeNew overlapping atom pairs per max. matching sphere
+     * @param minMatchingSphereCount minimum matching sphere count
+     * @return
+     * @throws CDKException
+     */
+    private static ArrayList<ExtensionPlan> getExtensionPlans(final SSC ssc1, final HitContext hitContext, final HashMap<Integer, ArrayList<Integer[]>> overlapsHOSECodeNew,
+                                                              final int minMatchingSphereCount, final AssemblyStatistics assemblyStatistics) throws CDKException {
+        final SSC ssc2 = hitContext.getSSC();
+        final ArrayList<ExtensionPlan> extensionPlans = new ArrayList<>();
         ArrayList<Integer[]> overlapsHOSECodeInSphere;
+        int ordinal = 0;
         // for each max. matching sphere (key); starting with highest
         for (int s = Collections.max(overlapsHOSECodeNew.keySet()); s >= minMatchingSphereCount; s--){
             if(!overlapsHOSECodeNew.keySet().contains(s)){
                 continue;
             }
-
             overlapsHOSECodeInSphere = overlapsHOSECodeNew.get(s);
-            System.out.println(" --> s = " + s + ": ");
+            if (Log.isEnabled(Log.Subsystem.ASSEMBLY, Log.Level.TRACE)) {
+                Log.log(Log.Subsystem.ASSEMBLY, Log.Level.TRACE, " --> s = " + s + ": ");
+            }
             for (final Integer[] indices : overlapsHOSECodeInSphere){
-                System.out.println(" -> " + Arrays.toString(indices));
+                Log.trace(Log.Subsystem.ASSEMBLY, () -> " -> " + Arrays.toString(indices));
             }
 
             // for each overlapping atom pairs in SSC1 and SSC2 in sphere (maybe in a certain order?)
             for (int k = 0; k < overlapsHOSECodeInSphere.size(); k++) {
-                // reset ssc1Extended to original SSC1
-                SSC ssc1Extended = ssc1.getClone();
-                HashMap<Integer, Integer> atomMappingsTemp = new HashMap<>();
-                System.out.println("\n -> k: " + k);
-                System.out.println(" -> HOSE code maps:" + Arrays.toString(overlapsHOSECodeInSphere.get(k)));
                 // indices of matched (root) atoms
-                int i = overlapsHOSECodeInSphere.get(k)[0];
-                int j = overlapsHOSECodeInSphere.get(k)[1];
+                final int i = overlapsHOSECodeInSphere.get(k)[0];
+                final int j = overlapsHOSECodeInSphere.get(k)[1];
 
                 // @TODO check this constraint again
-                if(ssc1Extended.isUnsaturated(i) || ssc2.isUnsaturated(j)){
-                    System.out.println(" atom " + i + " in SSC1 or atom " + j + " in SSC2 is unsaturated and not allowed as overlap root");
+                if(ssc1.isUnsaturated(i) || ssc2.isUnsaturated(j)){
+                    Log.trace(Log.Subsystem.ASSEMBLY, () -> " atom " + i + " in SSC1 or atom " + j + " in SSC2 is unsaturated and not allowed as overlap root");
+                    assemblyStatistics.countPrune(AssemblyStatistics.PruneReason.UNSATURATED_ROOT);
                     continue;
                 }
 
-                ConnectionTree completeConnectionTreeSSC2 = HOSECodeBuilder.buildConnectionTree(ssc2.getSubstructure(), j, null);
-                ConnectionTree maxSphereConnectionTreeSSC2 = HOSECodeBuilder.buildConnectionTree(ssc2.getSubstructure(), j, ssc2.getMaxSphere());
-                ConnectionTree matchingConnectionTreeSSC1 = HOSECodeBuilder.buildConnectionTree(ssc1Extended.getSubstructure(), i, s);
-                ConnectionTree matchingConnectionTreeSSC2 = HOSECodeBuilder.buildConnectionTree(ssc2.getSubstructure(), j, s);
-                System.out.println(" --> atoms in SSC1: " + matchingConnectionTreeSSC1.getKeys(true));
-                System.out.println(" --> atoms in SSC2: " + matchingConnectionTreeSSC2.getKeys(true));
-                System.out.println(ssc1Extended.getHOSECode(i) + "\n" + ssc2.getHOSECode(j));
-                System.out.println(ssc1Extended.getConnectionTree(i) + " -> " + ssc1Extended.getConnectionTree(i).getNodesCountInSphere(s) + "\n" + ssc2.getConnectionTree(j) + " -> " + ssc2.getConnectionTree(j).getNodesCountInSphere(s));
-                ArrayList<Integer> unsaturatedAtomsSSC1 = new ArrayList<>();
-                ArrayList<Integer> connectionTreeKeysSSC1 = new ArrayList<>(matchingConnectionTreeSSC1.getKeys(false));
-                ArrayList<Integer> connectionTreeKeysSSC2 = new ArrayList<>(matchingConnectionTreeSSC2.getKeys(false));
+                final ConnectionTree matchingConnectionTreeSSC1 = HOSECodeBuilder.buildConnectionTree(ssc1.getSubstructure(), i, s);
+                final ConnectionTree matchingConnectionTreeSSC2 = ssc2.getConnectionTree(j, s);
+                final ArrayList<Integer> unsaturatedAtomsSSC1 = new ArrayList<>();
+                final ArrayList<Integer> connectionTreeKeysSSC1 = new ArrayList<>(matchingConnectionTreeSSC1.getKeys(false));
+                final ArrayList<Integer> connectionTreeKeysSSC2 = new ArrayList<>(matchingConnectionTreeSSC2.getKeys(false));
                 if(connectionTreeKeysSSC1.size() != connectionTreeKeysSSC2.size()){
-                    System.out.println(" <--- max. matching sphere is not the same anymore!!!! --->");
+                    Log.trace(Log.Subsystem.ASSEMBLY, () -> " <--- max. matching sphere is not the same anymore!!!! --->");
                     continue;
                 }
-                for (int l = 0; l < connectionTreeKeysSSC1.size(); l++) {
-                    atomMappingsTemp.put(connectionTreeKeysSSC1.get(l), connectionTreeKeysSSC2.get(l));
-                }
                 for (final int key : connectionTreeKeysSSC1){
                     if(key < 0){
                         continue;
                     }
-                    if(ssc1Extended.isUnsaturated(key)){
+                    if(ssc1.isUnsaturated(key)){
                         unsaturatedAtomsSSC1.add(key);
                     }
                 }
                 if(unsaturatedAtomsSSC1.isEmpty()){
                     continue;
                 }
-                Signal signalToAdd;
-                System.out.println("predicted spectrum orig.: " + ssc1Extended.getSubspectrum().getShifts(0));
-                System.out.println(" -----> unsaturated atoms SSC1:" + unsaturatedAtomsSSC1);
-
-                // check for each found unsaturated atom in SSC1 whether there is a valid extension possible from SSC2 via its children
+                // each non-ring closure child of an unsaturated atom could add its complete subtree
+                int maxAtomCount = ssc1.getAtomCount();
                 for (final int unsaturatedAtomKeySSC1 : unsaturatedAtomsSSC1){
-                    int indexUntilMaxMatchingSphere = connectionTreeKeysSSC1.indexOf(unsaturatedAtomKeySSC1);
-                    int nodeKeyInCompleteConnectionTreeSSC1 = connectionTreeKeysSSC1.get(indexUntilMaxMatchingSphere);
-                    int nodeKeyInCompleteConnectionTreeSSC2 = connectionTreeKeysSSC2.get(indexUntilMaxMatchingSphere);
-                    System.out.println(" ---> unsaturated atoms in max. matching sphere: " + nodeKeyInCompleteConnectionTreeSSC1 + " - " + nodeKeyInCompleteConnectionTreeSSC2);
-                    
-                    ArrayList<ConnectionTreeNode> childNodesToAppend = maxSphereConnectionTreeSSC2.getNode(nodeKeyInCompleteConnectionTreeSSC2).getChildNodes();
-                    for (final ConnectionTreeNode childNodeToAppend : childNodesToAppend){
-                        System.out.println(" --> to append from SSC2: " + childNodeToAppend.getKey());
-
-                        // if ring closure node
-                        if(childNodeToAppend.isRingClosureNode()){
-
-//                            int index = connectionTreeKeysSSC2.indexOf(childNodeToAppend.getParentNodes().get(0).getKey());
-//                            int parentKeyInSSC1 = connectionTreeKeysSSC1.get(index);
-//                            int parentKeyInSSC2 = connectionTreeKeysSSC2.get(index);
-//
-//                            IBond bondToAdd = completeConnectionTreeSSC2.getBond(parentKeyInSSC2, childNodeToAppend.getKey()).clone();
-//
-//                            if(Assembly.isValidBondAddition(ssc1Extended.getSubstructure(), parentKeyInSSC1, bondToAdd)){
-//
-////                                System.out.println(" ->  bond addition for ring closure " + parentKeyInSSC1
-////                                        + " (" + parentKeyInSSC2 + " - " + childNodeToAppend.getKey() + ") : " + " valid!!!");
-//                                // parent node of child node shouldn have more than one parent node;
-//                                // we now search for them in complete conn. tree of SSC2 and check the connection
-//                                // between the grand parent and parent to complete the ring closure by adding the bond
-//
-////                                for (final ConnectionTreeNode grandParentNodeSSC2 : completeConnectionTreeSSC2.getNode(parentKeyInSSC2).getParentNodes()){
-////                                    if(atomMappingsTemp.containsValue(parentKeyInSSC2)
-////                                            && atomMappingsTemp.containsValue(grandParentNodeSSC2.getKey())){
-////                                        int parentAtomIndexSSC1 = -1, grandParentAtomIndexSSC1 = -1;
-////                                        for (final Entry<Integer, Integer> entry : atomMappingsTemp.entrySet()){
-////                                            if(entry.getValue() == parentKeyInSSC2){
-////                                                parentAtomIndexSSC1 = entry.getKey();
-////                                            } else if(entry.getValue() == grandParentNodeSSC2.getKey()) {
-////                                                grandParentAtomIndexSSC1 = entry.getKey();
-////                                            }
-////                                            if((parentAtomIndexSSC1 != -1)
-////                                                    && (grandParentAtomIndexSSC1 != -1)){
-////                                                break;
-////                                            }
-////                                        }
-////                                        if(((parentAtomIndexSSC1 != -1)
-////                                                && (grandParentAtomIndexSSC1 != -1)
-////                                                && sscToExtend.getSubstructure().getBond(sscToExtend.getSubstructure().getAtom(parentAtomIndexSSC1), sscToExtend.getSubstructure().getAtom(grandParentAtomIndexSSC1)) == null)){
-////
-////                                            if(Assembly.isValidBondAddition(sscToExtend.getSubstructure(), grandParentAtomIndexSSC1, bondToAdd)){
-////                                                bondToAdd.setAtom(sscToExtend.getSubstructure().getAtom(parentAtomIndexSSC1), 0);
-////                                                bondToAdd.setAtom(sscToExtend.getSubstructure().getAtom(grandParentAtomIndexSSC1), 1);
-////                                                sscToExtend.getSubstructure().addBond(bondToAdd);
-////                                            }
-////                                        }
-////                                    }
-////                                }
-//                            }
-
-
-                        } else {
-                            // 1. add signal from SSC2 to SSC1 and check for predicted (sub)spectrum validation
-                            // 2. check valid bond addition; add atom and bond to parent
-                            // 3. take connection tree of nodeKeyInCompleteConnectionTreeSSC2 as root and add all non-visited child nodes
-                            //  -> add atom and bond of child nodes as well as ring closures
+                    final int nodeKeySSC2 = connectionTreeKeysSSC2.get(connectionTreeKeysSSC1.indexOf(unsaturatedAtomKeySSC1));
+                    for (final ConnectionTreeNode childNode : hitContext.getMaxSphereConnectionTree(j).getNode(nodeKeySSC2).getChildNodes()){
+                        if(!childNode.isRingClosureNode()){
+                            maxAtomCount += hitContext.getSubtreeKeys(j, childNode.getKey()).size();
+                        }
+                    }
+                }
+                extensionPlans.add(new ExtensionPlan(ordinal, i, j, connectionTreeKeysSSC1, connectionTreeKeysSSC2, unsaturatedAtomsSSC1, maxAtomCount));
+                ordinal++;
+            }
+        }
 
+        return extensionPlans;
+    }
 
+    /**
+     * Result of trying an extension plan on the graph of SSC1: the extended
+     * graph and the steps to build the extension on a clone of SSC1, see
+     * {@link #buildExtension(SSC, HitContext, ExtensionPlan, Extension)}.
+     */
+    private static class Extension {
+        private final AssemblyGraph graph;
+        // in order of execution: {0, subtree root node key in SSC2, its parent node key in SSC2, attachment atom in SSC1}
+        // or {1, atom in SSC1, atom in SSC1, atom in SSC2, atom in SSC2} for a ring closure bond
+        private final ArrayList<int[]> steps;
+        // signals to append and the atom indices to assign them to
+        private final ArrayList<Signal> signals;
+        private final ArrayList<Integer> signalAtomIndices;
+
+        private Extension(final AssemblyGraph graph) {
+            this.graph = graph;
+            this.steps = new ArrayList<>();
+            this.signals = new ArrayList<>();
+            this.signalAtomIndices = new ArrayList<>();
+        }
+    }
 
+    /**
+     * Tries an extension of SSC1 by SSC2 for a planned overlapping atom pair
+     * on a copy of the graph of SSC1, without building any atom container.
+     *
+     * @param graphSSC1 graph of SSC1, stays unmodified
+     * @param hitContext context of SSC2
+     * @param extensionPlan
+     * @param assemblyStatistics statistics to count the invalid bond additions in
+     * @return
+     * @throws Exception
+     */
+    private static Extension tryExtension(final AssemblyGraph graphSSC1, final HitContext hitContext, final ExtensionPlan extensionPlan,
+                                          final AssemblyStatistics assemblyStatistics) throws Exception {
+        final SSC ssc2 = hitContext.getSSC();
+        final int i = extensionPlan.atomIndexSSC1;
+        final int j = extensionPlan.atomIndexSSC2;
+        final ArrayList<Integer> connectionTreeKeysSSC1 = extensionPlan.connectionTreeKeysSSC1;
+        final ArrayList<Integer> connectionTreeKeysSSC2 = extensionPlan.connectionTreeKeysSSC2;
+        final ArrayList<Integer> unsaturatedAtomsSSC1 = extensionPlan.unsaturatedAtomsSSC1;
+        // reset extension to original SSC1
+        final Extension extension = new Extension(new AssemblyGraph(graphSSC1));
+        // atom mappings in both directions; an atom in SSC2 is mapped to the last atom in SSC1 it was mapped to
+        final int[] atomMappingsSSC1ToSSC2 = new int[extensionPlan.maxAtomCount];
+        final int[] atomMappingsSSC2ToSSC1 = new int[ssc2.getAtomCount()];
+        Arrays.fill(atomMappingsSSC1ToSSC2, -1);
+        Arrays.fill(atomMappingsSSC2ToSSC1, -1);
+        if (Log.isEnabled(Log.Subsystem.ASSEMBLY, Log.Level.TRACE)) {
+            Log.log(Log.Subsystem.ASSEMBLY, Log.Level.TRACE, "\n -> extension: " + extensionPlan.ordinal + " (" + i + ", " + j + ")");
+        }
+        // connection trees of SSC2 are shared by all threads and must not be modified
+        final ConnectionTree completeConnectionTreeSSC2 = hitContext.getCompleteConnectionTree(j);
+        final ConnectionTree maxSphereConnectionTreeSSC2 = hitContext.getMaxSphereConnectionTree(j);
+        for (int l = 0; l < connectionTreeKeysSSC1.size(); l++) {
+            atomMappingsSSC1ToSSC2[connectionTreeKeysSSC1.get(l)] = connectionTreeKeysSSC2.get(l);
+            atomMappingsSSC2ToSSC1[connectionTreeKeysSSC2.get(l)] = connectionTreeKeysSSC1.get(l);
+        }
+        Signal signalToAdd;
+        Log.trace(Log.Subsystem.ASSEMBLY, () -> " -----> unsaturated atoms SSC1:" + unsaturatedAtomsSSC1);
+
+        // check for each found unsaturated atom in SSC1 whether there is a valid extension possible from SSC2 via its children
+        for (final int unsaturatedAtomKeySSC1 : unsaturatedAtomsSSC1){
+            int indexUntilMaxMatchingSphere = connectionTreeKeysSSC1.indexOf(unsaturatedAtomKeySSC1);
+            int nodeKeyInCompleteConnectionTreeSSC1 = connectionTreeKeysSSC1.get(indexUntilMaxMatchingSphere);
+            int nodeKeyInCompleteConnectionTreeSSC2 = connectionTreeKeysSSC2.get(indexUntilMaxMatchingSphere);
+            Log.trace(Log.Subsystem.ASSEMBLY, () -> " ---> unsaturated atoms in max. matching sphere: " + nodeKeyInCompleteConnectionTreeSSC1 + " - " + nodeKeyInCompleteConnectionTreeSSC2);
+            
+            ArrayList<ConnectionTreeNode> childNodesToAppend = maxSphereConnectionTreeSSC2.getNode(nodeKeyInCompleteConnectionTreeSSC2).getChildNodes();
+            for (final ConnectionTreeNode childNodeToAppend : childNodesToAppend){
+                Log.trace(Log.Subsystem.ASSEMBLY, () -> " --> to append from SSC2: " + childNodeToAppend.getKey());
 
-//                            if(completeConnectionTreeSSC2.getBond(nodeKeyInCompleteConnectionTreeSSC2, childNodeToAppend.getKey()) == null){
-//                                System.out.println("completeConnectionTreeSSC2: " + completeConnectionTreeSSC2);
-//                                System.out.println("!!! bond between " + nodeKeyInCompleteConnectionTreeSSC2 + " and " + childNodeToAppend.getKey() + " does not exist -> !!!! SKIP !!!!");
-//                                continue;
-//                            }
-                            IBond bondToAdd = completeConnectionTreeSSC2.getBond(nodeKeyInCompleteConnectionTreeSSC2, childNodeToAppend.getKey()).clone();
-                            if(Assembly.isValidBondAddition(ssc1Extended.getSubstructure(), nodeKeyInCompleteConnectionTreeSSC1, bondToAdd)){
-
-                                ConnectionTree substructureTreeToAddSSC2 = hose.Utils.getSubtree(completeConnectionTreeSSC2, childNodeToAppend.getKey());
-                                System.out.println(" JOOO: " + (substructureTreeToAddSSC2 == null));
-                                System.out.println(" JOOO 2: " + (substructureTreeToAddSSC2.getNodesCount()));
-                                System.out.println("-> subtree would be: " + substructureTreeToAddSSC2 + "\n" + substructureTreeToAddSSC2.getKeys(true));
-                                int counter = 1;
-                                for (final int substructureTreeNodeKeySSC2 : substructureTreeToAddSSC2.getKeys(true)) {
-                                    atomMappingsTemp.put((ssc1Extended.getAtomCount() - 1) + counter, substructureTreeNodeKeySSC2);
-                                    counter++;
-                                }
-                                System.out.println(" -> atom mappings temp: " + atomMappingsTemp);
-
-                                IAtomContainer substructureToAddSSC2 = HOSECodeBuilder.buildAtomContainer(substructureTreeToAddSSC2);
-                                System.out.println("subtree size: " + substructureToAddSSC2.getAtomCount());
-                                ssc1Extended.getSubstructure().add(substructureToAddSSC2);
-
-                                bondToAdd.setAtom(ssc1Extended.getSubstructure().getAtom((ssc1Extended.getAtomCount() - 1) - (substructureToAddSSC2.getAtomCount() - 1)), 0);
-                                bondToAdd.setAtom(ssc1Extended.getSubstructure().getAtom(nodeKeyInCompleteConnectionTreeSSC1), 1);
-                                System.out.println("is valid bond addition? -> true");
-                                ssc1Extended.getSubstructure().addBond(bondToAdd);
-
-                                // add signals and assignments from added subtructure tree in SSC2 to SSC1
-                                for (final int nodeKeyInSubtreeSSC2 : substructureTreeToAddSSC2.getKeys(true)){
-                                    signalToAdd = ssc2.getSubspectrum().getSignal(ssc2.getAssignments().getIndex(0, nodeKeyInSubtreeSSC2));
-                                    if(signalToAdd != null){
-                                        ssc1Extended.getSubspectrum().addSignal(signalToAdd);
-                                        int index = new ArrayList<>(substructureTreeToAddSSC2.getKeys(true)).indexOf(nodeKeyInSubtreeSSC2);
-                                        index += ((ssc1Extended.getAtomCount() - 1) - (substructureToAddSSC2.getAtomCount() - 1));
-                                        ssc1Extended.getAssignments().addAssignment(new int[]{index});
-                                    }
-                                }
+                // if ring closure node
+                if(childNodeToAppend.isRingClosureNode()){
+                    // nothing to append; ring closures are completed from the added subtrees below
+                } else {
+                    // 1. add signal from SSC2 to SSC1 and check for predicted (sub)spectrum validation
+                    // 2. check valid bond addition; add atom and bond to parent
+                    // 3. take connection tree of nodeKeyInCompleteConnectionTreeSSC2 as root and add all non-visited child nodes
+                    //  -> add atom and bond of child nodes as well as ring closures
+                    float bondOrderToAdd = Utils.getBondOrderAsNumeric(completeConnectionTreeSSC2.getBond(nodeKeyInCompleteConnectionTreeSSC2, childNodeToAppend.getKey()));
+                    if(extension.graph.isValidBondAddition(nodeKeyInCompleteConnectionTreeSSC1, bondOrderToAdd)){
+
+                        ConnectionTree substructureTreeToAddSSC2 = hitContext.getSubtree(j, childNodeToAppend.getKey());
+                        ArrayList<Integer> substructureTreeKeysSSC2 = hitContext.getSubtreeKeys(j, childNodeToAppend.getKey());
+                        Log.trace(Log.Subsystem.ASSEMBLY, () -> "-> subtree would be: " + substructureTreeToAddSSC2 + "\n" + substructureTreeKeysSSC2);
+                        // the subtree atoms are appended in order of the subtree keys
+                        final int offset = extension.graph.addGraph(hitContext.getSubtreeGraph(j, childNodeToAppend.getKey()));
+                        for (int l = 0; l < substructureTreeKeysSSC2.size(); l++) {
+                            atomMappingsSSC1ToSSC2[offset + l] = substructureTreeKeysSSC2.get(l);
+                            atomMappingsSSC2ToSSC1[substructureTreeKeysSSC2.get(l)] = offset + l;
+                        }
+                        Log.trace(Log.Subsystem.ASSEMBLY, () -> " -> atom mappings temp: " + Arrays.toString(atomMappingsSSC1ToSSC2));
+                        Log.trace(Log.Subsystem.ASSEMBLY, () -> "subtree size: " + substructureTreeKeysSSC2.size());
+
+                        Log.trace(Log.Subsystem.ASSEMBLY, () -> "is valid bond addition? -> true");
+                        extension.graph.addBond(offset, nodeKeyInCompleteConnectionTreeSSC1, bondOrderToAdd);
+                        extension.steps.add(new int[]{0, childNodeToAppend.getKey(), nodeKeyInCompleteConnectionTreeSSC2, nodeKeyInCompleteConnectionTreeSSC1});
+
+                        // add signals and assignments from added subtructure tree in SSC2 to SSC1
+                        for (int l = 0; l < substructureTreeKeysSSC2.size(); l++){
+                            signalToAdd = ssc2.getSubspectrum().getSignal(ssc2.getAssignments().getIndex(0, substructureTreeKeysSSC2.get(l)));
+                            if(signalToAdd != null){
+                                extension.signals.add(signalToAdd);
+                                extension.signalAtomIndices.add(offset + l);
+                            }
+                        }
 
-                                ConnectionTree completeConnectionTreeSSC1 = HOSECodeBuilder.buildConnectionTree(ssc1Extended.getSubstructure(), i, null);
-                                // try to close rings directly from added subtree of SSC2
-                                ConnectionTreeNode nodeSSC1, parentNodeSSC1;
-                                // for each node in added subtree
-                                for (final int nodeKeyInSubtreeSSC2 : substructureTreeToAddSSC2.getKeys(true)){
-                                    // if node is ring closure point
-                                    if(completeConnectionTreeSSC2.getNode(nodeKeyInSubtreeSSC2).getParentNodes().size() > 1){
-                                        // then check for each (additional) parent node whether there is a bond missing
-                                        for (final ConnectionTreeNode parentNodeSSC2 : completeConnectionTreeSSC2.getNode(nodeKeyInSubtreeSSC2).getParentNodes()){
+                        // try to close rings directly from added subtree of SSC2
+                        int nodeSSC1, parentNodeSSC1;
+                        // for each node in added subtree
+                        for (final int nodeKeyInSubtreeSSC2 : substructureTreeKeysSSC2){
+                            // if node is ring closure point
+                            if(completeConnectionTreeSSC2.getNode(nodeKeyInSubtreeSSC2).getParentNodes().size() > 1){
+                                // then check for each (additional) parent node whether there is a bond missing
+                                for (final ConnectionTreeNode parentNodeSSC2 : completeConnectionTreeSSC2.getNode(nodeKeyInSubtreeSSC2).getParentNodes()){
 //                                            // skip current parent node (ancestor of root of subtree)
 //                                            if(parentNodeSSC2.getKey() == childNodeToAppend.getKey()){
 //                                                continue;
 //                                            }
-                                            System.out.println(" FOR " + nodeKeyInSubtreeSSC2 + " -> PARENT NODE: " + parentNodeSSC2.getKey());
-                                            nodeSSC1 = null;
-                                            parentNodeSSC1 = null;
-                                            if(atomMappingsTemp.containsValue(parentNodeSSC2.getKey())){
-                                                System.out.println(" HUHU");
-                                                for (final Entry<Integer, Integer> entry : atomMappingsTemp.entrySet()){
-                                                    if(entry.getValue() == parentNodeSSC2.getKey()){
-                                                        System.out.println(" HUHU 1");
-                                                        parentNodeSSC1 = completeConnectionTreeSSC1.getNode(entry.getKey());
-                                                    }
-                                                    if(entry.getValue() == nodeKeyInSubtreeSSC2){
-                                                        System.out.println(" HUHU 2");
-                                                        nodeSSC1 = completeConnectionTreeSSC1.getNode(entry.getKey());
-                                                    }
-                                                    if((nodeSSC1 != null) && (parentNodeSSC1 != null)){
-                                                        System.out.println(" HUHU 3");
-                                                        System.out.println(" --> EQU: " + nodeSSC1.getKey() + " - " + parentNodeSSC1.getKey());
-                                                        break;
-                                                    }
-                                                }
-                                            }
-                                            if((nodeSSC1 != null) && (parentNodeSSC1 != null)
-                                                    && (ssc1Extended.getSubstructure().getBond(
-                                                    ssc1Extended.getSubstructure().getAtom(nodeSSC1.getKey()),
-                                                    ssc1Extended.getSubstructure().getAtom(parentNodeSSC1.getKey())) == null)){
-                                                bondToAdd = ssc2.getSubstructure().getBond(ssc2.getSubstructure().getAtom(nodeKeyInSubtreeSSC2), ssc2.getSubstructure().getAtom(parentNodeSSC2.getKey())).clone();
-                                                if(Assembly.isValidBondAddition(ssc1Extended.getSubstructure(), nodeSSC1.getKey(), bondToAdd)
-                                                        && Assembly.isValidBondAddition(ssc1Extended.getSubstructure(), parentNodeSSC1.getKey(), bondToAdd)){
-                                                    bondToAdd.setAtom(ssc1Extended.getSubstructure().getAtom(nodeSSC1.getKey()), 0);
-                                                    bondToAdd.setAtom(ssc1Extended.getSubstructure().getAtom(parentNodeSSC1.getKey()), 1);
-                                                    ssc1Extended.getSubstructure().addBond(bondToAdd);
-
-                                                    System.out.println(" --> new BOND: " + nodeSSC1.getKey() + " - " + parentNodeSSC1.getKey());
-                                                }
+                                    Log.trace(Log.Subsystem.ASSEMBLY, () -> " FOR " + nodeKeyInSubtreeSSC2 + " -> PARENT NODE: " + parentNodeSSC2.getKey());
+                                    nodeSSC1 = atomMappingsSSC2ToSSC1[nodeKeyInSubtreeSSC2];
+                                    parentNodeSSC1 = atomMappingsSSC2ToSSC1[parentNodeSSC2.getKey()];
+                                    if (Log.isEnabled(Log.Subsystem.ASSEMBLY, Log.Level.TRACE) && (nodeSSC1 >= 0) && (parentNodeSSC1 >= 0)) {
+                                        Log.log(Log.Subsystem.ASSEMBLY, Log.Level.TRACE, " --> EQU: " + nodeSSC1 + " - " + parentNodeSSC1);
+                                    }
+                                    if((nodeSSC1 >= 0) && (parentNodeSSC1 >= 0)
+                                            && !extension.graph.isBonded(nodeSSC1, parentNodeSSC1)){
+                                        bondOrderToAdd = Utils.getBondOrderAsNumeric(hitContext.getBond(nodeKeyInSubtreeSSC2, parentNodeSSC2.getKey()));
+                                        if(extension.graph.isValidBondAddition(nodeSSC1, bondOrderToAdd)
+                                                && extension.graph.isValidBondAddition(parentNodeSSC1, bondOrderToAdd)){
+                                            extension.graph.addBond(nodeSSC1, parentNodeSSC1, bondOrderToAdd);
+                                            extension.steps.add(new int[]{1, nodeSSC1, parentNodeSSC1, nodeKeyInSubtreeSSC2, parentNodeSSC2.getKey()});
+
+                                            if (Log.isEnabled(Log.Subsystem.ASSEMBLY, Log.Level.TRACE)) {
+                                                Log.log(Log.Subsystem.ASSEMBLY, Log.Level.TRACE, " --> new BOND: " + nodeSSC1 + " - " + parentNodeSSC1);
                                             }
                                         }
                                     }
                                 }
-
-
-                            } else {
-                                System.out.println("is valid bond addition? -> false");
                             }
-
                         }
-                    }
-                }
-                System.out.println("predicted spectrum modi.: " + ssc1Extended.getSubspectrum().getShifts(0));
 
-                // for current HOSE code matching atom pair
-                // if a valid substructure and also subspectrum could be assembled
-                if(Assembly.isValidSubspectrum(ssc1Extended.getSubspectrum(), querySpectrum, shiftTol, thrsMatchFactor)){
 
-                    ssc1Extended.update();
-                    if((ssc1Extended.getAtomCount() == ssc1.getAtomCount())
-                            && (ssc1Extended.getBondCount() == ssc1.getBondCount())){
-                        continue;
+                    } else {
+                        Log.trace(Log.Subsystem.ASSEMBLY, () -> "is valid bond addition? -> false");
+                        assemblyStatistics.countPrune(AssemblyStatistics.PruneReason.INVALID_BOND);
                     }
 
-                    System.out.println("\nvalid SSC built: ");
-                    System.out.println("substructure: " + ssc1Extended.getSubstructure().getAtomCount());
-                    System.out.println("subspectrum : " + ssc1Extended.getSubspectrum().getShifts(0));
-                    System.out.println("assignments : " + ssc1Extended.getAssignments().getAssignments(0) + "\n");
-                    System.out.println("unsaturated atoms: " + ssc1Extended.getUnsaturatedAtomIndices());
+                }
+            }
+        }
+        Log.trace(Log.Subsystem.ASSEMBLY, () -> "added signals: " + extension.signals.size());
 
-                    validSSCExtensions.add(ssc1Extended);
+        return extension;
+    }
 
-//                    Utils.generatePicture(ssc1Extended.getSubstructure(), "results/temp_" + 0 + "_" + ssc2.getIndex() + " -> " + i + "_" + j + ".png");
-                }
+    /**
+     * Builds a tried extension on a clone of SSC1. The returned SSC is not
+     * updated yet.
+     *
+     * @param ssc1 SSC to extend, stays unmodified
+     * @param hitContext context of SSC2
+     * @param extensionPlan
+     * @param extension tried extension
+     * @return
+     * @throws Exception
+     */
+    private static SSC buildExtension(final SSC ssc1, final HitContext hitContext, final ExtensionPlan extensionPlan, final Extension extension) throws Exception {
+        final int j = extensionPlan.atomIndexSSC2;
+        final SSC ssc1Extended = ssc1.getClone();
+        IAtomContainer substructureToAddSSC2;
+        IBond bondToAdd;
+        for (final int[] step : extension.steps){
+            if(step[0] == 0){
+                // add subtree and bond to its parent
+                bondToAdd = hitContext.getCompleteConnectionTree(j).getBond(step[2], step[1]).clone();
+                substructureToAddSSC2 = hitContext.getSubtreeAtomContainer(j, step[1]);
+                ssc1Extended.getSubstructure().add(substructureToAddSSC2);
+                bondToAdd.setAtom(ssc1Extended.getSubstructure().getAtom((ssc1Extended.getAtomCount() - 1) - (substructureToAddSSC2.getAtomCount() - 1)), 0);
+                bondToAdd.setAtom(ssc1Extended.getSubstructure().getAtom(step[3]), 1);
+            } else {
+                // add ring closure bond
+                bondToAdd = hitContext.getBond(step[3], step[4]).clone();
+                bondToAdd.setAtom(ssc1Extended.getSubstructure().getAtom(step[1]), 0);
+                bondToAdd.setAtom(ssc1Extended.getSubstructure().getAtom(step[2]), 1);
             }
-            System.out.println("\n");
+            ssc1Extended.getSubstructure().addBond(bondToAdd);
+        }
+        // add signals and assignments from added subtructure trees in SSC2 to SSC1
+        for (int l = 0; l < extension.signals.size(); l++){
+            ssc1Extended.getSubspectrum().addSignal(extension.signals.get(l));
+            ssc1Extended.getAssignments().addAssignment(new int[]{extension.signalAtomIndices.get(l)});
         }
 
-        if(validSSCExtensions.isEmpty()){
-            return null;
+        return ssc1Extended;
+    }
+
+    private static boolean isBetterExtension(final Extension extension, final double averageDeviation, final int ordinal,
+                                             final Extension bestExtension, final double bestAverageDeviation, final int bestOrdinal) {
+        if(extension.graph.getAtomCount() != bestExtension.graph.getAtomCount()){
+            return extension.graph.getAtomCount() > bestExtension.graph.getAtomCount();
+        }
+        if(extension.graph.getBondCount() != bestExtension.graph.getBondCount()){
+            return extension.graph.getBondCount() > bestExtension.graph.getBondCount();
+        }
+        if(Double.compare(averageDeviation, bestAverageDeviation) != 0){
+            return Double.compare(averageDeviation, bestAverageDeviation) < 0;
         }
 
-        validSSCExtensions.sort((validExtendedSSC1, validExtendedSSC2) -> {
-            final int atomCountComp = -1 * Integer.compare(validExtendedSSC1.getAtomCount(), validExtendedSSC2.getAtomCount());
-            if(atomCountComp != 0){
-                return atomCountComp;
-            }
-            final int bondCountComp = -1 * Integer.compare(validExtendedSSC1.getBondCount(), validExtendedSSC2.getBondCount());
-            if(bondCountComp != 0){
-                return bondCountComp;
+        return ordinal < bestOrdinal;
+    }
+
+    public static SSC assemblyCore(final SSC ssc1, final HitContext hitContext, final Spectrum querySpectrum, final int minMatchingSphereCount, final double shiftTol, final double thrsMatchFactor,
+                                   final SearchBudget searchBudget, final SubspectrumValidator subspectrumValidator, final AssemblyStatistics assemblyStatistics) throws Exception {
+        final SSC ssc2 = hitContext.getSSC();
+        assemblyStatistics.countAssemblyCoreCall();
+
+//        // potential approach via spectral matching first (or only)
+//        final Assignment assignment = Matcher.matchSpectra(ssc2.getSubspectrum(), ssc1.getSubspectrum(), 0, 0, shiftTol);
+//        System.out.println(" --> match assignments: " + assignment.isFullyAssigned(0) + " -> " + assignment.getAssignments(0));
+////        System.out.println(" ---> atom pairs: ");
+//        HashMap<Integer, Integer> atomMappingsTemp = new HashMap<>();
+//        for (int i = 0; i < assignment.getAssignmentsCount(); i++) { // iterate over ssc2 signal count via assignments
+////            System.out.println(ssc2.getAssignments().getAssignment(0, i) + " - " + ssc1.getAssignments().getAssignment(0, assignment.getAssignment(0, i)));
+//            if(ssc1.getAssignments().getAssignment(0, assignment.getAssignment(0, i)) != null){
+//                atomMappingsTemp.put(ssc1.getAssignments().getAssignment(0, assignment.getAssignment(0, i)), ssc2.getAssignments().getAssignment(0, i));
+//            }
+//        }
+//        for (final Entry<Integer, Integer> entry : atomMappingsTemp.entrySet()){
+//            System.out.println("-> mapped atoms     : " + entry.getKey() + " - " + entry.getValue());
+//            if(ssc1.isUnsaturated(entry.getKey())){
+//                System.out.println("-> is unsaturated!");
+//            }
+//        }
+//        HashMap<Integer, Integer> atomMappings = Assembly.getAtomMappingsHOSECode(ssc1, ssc2, Assembly.getOverlapsHOSECodeCore(ssc1, ssc2, atomMappingsTemp, minMatchingSphereCount, shiftTol), atomMappingsTemp);
+
+
+
+//        // 1. check for partial structural identity (overlaps) via MCSS
+//        // atom mapping by maximum common (valid) subgraph
+//        HashMap<Integer, Integer> atomMappings = Assembly.getAtomMappingsMCSS(ssc1, ssc2, Assembly.getMaximumCommonSubgraph(ssc1, ssc2, shiftTol));
+
+
+        long stageStartTime = System.nanoTime();
+        HashMap<Integer, ArrayList<Integer[]>> overlapsHOSECodeNew = Assembly.getOverlapsHOSECodeNew(ssc1, ssc2, minMatchingSphereCount, shiftTol, assemblyStatistics);
+        assemblyStatistics.addTime(AssemblyStatistics.Stage.OVERLAP_DETECTION, stageStartTime);
+        if(overlapsHOSECodeNew.isEmpty()){
+            assemblyStatistics.countPrune(AssemblyStatistics.PruneReason.NO_OVERLAP);
+            return ssc1;
+        }
+
+        // 1. collect the possible extensions of all overlapping atom pairs without building them
+        final ArrayList<ExtensionPlan> extensionPlans = Assembly.getExtensionPlans(ssc1, hitContext, overlapsHOSECodeNew, minMatchingSphereCount, assemblyStatistics);
+        // 2. try the extensions with the highest possible atom count first;
+        // the order of max. matching sphere (descending) and overlap index is kept for equal atom counts
+        extensionPlans.sort((extensionPlan1, extensionPlan2) -> {
+            final int maxAtomCountComp = -1 * Integer.compare(extensionPlan1.maxAtomCount, extensionPlan2.maxAtomCount);
+            if(maxAtomCountComp != 0){
+                return maxAtomCountComp;
             }
 
-            return  Double.compare(Matcher.calculateAverageDeviation(validExtendedSSC1.getSubspectrum(), querySpectrum, 0, 0, shiftTol), Matcher.calculateAverageDeviation(validExtendedSSC2.getSubspectrum(), querySpectrum, 0, 0, shiftTol));
+            return Integer.compare(extensionPlan1.ordinal, extensionPlan2.ordinal);
         });
 
-        for (int i = 0; i < validSSCExtensions.size(); i++){
-            System.out.println(" -------> for valid extension " + i + " with size " + validSSCExtensions.get(i).getAtomCount() + " and " + validSSCExtensions.get(i).getBondCount() + " and " + Matcher.calculateAverageDeviation(validSSCExtensions.get(i).getSubspectrum(), querySpectrum, 0, 0, shiftTol));
+        // the validator has to contain exactly the signals of SSC1; the added signals of each extension are rolled back
+        final SubspectrumValidator validator;
+        if(subspectrumValidator != null){
+            validator = subspectrumValidator;
+        } else {
+            validator = new SubspectrumValidator(querySpectrum, shiftTol, thrsMatchFactor);
+            validator.addSignals(ssc1.getSubspectrum(), 0);
+        }
+        final int signalCountSSC1 = validator.getSignalCount();
+        // extensions are only tried on the graph of SSC1, only the selected one is built as SSC
+        final AssemblyGraph graphSSC1 = new AssemblyGraph(ssc1.getSubstructure());
+        boolean isValidSubspectrum;
+        Extension extension, bestExtension = null;
+        ExtensionPlan bestExtensionPlan = null;
+        int bestOrdinal = -1;
+        double averageDeviation, bestAverageDeviation = Double.MAX_VALUE;
+        for (final ExtensionPlan extensionPlan : extensionPlans){
+            // stop cooperatively if the time limit or node budget is reached; the best extension found so far is used
+            if(searchBudget.isExhausted()){
+                break;
+            }
+            // none of the remaining extensions can contain more atoms than the best one so far
+            if((bestExtension != null) && (extensionPlan.maxAtomCount < bestExtension.graph.getAtomCount())){
+                break;
+            }
+            stageStartTime = System.nanoTime();
+            extension = Assembly.tryExtension(graphSSC1, hitContext, extensionPlan, assemblyStatistics);
+            assemblyStatistics.addTime(AssemblyStatistics.Stage.EXTENSION, stageStartTime);
+
+            // for current HOSE code matching atom pair
+            // if a valid substructure and also subspectrum could be assembled
+            // only the signals added to SSC1 are matched
+            stageStartTime = System.nanoTime();
+            isValidSubspectrum = ((signalCountSSC1 + extension.signals.size()) <= querySpectrum.getSignalCount())
+                    && validator.addSignals(extension.signals);
+            averageDeviation = validator.getAverageDeviation();
+            validator.rollback(signalCountSSC1);
+            assemblyStatistics.addTime(AssemblyStatistics.Stage.VALIDATION, stageStartTime);
+            if(!isValidSubspectrum){
+                assemblyStatistics.countPrune(AssemblyStatistics.PruneReason.INVALID_SPECTRUM);
+                continue;
+            }
+            if((extension.graph.getAtomCount() == graphSSC1.getAtomCount())
+                    && (extension.graph.getBondCount() == graphSSC1.getBondCount())){
+                continue;
+            }
+            // the ranking of valid extensions: atom count (descending), bond count (descending), average deviation (ascending)
+            if (Log.isEnabled(Log.Subsystem.ASSEMBLY, Log.Level.TRACE)) {
+                Log.log(Log.Subsystem.ASSEMBLY, Log.Level.TRACE, " -------> for valid extension " + extensionPlan.ordinal + " with size " + extension.graph.getAtomCount() + " and " + extension.graph.getBondCount() + " and " + averageDeviation);
+            }
+            if((bestExtension == null)
+                    || Assembly.isBetterExtension(extension, averageDeviation, extensionPlan.ordinal, bestExtension, bestAverageDeviation, bestOrdinal)){
+                bestExtension = extension;
+                bestExtensionPlan = extensionPlan;
+                bestAverageDeviation = averageDeviation;
+                bestOrdinal = extensionPlan.ordinal;
+            }
+        }
+
+        if(bestExtension == null){
+            return null;
+        }
+        stageStartTime = System.nanoTime();
+        final SSC bestSSCExtension = Assembly.buildExtension(ssc1, hitContext, bestExtensionPlan, bestExtension);
+        assemblyStatistics.addTime(AssemblyStatistics.Stage.CLONING, stageStartTime);
+        // only the selected extension is completed, and only around the atoms where it was extended;
+        // atoms and bonds of the extension were appended to the ones of SSC1
+        final LinkedHashSet<Integer> changedAtomIndices = new LinkedHashSet<>();
+        for (int k = ssc1.getAtomCount(); k < bestSSCExtension.getAtomCount(); k++){
+            changedAtomIndices.add(k);
+        }
+        for (int k = ssc1.getBondCount(); k < bestSSCExtension.getBondCount(); k++){
+            changedAtomIndices.add(bestSSCExtension.getSubstructure().indexOf(bestSSCExtension.getSubstructure().getBond(k).getAtom(0)));
+            changedAtomIndices.add(bestSSCExtension.getSubstructure().indexOf(bestSSCExtension.getSubstructure().getBond(k).getAtom(1)));
+        }
+        stageStartTime = System.nanoTime();
+        bestSSCExtension.update(changedAtomIndices);
+        assemblyStatistics.addTime(AssemblyStatistics.Stage.HOSE_BUILDING, stageStartTime);
+        if (Log.isEnabled(Log.Subsystem.ASSEMBLY, Log.Level.TRACE)) {
+            Log.log(Log.Subsystem.ASSEMBLY, Log.Level.TRACE, "\nvalid SSC built: ");
+            Log.log(Log.Subsystem.ASSEMBLY, Log.Level.TRACE, "substructure: " + bestSSCExtension.getSubstructure().getAtomCount());
+            Log.log(Log.Subsystem.ASSEMBLY, Log.Level.TRACE, "subspectrum : " + bestSSCExtension.getSubspectrum().getShifts(0));
+            Log.log(Log.Subsystem.ASSEMBLY, Log.Level.TRACE, "assignments : " + bestSSCExtension.getAssignments().getAssignments(0) + "\n");
+            Log.log(Log.Subsystem.ASSEMBLY, Log.Level.TRACE, "unsaturated atoms: " + bestSSCExtension.getUnsaturatedAtomIndices());
         }
 
-        return validSSCExtensions.get(0);//return ssc1;
+        return bestSSCExtension;//return ssc1;
 
 
 
@@ -0,0 +1,409 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2019 Michael Wenk [https://github.com/michaelwenk]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package assembly;
+
+import casekit.NMR.Utils;
+import casekit.NMR.model.Spectrum;
+import logging.Log;
+import model.SSC;
+import model.SSCLibrary;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Class for the parts of the assembly process of a single query spectrum
+ * which are shared by all search strategies, see
+ * {@link assembly.strategy.AssemblyStrategy}: start SSCs, extension of
+ * intermediates via
+ * {@link Assembly#assemblyCore(SSC, HitContext, Spectrum, int, double, double, SearchBudget, SubspectrumValidator, AssemblyStatistics)},
+ * submission of final SSC candidates, search budget, statistics and a
+ * thread pool. <br>
+ * The start SSCs are given by their ranked SSC indices. The ranked SSCs
+ * added to a start SSC are in ranked order, and the start SSCs up to that
+ * one in start order are not added, see
+ * {@link #isExtension(long, long)}. So each combination of ranked SSCs is
+ * built from one start SSC only. <br>
+ * All methods can be used by several threads at once, but a
+ * {@link SubspectrumValidator} passed to them must belong to the calling
+ * thread.
+ *
+ * @author Michael Wenk [https://github.com/michaelwenk]
+ */
+public class AssemblyEngine {
+
+    private final SSCLibrary rankedSSCLibrary;
+    // ranked SSC indices of the start SSCs and the position of each ranked SSC in them, -1 for no start SSC
+    private final ArrayList<Long> startSSCIndices;
+    private final int[] startPositions;
+    private final int minMatchingSphereCount, nThreads;
+    private final Spectrum querySpectrum;
+    private final double thrsMatchFactor, shiftTol;
+    private final SearchBudget searchBudget;
+    private final DepictionStage depictionStage;
+    private final OverlapCompatibility overlapCompatibility;
+    private final SphereContainment sphereContainment;
+    private final HitContext[] hitContexts;
+    private final SolutionValidationStage solutionValidationStage;
+    private final AssemblyStatistics assemblyStatistics;
+    private final ExecutorService executor;
+
+    public AssemblyEngine(final SSCLibrary rankedSSCLibrary, final List<Long> startSSCIndices, final int minMatchingSphereCount, final Spectrum querySpectrum, final double thrsMatchFactor,
+                          final double shiftTol, final SearchBudget searchBudget, final DepictionStage depictionStage, final OverlapCompatibility overlapCompatibility,
+                          final SphereContainment sphereContainment, final HitContext[] hitContexts, final SolutionValidationStage solutionValidationStage, final AssemblyStatistics assemblyStatistics, final int nThreads) {
+        this.rankedSSCLibrary = rankedSSCLibrary;
+        this.startSSCIndices = new ArrayList<>(startSSCIndices);
+        this.startPositions = new int[(int) rankedSSCLibrary.getSSCCount()];
+        Arrays.fill(this.startPositions, -1);
+        for (int i = 0; i < this.startSSCIndices.size(); i++) {
+            this.startPositions[this.startSSCIndices.get(i).intValue()] = i;
+        }
+        this.minMatchingSphereCount = minMatchingSphereCount;
+        this.querySpectrum = querySpectrum;
+        this.thrsMatchFactor = thrsMatchFactor;
+        this.shiftTol = shiftTol;
+        this.searchBudget = searchBudget;
+        this.depictionStage = depictionStage;
+        this.overlapCompatibility = overlapCompatibility;
+        this.sphereContainment = sphereContainment;
+        this.hitContexts = hitContexts;
+        this.solutionValidationStage = solutionValidationStage;
+        this.assemblyStatistics = assemblyStatistics;
+        this.nThreads = nThreads;
+        this.executor = Utils.initExecuter(nThreads);
+    }
+
+    public long getNStarts() {
+        return this.startSSCIndices.size();
+    }
+
+    /**
+     * Returns the ranked SSC indices of the start SSCs, in start order. The
+     * returned list must not be modified.
+     *
+     * @return
+     */
+    public ArrayList<Long> getStartSSCIndices() {
+        return this.startSSCIndices;
+    }
+
+    /**
+     * Checks whether a ranked SSC can be added to the intermediates of a
+     * start SSC: the start SSC itself and the ones before it in start order
+     * are not added, because those combinations are built from the earlier
+     * start SSCs.
+     *
+     * @param startSSCIndex ranked SSC index of the start SSC
+     * @param sscIndex ranked SSC index to extend with
+     * @return
+     */
+    public boolean isExtension(final long startSSCIndex, final long sscIndex) {
+        final int startPosition = this.startPositions[(int) sscIndex];
+
+        return (startPosition < 0) || (startPosition > this.startPositions[(int) startSSCIndex]);
+    }
+
+    public long getSSCCount() {
+        return this.rankedSSCLibrary.getSSCCount();
+    }
+
+    public int getNThreads() {
+        return this.nThreads;
+    }
+
+    public Spectrum getQuerySpectrum() {
+        return this.querySpectrum;
+    }
+
+    public OverlapCompatibility getOverlapCompatibility() {
+        return this.overlapCompatibility;
+    }
+
+    public SearchBudget getSearchBudget() {
+        return this.searchBudget;
+    }
+
+    public AssemblyStatistics getAssemblyStatistics() {
+        return this.assemblyStatistics;
+    }
+
+    /**
+     * Returns a clone of a start SSC.
+     *
+     * @param startSSCIndex ranked SSC index of the start SSC
+     * @return
+     * @throws Exception
+     */
+    public SSC getStartSSC(final long startSSCIndex) throws Exception {
+        // notice: clone (!!!) the SSC contents only; don't use the object (reference) itself because of modifications
+        final SSC startSSC = this.rankedSSCLibrary.getSSC(startSSCIndex).getClone();
+        startSSC.setIndex(startSSCIndex);
+
+        return startSSC;
+    }
+
+    /**
+     * Returns a validator which contains the signals of the given
+     * intermediate.
+     *
+     * @param intermediate
+     * @return
+     */
+    public SubspectrumValidator createSubspectrumValidator(final SSC intermediate) {
+        final SubspectrumValidator subspectrumValidator = new SubspectrumValidator(this.querySpectrum, this.shiftTol, this.thrsMatchFactor);
+        subspectrumValidator.addSignals(intermediate.getSubspectrum(), 0);
+
+        return subspectrumValidator;
+    }
+
+    /**
+     * Returns the search state of a start SSC.
+     *
+     * @param startSSC start SSC, see {@link #getStartSSC(long)}
+     * @param startSSCIndex
+     * @return
+     */
+    public SearchState createStartState(final SSC startSSC, final long startSSCIndex) {
+        final LinkedHashSet<Long> path = new LinkedHashSet<>();
+        path.add(startSSCIndex);
+
+        return new SearchState(startSSC, path, (BitSet) this.overlapCompatibility.getCompatibleSSCIndices(startSSCIndex).clone(), this.querySpectrum.getSignalCount(),
+                this.createSubspectrumValidator(startSSC).getAverageDeviation());
+    }
+
+    /**
+     * Returns the search states of all start SSCs. Start SSCs which are
+     * already final SSC candidates are submitted for validation instead.
+     *
+     * @return
+     * @throws Exception
+     */
+    public ArrayList<SearchState> getStartStates() throws Exception {
+        final ArrayList<SearchState> startStates = new ArrayList<>();
+        SSC startSSC;
+        for (final long startSSCIndex : this.startSSCIndices) {
+            startSSC = this.getStartSSC(startSSCIndex);
+            if (this.submitIfFinalSSCCandidate(startSSC, 0)) {
+                continue;
+            }
+            startStates.add(this.createStartState(startSSC, startSSCIndex));
+        }
+
+        return startStates;
+    }
+
+    /**
+     * Returns the search state of an intermediate which was built by
+     * extending the intermediate of another state by a ranked SSC.
+     *
+     * @param parentState
+     * @param newIntermediate
+     * @param sscIndex index of ranked SSC used for the extension
+     * @param averageDeviation average deviation of the new intermediate's
+     * subspectrum
+     * @return
+     */
+    public SearchState createChildState(final SearchState parentState, final SSC newIntermediate, final long sscIndex, final double averageDeviation) {
+        final LinkedHashSet<Long> newPath = new LinkedHashSet<>(parentState.getPath());
+        newPath.add(sscIndex);
+        final BitSet newCompatibleSSCIndices = (BitSet) parentState.getCompatibleSSCIndices().clone();
+        newCompatibleSSCIndices.or(this.overlapCompatibility.getCompatibleSSCIndices(sscIndex));
+
+        return new SearchState(newIntermediate, newPath, newCompatibleSSCIndices, this.querySpectrum.getSignalCount(), averageDeviation);
+    }
+
+    /**
+     * Checks whether a ranked SSC is contained in a ranked SSC of a path, see
+     * {@link SphereContainment#isSubsumed(long, Collection)}. Such an SSC can
+     * not add anything to the intermediate of the path and is counted as
+     * pruned.
+     *
+     * @param sscIndex
+     * @param path indices of ranked SSCs of an intermediate
+     * @return
+     */
+    public boolean isSubsumed(final long sscIndex, final Collection<Long> path) {
+        if (!this.sphereContainment.isSubsumed(sscIndex, path)) {
+            return false;
+        }
+        this.assemblyStatistics.countPrune(AssemblyStatistics.PruneReason.SUBSUMED_FRAGMENT);
+
+        return true;
+    }
+
+    /**
+     * Requests the expansion of one node from the search budget and counts
+     * it for the given start SSC.
+     *
+     * @param startSSCIndex
+     * @return false if the search budget is exhausted
+     */
+    public boolean expandNode(final long startSSCIndex) {
+        if (!this.searchBudget.expandNode()) {
+            return false;
+        }
+        this.assemblyStatistics.countExpandedNode(startSSCIndex);
+
+        return true;
+    }
+
+    /**
+     * Extends an intermediate by a ranked SSC. The intermediate itself is not
+     * modified. An extended intermediate is also submitted for depiction.
+     *
+     * @param intermediate intermediate to extend
+     * @param sscIndex index of ranked SSC to extend with
+     * @param subspectrumValidator validator containing exactly the signals of
+     * the intermediate, or null
+     * @return the extended intermediate, or null if nothing could be added
+     * @throws Exception
+     */
+    public SSC extend(final SSC intermediate, final long sscIndex, final SubspectrumValidator subspectrumValidator) throws Exception {
+        final SSC newIntermediate = Assembly.assemblyCore(intermediate, this.hitContexts[(int) sscIndex], this.querySpectrum, this.minMatchingSphereCount, this.shiftTol,
+                this.thrsMatchFactor, this.searchBudget, subspectrumValidator, this.assemblyStatistics);
+        // nothing added
+        if ((newIntermediate == null) || (newIntermediate == intermediate)) {
+            return null;
+        }
+        this.depictionStage.submit(newIntermediate.getSubstructure());
+
+        return newIntermediate;
+    }
+
+    /**
+     * Checks whether an intermediate is a final SSC candidate, see
+     * {@link Assembly#isFinalSSCCandidate(SSC, Spectrum)}. Such an
+     * intermediate can not be extended anymore.
+     *
+     * @param intermediate
+     * @return
+     */
+    public boolean isFinalSSCCandidate(final SSC intermediate) {
+        return Assembly.isFinalSSCCandidate(intermediate, this.querySpectrum);
+    }
+
+    /**
+     * Submits an intermediate for validation in background if it is a final
+     * SSC candidate, see {@link #isFinalSSCCandidate(SSC)}. A submitted
+     * intermediate must not be modified anymore.
+     *
+     * @param intermediate
+     * @param depth search depth of the intermediate, i.e. number of
+     * extensions of its start SSC; a negative value means unknown
+     * @return whether the intermediate was submitted and can not be extended
+     * anymore
+     */
+    public boolean submitIfFinalSSCCandidate(final SSC intermediate, final int depth) {
+        if (!this.isFinalSSCCandidate(intermediate)) {
+            return false;
+        }
+        this.solutionValidationStage.submit(intermediate, depth);
+
+        return true;
+    }
+
+    /**
+     * Extends the intermediate of a state by each ranked SSC after its last
+     * added one (see {@link SearchState#getNextSSCIndex()} and
+     * {@link #isExtension(long, long)}) which could overlap with its path,
+     * until the search budget is exhausted.
+     * Final SSC candidates are submitted for validation.
+     *
+     * @param searchState state to expand
+     * @return the states of all extended intermediates which are no final
+     * SSC candidates
+     * @throws Exception
+     */
+    public ArrayList<SearchState> expand(final SearchState searchState) throws Exception {
+        final ArrayList<SearchState> childStates = new ArrayList<>();
+        // keeps the matched signals of the intermediate of this state; the added signals of each child are rolled back
+        final SubspectrumValidator subspectrumValidator = this.createSubspectrumValidator(searchState.getIntermediate());
+        final int signalCount = subspectrumValidator.getSignalCount();
+        SSC newIntermediate;
+        double averageDeviation;
+        for (long i = searchState.getNextSSCIndex(); i < this.getSSCCount(); i++) {
+            // skip ranked SSCs without any possible overlap to the current path and start SSCs of other searches
+            if (!searchState.isCompatible(i) || !this.isExtension(searchState.getStartSSCIndex(), i)) {
+                continue;
+            }
+            // skip smaller sphere versions of an SSC in the current path
+            if (this.isSubsumed(i, searchState.getPath())) {
+                continue;
+            }
+            if (!this.expandNode(searchState.getStartSSCIndex())) {
+                break;
+            }
+            newIntermediate = this.extend(searchState.getIntermediate(), i, subspectrumValidator);
+            if (newIntermediate == null) {
+                continue;
+            }
+            // a candidate can not be extended anymore; it is validated in background while the search goes on
+            if (this.submitIfFinalSSCCandidate(newIntermediate, searchState.getPath().size())) {
+                continue;
+            }
+            subspectrumValidator.addSignals(newIntermediate.getSubspectrum(), signalCount);
+            averageDeviation = subspectrumValidator.getAverageDeviation();
+            subspectrumValidator.rollback(signalCount);
+            childStates.add(this.createChildState(searchState, newIntermediate, i, averageDeviation));
+        }
+
+        return childStates;
+    }
+
+    /**
+     * Executes tasks in the thread pool of this engine and waits until all
+     * are done.
+     *
+     * @param callables tasks
+     * @param <T> result type
+     * @return results in the order of the tasks
+     * @throws InterruptedException
+     */
+    public <T> ArrayList<T> invokeAll(final List<Callable<T>> callables) throws InterruptedException {
+        final ArrayList<Callable<T>> loggingCallables = new ArrayList<>();
+        for (final Callable<T> callable : callables) {
+            loggingCallables.add(() -> {
+                try {
+                    return callable.call();
+                } finally {
+                    // write buffered log messages of this thread, if any
+                    Log.flush();
+                }
+            });
+        }
+        final ArrayList<T> results = new ArrayList<>();
+        for (final Future<T> future : this.executor.invokeAll(loggingCallables)) {
+            try {
+                results.add(future.get());
+            } catch (ExecutionException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        return results;
+    }
+
+    /**
+     * Stops the thread pool of this engine.
+     */
+    public void close() {
+        Utils.stopExecuter(this.executor, 5);
+    }
+}
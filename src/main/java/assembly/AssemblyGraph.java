@@ -0,0 +1,189 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2019 Michael Wenk [https://github.com/michaelwenk]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package assembly;
+
+import casekit.NMR.Utils;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IBond;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+
+/**
+ * Class for a lightweight molecular graph used while trying extensions in
+ * the assembly process. <br>
+ * Atoms are indices, bonds are kept in int adjacency arrays and each atom
+ * keeps its valency and a running bond order sum (incl. implicit hydrogens),
+ * so that bond checks and bond additions cost O(degree). Atoms and bonds can
+ * only be appended. A graph is built from an {@link IAtomContainer} once and
+ * the atom indices are the same in both.
+ *
+ * @author Michael Wenk [https://github.com/michaelwenk]
+ */
+public class AssemblyGraph {
+
+    private int atomCount, bondCount;
+    private int[][] neighbors;
+    private float[][] bondOrders;
+    private int[] degrees;
+    private float[] bondOrderSums;
+    // null valencies are stored as -1
+    private int[] valencies;
+
+    /**
+     * Creates a graph of the atoms and bonds in an atom container.
+     *
+     * @param ac atom container
+     */
+    public AssemblyGraph(final IAtomContainer ac) {
+        this.init(ac.getAtomCount());
+        final IdentityHashMap<IAtom, Integer> atomIndices = new IdentityHashMap<>();
+        for (int i = 0; i < ac.getAtomCount(); i++) {
+            atomIndices.put(ac.getAtom(i), i);
+            this.addAtom(ac.getAtom(i).getValency(), (ac.getAtom(i).getImplicitHydrogenCount() != null) ? ac.getAtom(i).getImplicitHydrogenCount() : 0);
+        }
+        for (final IBond bond : ac.bonds()) {
+            this.addBond(atomIndices.get(bond.getAtom(0)), atomIndices.get(bond.getAtom(1)), Utils.getBondOrderAsNumeric(bond));
+        }
+    }
+
+    /**
+     * Creates a copy of a graph.
+     *
+     * @param graph graph to copy
+     */
+    public AssemblyGraph(final AssemblyGraph graph) {
+        this.atomCount = graph.atomCount;
+        this.bondCount = graph.bondCount;
+        this.neighbors = new int[graph.neighbors.length][];
+        this.bondOrders = new float[graph.bondOrders.length][];
+        for (int i = 0; i < graph.atomCount; i++) {
+            this.neighbors[i] = graph.neighbors[i].clone();
+            this.bondOrders[i] = graph.bondOrders[i].clone();
+        }
+        this.degrees = graph.degrees.clone();
+        this.bondOrderSums = graph.bondOrderSums.clone();
+        this.valencies = graph.valencies.clone();
+    }
+
+    private void init(final int capacity) {
+        this.atomCount = 0;
+        this.bondCount = 0;
+        this.neighbors = new int[Integer.max(1, capacity)][];
+        this.bondOrders = new float[Integer.max(1, capacity)][];
+        this.degrees = new int[Integer.max(1, capacity)];
+        this.bondOrderSums = new float[Integer.max(1, capacity)];
+        this.valencies = new int[Integer.max(1, capacity)];
+    }
+
+    private int addAtom(final Integer valency, final float bondOrderSum) {
+        if (this.atomCount == this.degrees.length) {
+            final int capacity = 2 * this.degrees.length;
+            this.neighbors = Arrays.copyOf(this.neighbors, capacity);
+            this.bondOrders = Arrays.copyOf(this.bondOrders, capacity);
+            this.degrees = Arrays.copyOf(this.degrees, capacity);
+            this.bondOrderSums = Arrays.copyOf(this.bondOrderSums, capacity);
+            this.valencies = Arrays.copyOf(this.valencies, capacity);
+        }
+        this.neighbors[this.atomCount] = new int[4];
+        this.bondOrders[this.atomCount] = new float[4];
+        this.degrees[this.atomCount] = 0;
+        this.bondOrderSums[this.atomCount] = bondOrderSum;
+        this.valencies[this.atomCount] = (valency != null) ? valency : -1;
+        this.atomCount++;
+
+        return this.atomCount - 1;
+    }
+
+    private void addNeighbor(final int atomIndex, final int neighborIndex, final float bondOrder) {
+        if (this.degrees[atomIndex] == this.neighbors[atomIndex].length) {
+            this.neighbors[atomIndex] = Arrays.copyOf(this.neighbors[atomIndex], 2 * this.neighbors[atomIndex].length);
+            this.bondOrders[atomIndex] = Arrays.copyOf(this.bondOrders[atomIndex], 2 * this.bondOrders[atomIndex].length);
+        }
+        this.neighbors[atomIndex][this.degrees[atomIndex]] = neighborIndex;
+        this.bondOrders[atomIndex][this.degrees[atomIndex]] = bondOrder;
+        this.degrees[atomIndex]++;
+        this.bondOrderSums[atomIndex] += bondOrder;
+    }
+
+    /**
+     * Adds a bond between two existing atoms.
+     *
+     * @param atomIndex1
+     * @param atomIndex2
+     * @param bondOrder numeric bond order, see
+     * {@link Utils#getBondOrderAsNumeric(IBond)}
+     */
+    public void addBond(final int atomIndex1, final int atomIndex2, final float bondOrder) {
+        this.addNeighbor(atomIndex1, atomIndex2, bondOrder);
+        this.addNeighbor(atomIndex2, atomIndex1, bondOrder);
+        this.bondCount++;
+    }
+
+    /**
+     * Appends all atoms and bonds of another graph, in the same order.
+     *
+     * @param graph graph to append
+     * @return index of the first appended atom
+     */
+    public int addGraph(final AssemblyGraph graph) {
+        final int offset = this.atomCount;
+        for (int i = 0; i < graph.atomCount; i++) {
+            // the bond order sum is built again by the bonds below
+            float bondOrderSumWithoutBonds = graph.bondOrderSums[i];
+            for (int k = 0; k < graph.degrees[i]; k++) {
+                bondOrderSumWithoutBonds -= graph.bondOrders[i][k];
+            }
+            this.addAtom((graph.valencies[i] >= 0) ? graph.valencies[i] : null, bondOrderSumWithoutBonds);
+        }
+        for (int i = 0; i < graph.atomCount; i++) {
+            for (int k = 0; k < graph.degrees[i]; k++) {
+                if (i < graph.neighbors[i][k]) {
+                    this.addBond(offset + i, offset + graph.neighbors[i][k], graph.bondOrders[i][k]);
+                }
+            }
+        }
+
+        return offset;
+    }
+
+    public boolean isBonded(final int atomIndex1, final int atomIndex2) {
+        for (int k = 0; k < this.degrees[atomIndex1]; k++) {
+            if (this.neighbors[atomIndex1][k] == atomIndex2) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Checks whether a bond with the given order can be added to an atom
+     * without exceeding its valency.
+     *
+     * @param atomIndex
+     * @param bondOrder numeric bond order
+     * @return
+     */
+    public boolean isValidBondAddition(final int atomIndex, final float bondOrder) {
+        return (this.valencies[atomIndex] >= 0) && ((this.bondOrderSums[atomIndex] + bondOrder) <= this.valencies[atomIndex]);
+    }
+
+    public int getAtomCount() {
+        return this.atomCount;
+    }
+
+    public int getBondCount() {
+        return this.bondCount;
+    }
+}
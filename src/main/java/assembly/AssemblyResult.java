@@ -0,0 +1,77 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2019 Michael Wenk [https://github.com/michaelwenk]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package assembly;
+
+import model.SSC;
+
+import java.util.HashMap;
+
+/**
+ * Result of the assembly process for one query spectrum.
+ *
+ * @author Michael Wenk [https://github.com/michaelwenk]
+ */
+public class AssemblyResult {
+
+    private final HashMap<Long, SSC> solutions;
+    private final HashMap<Long, Integer> solutionDepths;
+    private final boolean truncated;
+    private final long expandedNodesCount;
+    private final AssemblyStatistics assemblyStatistics;
+
+    public AssemblyResult(final HashMap<Long, SSC> solutions, final HashMap<Long, Integer> solutionDepths, final boolean truncated, final long expandedNodesCount, final AssemblyStatistics assemblyStatistics) {
+        this.solutions = solutions;
+        this.solutionDepths = solutionDepths;
+        this.truncated = truncated;
+        this.expandedNodesCount = expandedNodesCount;
+        this.assemblyStatistics = assemblyStatistics;
+    }
+
+    /**
+     * Returns the found solutions (structure hashes as keys, see
+     * {@link Assembly#addSolution(HashMap, SSC)}).
+     *
+     * @return
+     */
+    public HashMap<Long, SSC> getSolutions() {
+        return this.solutions;
+    }
+
+    /**
+     * Returns the search depth of each solution, i.e. the number of
+     * extensions of its start SSC, keyed as in {@link #getSolutions()}.
+     *
+     * @return
+     */
+    public HashMap<Long, Integer> getSolutionDepths() {
+        return this.solutionDepths;
+    }
+
+    /**
+     * Returns whether the assembly process was stopped because its time limit
+     * or node budget was reached. The solutions are then the ones found
+     * until that point.
+     *
+     * @return
+     */
+    public boolean isTruncated() {
+        return this.truncated;
+    }
+
+    public long getExpandedNodesCount() {
+        return this.expandedNodesCount;
+    }
+
+    public AssemblyStatistics getAssemblyStatistics() {
+        return this.assemblyStatistics;
+    }
+}
@@ -0,0 +1,267 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2019 Michael Wenk [https://github.com/michaelwenk]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package assembly;
+
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Class for counters and timers of the assembly process of a single query
+ * spectrum. <br>
+ * One instance is shared by all assembly threads of a query. Counters and
+ * timers are striped ({@link LongAdder}), so updating them costs only a few
+ * nanoseconds and they can stay enabled. The summary can be written as JSON
+ * file next to the results.
+ *
+ * @author Michael Wenk [https://github.com/michaelwenk]
+ */
+public class AssemblyStatistics {
+
+    /**
+     * Reasons why an extension attempt, a search state or a final SSC
+     * candidate is discarded.
+     */
+    public enum PruneReason {
+        // no overlapping atom pair of an intermediate and a ranked SSC
+        NO_OVERLAP,
+        // overlapping atom pair with an unsaturated root atom
+        UNSATURATED_ROOT,
+        // overlapping atom pair symmetry-equivalent to an already tested pair
+        SYMMETRIC_OVERLAP,
+        // bond to add would exceed the valency of an atom
+        INVALID_BOND,
+        // extended subspectrum does not match the query spectrum
+        INVALID_SPECTRUM,
+        // final SSC candidate rejected by full validation or kekulization
+        INVALID_FINAL_SSC,
+        // intermediate with the same structure as another one in the same BFS level
+        DUPLICATE_STATE,
+        // intermediate dropped because its BFS level exceeded the frontier limit
+        FRONTIER_LIMIT,
+        // ranked SSC contained in a larger sphere SSC of the same source atom in the current path
+        SUBSUMED_FRAGMENT
+    }
+
+    /**
+     * Stages of the assembly process with measured wall-clock time, summed
+     * over all threads.
+     */
+    public enum Stage {
+        // overlap compatibility and hit contexts
+        PREPARATION,
+        // overlapping atom pairs via HOSE codes
+        OVERLAP_DETECTION,
+        // trying extension plans on graphs
+        EXTENSION,
+        // subspectrum validation of extensions and final SSC candidates
+        VALIDATION,
+        // rebuilding HOSE codes and connection trees of selected extensions
+        HOSE_BUILDING,
+        // cloning of intermediates
+        CLONING
+    }
+
+    // ranked SSC indices of the start SSCs and the expanded nodes of each start SSC, in start order
+    private final ArrayList<Long> startSSCIndices;
+    private final HashMap<Long, Integer> startPositions;
+    private final AtomicLongArray expandedNodesCounts;
+    private final LongAdder assemblyCoreCallsCount;
+    // tested overlap atom pairs per max. matching sphere; -1 for pairs without any matching sphere
+    private final ConcurrentHashMap<Integer, LongAdder> testedOverlapPairsCounts;
+    // confirmed solutions per search depth, i.e. number of extensions of the start SSC
+    private final ConcurrentHashMap<Integer, LongAdder> solutionDepthsCounts;
+    private final LongAdder[] pruneCounts;
+    private final LongAdder[] stageTimes;
+
+    /**
+     * Creates new statistics with all counters and timers at zero. The start
+     * SSCs are the first ranked SSCs.
+     *
+     * @param nStarts number of start SSCs
+     */
+    public AssemblyStatistics(final int nStarts) {
+        this(AssemblyStatistics.buildFirstIndices(nStarts));
+    }
+
+    /**
+     * Creates new statistics with all counters and timers at zero.
+     *
+     * @param startSSCIndices ranked SSC indices of the start SSCs
+     */
+    public AssemblyStatistics(final List<Long> startSSCIndices) {
+        this.startSSCIndices = new ArrayList<>(startSSCIndices);
+        this.startPositions = new HashMap<>();
+        for (int i = 0; i < this.startSSCIndices.size(); i++) {
+            this.startPositions.put(this.startSSCIndices.get(i), i);
+        }
+        this.expandedNodesCounts = new AtomicLongArray(this.startSSCIndices.size());
+        this.assemblyCoreCallsCount = new LongAdder();
+        this.testedOverlapPairsCounts = new ConcurrentHashMap<>();
+        this.solutionDepthsCounts = new ConcurrentHashMap<>();
+        this.pruneCounts = new LongAdder[PruneReason.values().length];
+        for (int i = 0; i < this.pruneCounts.length; i++) {
+            this.pruneCounts[i] = new LongAdder();
+        }
+        this.stageTimes = new LongAdder[Stage.values().length];
+        for (int i = 0; i < this.stageTimes.length; i++) {
+            this.stageTimes[i] = new LongAdder();
+        }
+    }
+
+    private static ArrayList<Long> buildFirstIndices(final int count) {
+        final ArrayList<Long> indices = new ArrayList<>();
+        for (long i = 0; i < count; i++) {
+            indices.add(i);
+        }
+
+        return indices;
+    }
+
+    /**
+     * Counts an expanded node for a start SSC.
+     *
+     * @param startSSCIndex ranked SSC index of the start SSC
+     */
+    public void countExpandedNode(final long startSSCIndex) {
+        final Integer startPosition = this.startPositions.get(startSSCIndex);
+        if (startPosition != null) {
+            this.expandedNodesCounts.incrementAndGet(startPosition);
+        }
+    }
+
+    public void countAssemblyCoreCall() {
+        this.assemblyCoreCallsCount.increment();
+    }
+
+    public void countTestedOverlapPair(final int maxMatchingSphere) {
+        this.testedOverlapPairsCounts.computeIfAbsent(Integer.max(-1, maxMatchingSphere), key -> new LongAdder()).increment();
+    }
+
+    /**
+     * Counts a confirmed solution at the search depth it was found in.
+     *
+     * @param depth number of extensions of the start SSC; a negative value
+     * means unknown and is not counted
+     */
+    public void countSolutionDepth(final int depth) {
+        if (depth >= 0) {
+            this.solutionDepthsCounts.computeIfAbsent(depth, key -> new LongAdder()).increment();
+        }
+    }
+
+    public void countPrune(final PruneReason pruneReason) {
+        this.pruneCounts[pruneReason.ordinal()].increment();
+    }
+
+    public void countPrunes(final PruneReason pruneReason, final long count) {
+        this.pruneCounts[pruneReason.ordinal()].add(count);
+    }
+
+    /**
+     * Adds the time since the given start time to a stage.
+     *
+     * @param stage stage
+     * @param startTime start time as given by {@link System#nanoTime()}
+     */
+    public void addTime(final Stage stage, final long startTime) {
+        this.stageTimes[stage.ordinal()].add(System.nanoTime() - startTime);
+    }
+
+    public long getExpandedNodesCount() {
+        long count = 0;
+        for (int i = 0; i < this.expandedNodesCounts.length(); i++) {
+            count += this.expandedNodesCounts.get(i);
+        }
+
+        return count;
+    }
+
+    public long getPruneCount(final PruneReason pruneReason) {
+        return this.pruneCounts[pruneReason.ordinal()].sum();
+    }
+
+    /**
+     * Returns the summed time of a stage in milliseconds.
+     *
+     * @param stage
+     * @return
+     */
+    public double getTime(final Stage stage) {
+        return this.stageTimes[stage.ordinal()].sum() / 1e6;
+    }
+
+    /**
+     * Returns a summary of all counters and timers (in milliseconds).
+     *
+     * @return
+     */
+    public JsonObject toJson() {
+        final JsonObject jsonObject = new JsonObject();
+        jsonObject.addProperty("expandedNodes", this.getExpandedNodesCount());
+        final JsonArray startSSCIndices = new JsonArray();
+        final JsonArray expandedNodesPerStart = new JsonArray();
+        for (int i = 0; i < this.expandedNodesCounts.length(); i++) {
+            startSSCIndices.add(this.startSSCIndices.get(i));
+            expandedNodesPerStart.add(this.expandedNodesCounts.get(i));
+        }
+        jsonObject.add("startSSCIndices", startSSCIndices);
+        jsonObject.add("expandedNodesPerStart", expandedNodesPerStart);
+        jsonObject.addProperty("assemblyCoreCalls", this.assemblyCoreCallsCount.sum());
+        final JsonObject testedOverlapPairs = new JsonObject();
+        for (final Integer maxMatchingSphere : new TreeMap<>(this.testedOverlapPairsCounts).keySet()) {
+            testedOverlapPairs.addProperty(String.valueOf(maxMatchingSphere), this.testedOverlapPairsCounts.get(maxMatchingSphere).sum());
+        }
+        jsonObject.add("testedOverlapPairsPerSphere", testedOverlapPairs);
+        final JsonObject solutionsPerDepth = new JsonObject();
+        for (final Integer depth : new TreeMap<>(this.solutionDepthsCounts).keySet()) {
+            solutionsPerDepth.addProperty(String.valueOf(depth), this.solutionDepthsCounts.get(depth).sum());
+        }
+        jsonObject.add("solutionsPerDepth", solutionsPerDepth);
+        final JsonObject prunes = new JsonObject();
+        for (final PruneReason pruneReason : PruneReason.values()) {
+            prunes.addProperty(pruneReason.name(), this.getPruneCount(pruneReason));
+        }
+        jsonObject.add("prunes", prunes);
+        final JsonObject times = new JsonObject();
+        for (final Stage stage : Stage.values()) {
+            times.addProperty(stage.name(), this.getTime(stage));
+        }
+        jsonObject.add("timesInMs", times);
+
+        return jsonObject;
+    }
+
+    /**
+     * Writes the summary as JSON file.
+     *
+     * @param pathToFile path to file
+     * @throws IOException
+     */
+    public void write(final String pathToFile) throws IOException {
+        try (final BufferedWriter bw = new BufferedWriter(new FileWriter(pathToFile))) {
+            bw.append(new GsonBuilder().setPrettyPrinting().create().toJson(this.toJson()));
+            bw.newLine();
+        }
+    }
+}
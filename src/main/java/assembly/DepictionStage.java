@@ -0,0 +1,159 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2019 Michael Wenk [https://github.com/michaelwenk]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package assembly;
+
+import casekit.NMR.Utils;
+import logging.Log;
+import org.openscience.cdk.interfaces.IAtomContainer;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Class for depicting intermediates of the assembly process of a single
+ * query spectrum in background. <br>
+ * The assembly threads only submit intermediates into a bounded queue which
+ * is consumed by a separate depiction thread. A submission never blocks: if
+ * the queue is full, the intermediate is dropped. Only every n-th submitted
+ * intermediate is depicted (sampling rate) and at most a given number of
+ * pictures is written.
+ *
+ * @author Michael Wenk [https://github.com/michaelwenk]
+ */
+public class DepictionStage {
+
+    private final static int QUEUE_CAPACITY = 64;
+
+    private final String pathToOutputsFolder;
+    private final long querySpectrumCounter, samplingRate, maxDepictions;
+    private final ArrayBlockingQueue<Object[]> queue;
+    private final AtomicLong submittedCount, acceptedCount, droppedCount, depictedCount;
+    private final Thread depictionThread;
+    private volatile boolean closed;
+
+    /**
+     * Creates and starts a new depiction stage.
+     *
+     * @param pathToOutputsFolder path to outputs folder to write the pictures
+     * into
+     * @param querySpectrumCounter index of the query spectrum, used in file
+     * names
+     * @param samplingRate depict every n-th submitted intermediate; a value
+     * smaller than 1 disables the depiction
+     * @param maxDepictions maximum number of pictures to write; a value smaller
+     * than 1 means no limit
+     */
+    public DepictionStage(final String pathToOutputsFolder, final long querySpectrumCounter, final long samplingRate, final long maxDepictions) {
+        this.pathToOutputsFolder = pathToOutputsFolder;
+        this.querySpectrumCounter = querySpectrumCounter;
+        this.samplingRate = samplingRate;
+        this.maxDepictions = maxDepictions;
+        this.queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        this.submittedCount = new AtomicLong(0);
+        this.acceptedCount = new AtomicLong(0);
+        this.droppedCount = new AtomicLong(0);
+        this.depictedCount = new AtomicLong(0);
+        this.closed = false;
+
+        if (this.isEnabled()) {
+            this.depictionThread = new Thread(this::depict, "depiction-" + querySpectrumCounter);
+            this.depictionThread.setDaemon(true);
+            this.depictionThread.start();
+        } else {
+            this.depictionThread = null;
+        }
+    }
+
+    /**
+     * Returns a depiction stage which does nothing.
+     *
+     * @return
+     */
+    public static DepictionStage disabled() {
+        return new DepictionStage(null, -1, -1, -1);
+    }
+
+    public boolean isEnabled() {
+        return this.samplingRate > 0;
+    }
+
+    /**
+     * Submits an intermediate structure for depiction. This method never
+     * blocks. The structure is cloned only if it is selected by sampling.
+     *
+     * @param substructure structure to depict
+     */
+    public void submit(final IAtomContainer substructure) {
+        if (!this.isEnabled() || this.closed) {
+            return;
+        }
+        if ((this.submittedCount.getAndIncrement() % this.samplingRate) != 0) {
+            return;
+        }
+        final long depictionIndex = this.acceptedCount.getAndIncrement();
+        if ((this.maxDepictions > 0) && (depictionIndex >= this.maxDepictions)) {
+            return;
+        }
+        try {
+            if (!this.queue.offer(new Object[]{depictionIndex, substructure.clone()})) {
+                this.droppedCount.incrementAndGet();
+            }
+        } catch (CloneNotSupportedException e) {
+            this.droppedCount.incrementAndGet();
+        }
+    }
+
+    private void depict() {
+        Object[] item;
+        while (!this.closed || !this.queue.isEmpty()) {
+            try {
+                item = this.queue.poll(100, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                break;
+            }
+            if (item == null) {
+                continue;
+            }
+            try {
+                Utils.generatePicture((IAtomContainer) item[1], this.pathToOutputsFolder + "/temp_" + this.querySpectrumCounter + "_" + item[0] + ".png");
+                this.depictedCount.incrementAndGet();
+            } catch (Exception e) {
+                final Object intermediateNumber = item[0];
+                Log.debug(Log.Subsystem.ASSEMBLY, () -> "could not depict intermediate " + intermediateNumber + ": " + e.getMessage());
+            }
+        }
+        // write buffered log messages of this thread, if any
+        Log.flush();
+    }
+
+    /**
+     * Stops accepting new intermediates and waits until the already queued
+     * ones are depicted.
+     *
+     * @throws InterruptedException
+     */
+    public void close() throws InterruptedException {
+        this.closed = true;
+        if (this.depictionThread != null) {
+            this.depictionThread.join();
+        }
+    }
+
+    public long getDepictedCount() {
+        return this.depictedCount.get();
+    }
+
+    public long getDroppedCount() {
+        return this.droppedCount.get();
+    }
+}
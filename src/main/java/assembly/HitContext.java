@@ -0,0 +1,244 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2019 Michael Wenk [https://github.com/michaelwenk]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package assembly;
+
+import casekit.NMR.Utils;
+import hose.HOSECodeBuilder;
+import hose.model.ConnectionTree;
+import model.SSC;
+import model.SSCLibrary;
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IBond;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Class for the library-side data of a ranked SSC (hit) which is needed to
+ * extend intermediates by that SSC. <br>
+ * A ranked SSC does not change during the assembly of a query spectrum, so
+ * its connection trees, subtrees and bonds are built only once and then
+ * shared by all assembly threads. Returned trees, lists and bonds must not
+ * be modified; bonds and atom containers to insert into an intermediate have
+ * to be cloned (see {@link #getSubtreeAtomContainer(int, int)}).
+ *
+ * @author Michael Wenk [https://github.com/michaelwenk]
+ */
+public class HitContext {
+
+    private final SSC ssc;
+    // complete and max. sphere connection trees per (saturated) root atom
+    private final ConnectionTree[] completeConnectionTrees, maxSphereConnectionTrees;
+    // bonds per pair of atom indices, in both orders
+    private final HashMap<Long, IBond> bonds;
+    // subtrees of complete connection trees per pair of root atom and subtree root node key
+    private final ConcurrentHashMap<Long, Subtree> subtrees;
+
+    private static class Subtree {
+        private final ConnectionTree connectionTree;
+        private final ArrayList<Integer> keys;
+        private final IAtomContainer atomContainer;
+        private final AssemblyGraph graph;
+
+        private Subtree(final ConnectionTree connectionTree) throws CDKException {
+            this.connectionTree = connectionTree;
+            this.keys = new ArrayList<>(connectionTree.getKeys(true));
+            this.atomContainer = HOSECodeBuilder.buildAtomContainer(connectionTree);
+            this.graph = new AssemblyGraph(this.atomContainer);
+        }
+    }
+
+    private HitContext(final SSC ssc) throws CDKException {
+        this.ssc = ssc;
+        this.completeConnectionTrees = new ConnectionTree[ssc.getAtomCount()];
+        this.maxSphereConnectionTrees = new ConnectionTree[ssc.getAtomCount()];
+        // only saturated atoms are allowed as overlap roots
+        for (int j = 0; j < ssc.getAtomCount(); j++) {
+            if (ssc.isUnsaturated(j)) {
+                continue;
+            }
+            this.completeConnectionTrees[j] = HOSECodeBuilder.buildConnectionTree(ssc.getSubstructure(), j, null);
+            this.maxSphereConnectionTrees[j] = ssc.getConnectionTree(j, ssc.getMaxSphere());
+        }
+        this.bonds = new HashMap<>();
+        int atomIndex1, atomIndex2;
+        for (final IBond bond : ssc.getSubstructure().bonds()) {
+            atomIndex1 = ssc.getSubstructure().indexOf(bond.getAtom(0));
+            atomIndex2 = ssc.getSubstructure().indexOf(bond.getAtom(1));
+            this.bonds.put(this.toKey(atomIndex1, atomIndex2), bond);
+            this.bonds.put(this.toKey(atomIndex2, atomIndex1), bond);
+        }
+        this.subtrees = new ConcurrentHashMap<>();
+        // build the symmetry classes once before the SSC is shared by all assembly threads
+        ssc.getSymmetryClasses();
+    }
+
+    /**
+     * Builds the contexts for all SSCs in a ranked SSC library in parallel.
+     * The SSC indices have to be 0, 1, 2 etc., as given by
+     * {@link search.SSCRanker#getHits()}, and are the indices in the returned
+     * array.
+     *
+     * @param rankedSSCLibrary ranked SSC library
+     * @param nThreads number of threads to use
+     * @return
+     * @throws InterruptedException
+     */
+    public static HitContext[] build(final SSCLibrary rankedSSCLibrary, final int nThreads) throws InterruptedException {
+        final HitContext[] hitContexts = new HitContext[(int) rankedSSCLibrary.getSSCCount()];
+        final ExecutorService executor = Utils.initExecuter(nThreads);
+        final ArrayList<Callable<Void>> callables = new ArrayList<>();
+        for (int i = 0; i < hitContexts.length; i++) {
+            final int sscIndex = i;
+            callables.add(() -> {
+                hitContexts[sscIndex] = new HitContext(rankedSSCLibrary.getSSC(sscIndex));
+                return null;
+            });
+        }
+        executor.invokeAll(callables)
+                .forEach(future -> {
+                    try {
+                        future.get();
+                    } catch (InterruptedException | ExecutionException e) {
+                        throw new IllegalStateException(e);
+                    }
+                });
+        Utils.stopExecuter(executor, 5);
+
+        return hitContexts;
+    }
+
+    private long toKey(final int index1, final int index2) {
+        return ((long) index1 * this.ssc.getAtomCount()) + index2;
+    }
+
+    public SSC getSSC() {
+        return this.ssc;
+    }
+
+    /**
+     * Returns the connection tree of a saturated atom without sphere limit.
+     *
+     * @param rootAtomIndex
+     * @return null if the atom is unsaturated or the index is not valid
+     */
+    public ConnectionTree getCompleteConnectionTree(final int rootAtomIndex) {
+        if ((rootAtomIndex < 0) || (rootAtomIndex >= this.completeConnectionTrees.length)) {
+            return null;
+        }
+
+        return this.completeConnectionTrees[rootAtomIndex];
+    }
+
+    /**
+     * Returns the connection tree of a saturated atom with the max. sphere of
+     * the SSC as limit.
+     *
+     * @param rootAtomIndex
+     * @return null if the atom is unsaturated or the index is not valid
+     */
+    public ConnectionTree getMaxSphereConnectionTree(final int rootAtomIndex) {
+        if ((rootAtomIndex < 0) || (rootAtomIndex >= this.maxSphereConnectionTrees.length)) {
+            return null;
+        }
+
+        return this.maxSphereConnectionTrees[rootAtomIndex];
+    }
+
+    /**
+     * Returns the bond between two atoms of the SSC substructure.
+     *
+     * @param atomIndex1
+     * @param atomIndex2
+     * @return null if both atoms are not bonded
+     */
+    public IBond getBond(final int atomIndex1, final int atomIndex2) {
+        return this.bonds.get(this.toKey(atomIndex1, atomIndex2));
+    }
+
+    private Subtree getSubtreeEntry(final int rootAtomIndex, final int nodeKey) throws CDKException {
+        final ConnectionTree completeConnectionTree = this.getCompleteConnectionTree(rootAtomIndex);
+        if ((completeConnectionTree == null) || !completeConnectionTree.containsKey(nodeKey)) {
+            throw new CDKException(Thread.currentThread().getStackTrace()[1].getMethodName() + ": no subtree for node " + nodeKey + " in connection tree of atom " + rootAtomIndex);
+        }
+        final long key = this.toKey(rootAtomIndex, nodeKey);
+        Subtree subtree = this.subtrees.get(key);
+        if (subtree == null) {
+            // concurrent builds of the same subtree are equal, so the first one is kept
+            final Subtree builtSubtree = new Subtree(hose.Utils.getSubtree(completeConnectionTree, nodeKey));
+            subtree = this.subtrees.putIfAbsent(key, builtSubtree);
+            if (subtree == null) {
+                subtree = builtSubtree;
+            }
+        }
+
+        return subtree;
+    }
+
+    /**
+     * Returns the subtree with the given node as root in the complete
+     * connection tree of a root atom.
+     *
+     * @param rootAtomIndex
+     * @param nodeKey
+     * @return
+     * @throws CDKException if there is no such node
+     */
+    public ConnectionTree getSubtree(final int rootAtomIndex, final int nodeKey) throws CDKException {
+        return this.getSubtreeEntry(rootAtomIndex, nodeKey).connectionTree;
+    }
+
+    /**
+     * Returns the node keys (atom indices) of a subtree without ring
+     * closures, in the order of the atoms in its atom container.
+     *
+     * @param rootAtomIndex
+     * @param nodeKey
+     * @return
+     * @throws CDKException if there is no such node
+     */
+    public ArrayList<Integer> getSubtreeKeys(final int rootAtomIndex, final int nodeKey) throws CDKException {
+        return this.getSubtreeEntry(rootAtomIndex, nodeKey).keys;
+    }
+
+    /**
+     * Returns a new copy of the atom container of a subtree, which can be
+     * inserted into an intermediate.
+     *
+     * @param rootAtomIndex
+     * @param nodeKey
+     * @return
+     * @throws CDKException if there is no such node
+     * @throws CloneNotSupportedException
+     */
+    public IAtomContainer getSubtreeAtomContainer(final int rootAtomIndex, final int nodeKey) throws CDKException, CloneNotSupportedException {
+        return this.getSubtreeEntry(rootAtomIndex, nodeKey).atomContainer.clone();
+    }
+
+    /**
+     * Returns the graph of a subtree's atom container, with the same atom
+     * order. It must not be modified, but can be appended to other graphs.
+     *
+     * @param rootAtomIndex
+     * @param nodeKey
+     * @return
+     * @throws CDKException if there is no such node
+     */
+    public AssemblyGraph getSubtreeGraph(final int rootAtomIndex, final int nodeKey) throws CDKException {
+        return this.getSubtreeEntry(rootAtomIndex, nodeKey).graph;
+    }
+}
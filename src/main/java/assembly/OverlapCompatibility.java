@@ -0,0 +1,235 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2019 Michael Wenk [https://github.com/michaelwenk]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package assembly;
+
+import casekit.NMR.Utils;
+import match.Match;
+import model.SSC;
+import model.SSCLibrary;
+import org.openscience.cdk.exception.CDKException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Class for the pairwise overlap compatibility of the SSCs in a ranked SSC
+ * library. <br>
+ * Two ranked SSCs are compatible if at least one atom pair of both matches
+ * in at least the minimum number of spheres, see
+ * {@link Match#getMaximumMatchingSphereHOSECode(model.SSC, model.SSC, int, int, double)}.
+ * The candidate atom pairs are found by a hash join on the HOSE codes of all
+ * atoms at the minimum matching sphere, so the expensive sphere-wise match
+ * is only done for atom pairs with equal HOSE codes. <br>
+ * The compatibility of a path is the one of any of its ranked SSCs. This is a
+ * heuristic: an intermediate can have atoms with other environments than
+ * in the ranked SSCs it was built from, so an extension which
+ * {@link Assembly#assemblyCore(SSC, HitContext, casekit.NMR.model.Spectrum, int, double, double, SearchBudget, SubspectrumValidator, AssemblyStatistics)}
+ * would accept could be skipped. Therefore pruning by compatibility is
+ * opt-in; without it, all pairs are compatible, see {@link #buildAll(int)}.
+ *
+ * @author Michael Wenk [https://github.com/michaelwenk]
+ */
+public class OverlapCompatibility {
+
+    private final BitSet[] compatibleSSCIndices;
+    private final long compatiblePairsCount;
+
+    private OverlapCompatibility(final BitSet[] compatibleSSCIndices, final long compatiblePairsCount) {
+        this.compatibleSSCIndices = compatibleSSCIndices;
+        this.compatiblePairsCount = compatiblePairsCount;
+    }
+
+    private OverlapCompatibility(final BitSet[] compatibleSSCIndices) {
+        this.compatibleSSCIndices = compatibleSSCIndices;
+        long count = 0;
+        for (int i = 0; i < compatibleSSCIndices.length; i++) {
+            count += compatibleSSCIndices[i].get(i + 1, compatibleSSCIndices.length).cardinality();
+        }
+        this.compatiblePairsCount = count;
+    }
+
+    /**
+     * Builds the compatibility matrix for all SSCs in a ranked SSC library in
+     * parallel. The SSC indices have to be 0, 1, 2 etc., as given by
+     * {@link search.SSCRanker#getHits()}.
+     *
+     * @param rankedSSCLibrary ranked SSC library
+     * @param minMatchingSphereCount minimum matching sphere count
+     * @param shiftTol shift tolerance
+     * @param nThreads number of threads to use
+     * @return
+     * @throws InterruptedException
+     */
+    public static OverlapCompatibility build(final SSCLibrary rankedSSCLibrary, final int minMatchingSphereCount, final double shiftTol, final int nThreads) throws InterruptedException {
+        final int sscCount = (int) rankedSSCLibrary.getSSCCount();
+        final String[][] HOSECodes = new String[sscCount][];
+        final BitSet[] compatibleSSCIndices = new BitSet[sscCount];
+
+        // 1. HOSE codes of all atoms at minimum matching sphere
+        ExecutorService executor = Utils.initExecuter(nThreads);
+        final ArrayList<Callable<Void>> HOSECodeCallables = new ArrayList<>();
+        for (int i = 0; i < sscCount; i++) {
+            final int sscIndex = i;
+            HOSECodeCallables.add(() -> {
+                HOSECodes[sscIndex] = OverlapCompatibility.buildHOSECodes(rankedSSCLibrary.getSSC(sscIndex), minMatchingSphereCount);
+                return null;
+            });
+        }
+        OverlapCompatibility.invokeAll(executor, HOSECodeCallables);
+        Utils.stopExecuter(executor, 5);
+
+        // 2. inverted index: HOSE code -> pairs of SSC index and atom index
+        final HashMap<String, ArrayList<int[]>> HOSECodeIndex = new HashMap<>();
+        for (int i = 0; i < sscCount; i++) {
+            for (int j = 0; j < HOSECodes[i].length; j++) {
+                if (HOSECodes[i][j] == null) {
+                    continue;
+                }
+                HOSECodeIndex.computeIfAbsent(HOSECodes[i][j], key -> new ArrayList<>()).add(new int[]{i, j});
+            }
+        }
+
+        // 3. join each SSC with all higher ranked SSCs having an atom with same HOSE code
+        executor = Utils.initExecuter(nThreads);
+        final ArrayList<Callable<Void>> joinCallables = new ArrayList<>();
+        for (int i = 0; i < sscCount; i++) {
+            final int sscIndex = i;
+            joinCallables.add(() -> {
+                compatibleSSCIndices[sscIndex] = OverlapCompatibility.join(rankedSSCLibrary, sscIndex, HOSECodes[sscIndex], HOSECodeIndex, minMatchingSphereCount, shiftTol);
+                return null;
+            });
+        }
+        OverlapCompatibility.invokeAll(executor, joinCallables);
+        Utils.stopExecuter(executor, 5);
+
+        // 4. the compatibility is symmetric
+        for (int i = 0; i < sscCount; i++) {
+            for (int j = compatibleSSCIndices[i].nextSetBit(i + 1); j >= 0; j = compatibleSSCIndices[i].nextSetBit(j + 1)) {
+                compatibleSSCIndices[j].set(i);
+            }
+        }
+
+        return new OverlapCompatibility(compatibleSSCIndices);
+    }
+
+    /**
+     * Returns a compatibility in which all ranked SSCs are pairwise
+     * compatible, i.e. no extension is skipped.
+     *
+     * @param sscCount number of ranked SSCs
+     * @return
+     */
+    public static OverlapCompatibility buildAll(final int sscCount) {
+        // one shared set for all SSCs; the returned sets must not be modified anyway
+        final BitSet allSSCIndices = new BitSet(sscCount);
+        allSSCIndices.set(0, sscCount);
+        final BitSet[] compatibleSSCIndices = new BitSet[sscCount];
+        Arrays.fill(compatibleSSCIndices, allSSCIndices);
+
+        return new OverlapCompatibility(compatibleSSCIndices, ((long) sscCount * (sscCount - 1)) / 2);
+    }
+
+    private static String[] buildHOSECodes(final SSC ssc, final int minMatchingSphereCount) {
+        final String[] HOSECodes = new String[ssc.getAtomCount()];
+        // no atom pair can match in more spheres than the SSC contains
+        if (minMatchingSphereCount > ssc.getMaxSphere()) {
+            return HOSECodes;
+        }
+        for (int j = 0; j < ssc.getAtomCount(); j++) {
+            try {
+                HOSECodes[j] = ssc.getHOSECode(j, Integer.max(0, minMatchingSphereCount));
+            } catch (CDKException e) {
+                HOSECodes[j] = null;
+            }
+        }
+
+        return HOSECodes;
+    }
+
+    private static BitSet join(final SSCLibrary rankedSSCLibrary, final int sscIndex, final String[] HOSECodes, final HashMap<String, ArrayList<int[]>> HOSECodeIndex,
+                               final int minMatchingSphereCount, final double shiftTol) {
+        final BitSet compatibleSSCIndices = new BitSet((int) rankedSSCLibrary.getSSCCount());
+        final SSC ssc1 = rankedSSCLibrary.getSSC(sscIndex);
+        SSC ssc2;
+        int maxMatchingSphere;
+        for (int i = 0; i < HOSECodes.length; i++) {
+            if (HOSECodes[i] == null) {
+                continue;
+            }
+            for (final int[] entry : HOSECodeIndex.get(HOSECodes[i])) {
+                // each SSC pair is checked once and only until a matching atom pair is found
+                if ((entry[0] <= sscIndex) || compatibleSSCIndices.get(entry[0])) {
+                    continue;
+                }
+                ssc2 = rankedSSCLibrary.getSSC(entry[0]);
+                try {
+                    maxMatchingSphere = Match.getMaximumMatchingSphereHOSECode(ssc1, ssc2, i, entry[1], shiftTol);
+                } catch (CDKException e) {
+                    maxMatchingSphere = -1;
+                }
+                if (maxMatchingSphere >= minMatchingSphereCount) {
+                    compatibleSSCIndices.set(entry[0]);
+                }
+            }
+        }
+
+        return compatibleSSCIndices;
+    }
+
+    private static void invokeAll(final ExecutorService executor, final ArrayList<Callable<Void>> callables) throws InterruptedException {
+        executor.invokeAll(callables)
+                .forEach(future -> {
+                    try {
+                        future.get();
+                    } catch (InterruptedException | ExecutionException e) {
+                        throw new IllegalStateException(e);
+                    }
+                });
+    }
+
+    /**
+     * Returns whether two ranked SSCs have at least one possible overlap.
+     *
+     * @param sscIndex1
+     * @param sscIndex2
+     * @return
+     */
+    public boolean isCompatible(final long sscIndex1, final long sscIndex2) {
+        return this.compatibleSSCIndices[(int) sscIndex1].get((int) sscIndex2);
+    }
+
+    /**
+     * Returns the indices of all ranked SSCs which have at least one possible
+     * overlap with the given ranked SSC. The returned set must not be
+     * modified.
+     *
+     * @param sscIndex
+     * @return
+     */
+    public BitSet getCompatibleSSCIndices(final long sscIndex) {
+        return this.compatibleSSCIndices[(int) sscIndex];
+    }
+
+    /**
+     * Returns the number of compatible pairs of different ranked SSCs.
+     *
+     * @return
+     */
+    public long getCompatiblePairsCount() {
+        return this.compatiblePairsCount;
+    }
+}
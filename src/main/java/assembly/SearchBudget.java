@@ -0,0 +1,117 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2019 Michael Wenk [https://github.com/michaelwenk]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package assembly;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Class for limiting the assembly process of a single query spectrum by a
+ * wall-clock deadline and a maximum number of expanded nodes. <br>
+ * One budget is shared by all assembly threads of a query and is checked
+ * cooperatively by them. Once it is exhausted (or cancelled), the assembly
+ * stops and returns the solutions found so far.
+ *
+ * @author Michael Wenk [https://github.com/michaelwenk]
+ */
+public class SearchBudget {
+
+    private final long deadline, maxExpandedNodes;
+    private final AtomicLong expandedNodesCount;
+    private volatile boolean cancelled, exhausted;
+
+    /**
+     * Creates a new budget which starts immediately.
+     *
+     * @param timeLimit time limit in milliseconds; a value smaller than 1
+     * means no time limit
+     * @param maxExpandedNodes maximum number of expanded nodes, i.e. attempts
+     * to extend an intermediate by a ranked SSC; a value smaller than 1 means
+     * no limit
+     */
+    public SearchBudget(final long timeLimit, final long maxExpandedNodes) {
+        this.deadline = (timeLimit > 0) ? System.currentTimeMillis() + timeLimit : Long.MAX_VALUE;
+        this.maxExpandedNodes = maxExpandedNodes;
+        this.expandedNodesCount = new AtomicLong(0);
+        this.cancelled = false;
+        this.exhausted = false;
+    }
+
+    /**
+     * Returns a budget without any time or node limit. It can still be
+     * cancelled.
+     *
+     * @return
+     */
+    public static SearchBudget unlimited() {
+        return new SearchBudget(-1, -1);
+    }
+
+    /**
+     * Requests the expansion of one node.
+     *
+     * @return false if this budget is already exhausted and the expansion
+     * must not be done
+     */
+    public boolean expandNode() {
+        if (this.isExhausted()) {
+            return false;
+        }
+        this.expandedNodesCount.incrementAndGet();
+
+        return true;
+    }
+
+    /**
+     * Checks whether this budget is exhausted, i.e. its deadline is exceeded,
+     * its node limit is reached, it was cancelled or the calling thread was
+     * interrupted. Once exhausted, a budget stays exhausted.
+     *
+     * @return
+     */
+    public boolean isExhausted() {
+        if (!this.exhausted
+                && (this.cancelled
+                || Thread.currentThread().isInterrupted()
+                || (System.currentTimeMillis() > this.deadline)
+                || ((this.maxExpandedNodes > 0) && (this.expandedNodesCount.get() >= this.maxExpandedNodes)))) {
+            this.exhausted = true;
+        }
+
+        return this.exhausted;
+    }
+
+    /**
+     * Cancels the assembly process using this budget. Running assembly
+     * threads stop at their next check.
+     */
+    public void cancel() {
+        this.cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return this.cancelled;
+    }
+
+    /**
+     * Returns whether the assembly process was stopped early because this
+     * budget was exhausted.
+     *
+     * @return
+     */
+    public boolean isTruncated() {
+        return this.exhausted;
+    }
+
+    public long getExpandedNodesCount() {
+        return this.expandedNodesCount.get();
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2019 Michael Wenk [https://github.com/michaelwenk]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package assembly;
+
+import model.SSC;
+
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+
+/**
+ * Class for a state of an assembly search: an intermediate with its path of
+ * ranked SSC indices, the ranked SSCs which could overlap with at least one
+ * SSC in its path and its score against the query spectrum. <br>
+ * The intermediate, path and set of compatible SSC indices must not be
+ * modified.
+ *
+ * @author Michael Wenk [https://github.com/michaelwenk]
+ */
+public class SearchState {
+
+    private final SSC intermediate;
+    private final LinkedHashSet<Long> path;
+    private final BitSet compatibleSSCIndices;
+    // share of query signals covered by the subspectrum and average shift deviation of the subspectrum
+    private final double signalCoverage, averageDeviation;
+    // number of query signals not covered by the subspectrum yet
+    private final int unassignedSignalCount;
+
+    public SearchState(final SSC intermediate, final LinkedHashSet<Long> path, final BitSet compatibleSSCIndices, final int querySignalCount, final double averageDeviation) {
+        this.intermediate = intermediate;
+        this.path = path;
+        this.compatibleSSCIndices = compatibleSSCIndices;
+        this.signalCoverage = (double) intermediate.getSubspectrum().getSignalCount() / querySignalCount;
+        this.unassignedSignalCount = Integer.max(0, querySignalCount - intermediate.getSubspectrum().getSignalCount());
+        this.averageDeviation = averageDeviation;
+    }
+
+    public SSC getIntermediate() {
+        return this.intermediate;
+    }
+
+    public LinkedHashSet<Long> getPath() {
+        return this.path;
+    }
+
+    public long getStartSSCIndex() {
+        return this.path.iterator().next();
+    }
+
+    /**
+     * Returns the lowest ranked SSC index to extend this state with. The
+     * ranked SSCs added to the start SSC are in ranked order, so it is the
+     * one after the last added SSC, or 0 for a start state.
+     *
+     * @return
+     *
+     * @see AssemblyEngine#isExtension(long, long)
+     */
+    public long getNextSSCIndex() {
+        long lastSSCIndex = -1;
+        int i = 0;
+        for (final long sscIndex : this.path) {
+            // the first one is the start SSC
+            if (i > 0) {
+                lastSSCIndex = sscIndex;
+            }
+            i++;
+        }
+
+        return lastSSCIndex + 1;
+    }
+
+    public boolean isCompatible(final long sscIndex) {
+        return this.compatibleSSCIndices.get((int) sscIndex);
+    }
+
+    public BitSet getCompatibleSSCIndices() {
+        return this.compatibleSSCIndices;
+    }
+
+    public double getSignalCoverage() {
+        return this.signalCoverage;
+    }
+
+    public double getAverageDeviation() {
+        return this.averageDeviation;
+    }
+
+    public int getUnassignedSignalCount() {
+        return this.unassignedSignalCount;
+    }
+
+    /**
+     * Bound of this state: unassigned query signals plus average deviation;
+     * lower is more promising.
+     *
+     * @return
+     */
+    public double getBound() {
+        return this.unassignedSignalCount + this.averageDeviation;
+    }
+
+    /**
+     * Compares two states by their score: signal coverage (descending),
+     * average deviation (ascending) and path (ascending) for a deterministic
+     * order.
+     *
+     * @param searchState1
+     * @param searchState2
+     * @return
+     */
+    public static int compareScores(final SearchState searchState1, final SearchState searchState2) {
+        final int signalCoverageComp = -1 * Double.compare(searchState1.signalCoverage, searchState2.signalCoverage);
+        if (signalCoverageComp != 0) {
+            return signalCoverageComp;
+        }
+        final int averageDeviationComp = Double.compare(searchState1.averageDeviation, searchState2.averageDeviation);
+        if (averageDeviationComp != 0) {
+            return averageDeviationComp;
+        }
+
+        return SearchState.comparePaths(searchState1.path, searchState2.path);
+    }
+
+    /**
+     * Compares two paths element-wise by their ranked SSC indices; a path
+     * is smaller than its extensions.
+     *
+     * @param path1
+     * @param path2
+     * @return
+     */
+    public static int comparePaths(final LinkedHashSet<Long> path1, final LinkedHashSet<Long> path2) {
+        final Iterator<Long> iterator1 = path1.iterator();
+        final Iterator<Long> iterator2 = path2.iterator();
+        int comp;
+        while (iterator1.hasNext() && iterator2.hasNext()) {
+            comp = Long.compare(iterator1.next(), iterator2.next());
+            if (comp != 0) {
+                return comp;
+            }
+        }
+
+        return Boolean.compare(iterator1.hasNext(), iterator2.hasNext());
+    }
+}
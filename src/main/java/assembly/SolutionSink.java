@@ -0,0 +1,226 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2019 Michael Wenk [https://github.com/michaelwenk]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package assembly;
+
+import casekit.NMR.model.Spectrum;
+import logging.Log;
+import model.SSC;
+import model.StructureHash;
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.smiles.SmiFlavor;
+import org.openscience.cdk.smiles.SmilesGenerator;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Class for collecting the solutions of all assembly threads of a single
+ * query spectrum. <br>
+ * Solutions are deduplicated across threads by their structure hash, see
+ * {@link Assembly#addSolution(HashMap, SSC, long)}; the hash is calculated
+ * outside the lock. The search depth of each solution is kept with it. The
+ * SMILES and search depths of new solutions are appended in batches to a
+ * partial results file via a single channel. A batch is written when it
+ * is full or, by a background task, at the latest after the batch interval.
+ * Only complete lines are written, so the file is consistent at any time
+ * and can be tailed.
+ *
+ * @author Michael Wenk [https://github.com/michaelwenk]
+ */
+public class SolutionSink {
+
+    final static int BATCH_SIZE = 32;
+    final static long BATCH_INTERVAL = 1000;
+
+    private final Spectrum querySpectrum;
+    private final HashMap<Long, SSC> solutions;
+    // search depth of each solution, with the same keys as the solutions
+    private final HashMap<Long, Integer> solutionDepths;
+    private final FileChannel channel;
+    // current time in milliseconds
+    private final LongSupplier clock;
+    // writes batches which are due although no further solution arrives
+    private final ScheduledExecutorService flushExecutor;
+    private final StringBuilder batch;
+    private int batchCount;
+    private long lastWriteTime;
+
+    /**
+     * Creates a new solution sink.
+     *
+     * @param querySpectrum query spectrum, used for logging only
+     * @param pathToSolutionsFile path to partial results file, which is
+     * truncated first; null to write no file
+     * @throws IOException
+     */
+    public SolutionSink(final Spectrum querySpectrum, final String pathToSolutionsFile) throws IOException {
+        this(querySpectrum, pathToSolutionsFile, System::currentTimeMillis);
+    }
+
+    /**
+     * Creates a new solution sink with a given clock, which decides whether
+     * a batch is due.
+     *
+     * @param querySpectrum query spectrum, used for logging only
+     * @param pathToSolutionsFile path to partial results file, which is
+     * truncated first; null to write no file
+     * @param clock current time in milliseconds
+     * @throws IOException
+     */
+    SolutionSink(final Spectrum querySpectrum, final String pathToSolutionsFile, final LongSupplier clock) throws IOException {
+        this.querySpectrum = querySpectrum;
+        this.clock = clock;
+        this.solutions = new HashMap<>();
+        this.solutionDepths = new HashMap<>();
+        this.channel = (pathToSolutionsFile != null)
+                ? FileChannel.open(Paths.get(pathToSolutionsFile), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)
+                : null;
+        this.batch = new StringBuilder();
+        this.batchCount = 0;
+        this.lastWriteTime = this.clock.getAsLong();
+        if (this.channel != null) {
+            this.flushExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                final Thread thread = new Thread(runnable, "solution-sink-flush");
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.flushExecutor.scheduleWithFixedDelay(this::flushIfDue, BATCH_INTERVAL, BATCH_INTERVAL, TimeUnit.MILLISECONDS);
+        } else {
+            this.flushExecutor = null;
+        }
+    }
+
+    /**
+     * Adds a solution if there is no solution with the same structure yet.
+     * Thread-safe.
+     *
+     * @param solution solution to add
+     * @param depth search depth of the solution, i.e. number of extensions
+     * of its start SSC; a negative value means unknown
+     * @return whether the solution was added
+     * @throws CDKException
+     * @throws IOException
+     */
+    public boolean add(final SSC solution, final int depth) throws CDKException, IOException {
+        final long structureHash = StructureHash.calculate(solution.getSubstructure());
+        final int solutionsCount;
+        long key = structureHash;
+        synchronized (this.solutions) {
+            if (!Assembly.addSolution(this.solutions, solution, structureHash)) {
+                return false;
+            }
+            // a different structure with the same hash is stored under one of the next keys
+            while (this.solutions.get(key) != solution) {
+                key++;
+            }
+            this.solutionDepths.put(key, depth);
+            solutionsCount = this.solutions.size();
+        }
+        Assembly.logSolution(solutionsCount, solution, structureHash, this.querySpectrum);
+        if (this.channel != null) {
+            this.append(new SmilesGenerator(SmiFlavor.Absolute).create(solution.getSubstructure()) + " " + depth);
+        }
+
+        return true;
+    }
+
+    private synchronized void append(final String line) throws IOException {
+        this.batch.append(line).append(System.lineSeparator());
+        this.batchCount++;
+        if ((this.batchCount >= BATCH_SIZE) || (this.clock.getAsLong() - this.lastWriteTime >= BATCH_INTERVAL)) {
+            this.write();
+        }
+    }
+
+    /**
+     * Writes the current batch if it is due. Called periodically by the
+     * background task.
+     */
+    synchronized void flushIfDue() {
+        if ((this.batchCount == 0) || (this.clock.getAsLong() - this.lastWriteTime < BATCH_INTERVAL) || !this.channel.isOpen()) {
+            return;
+        }
+        try {
+            this.write();
+        } catch (IOException e) {
+            Log.error(Log.Subsystem.ASSEMBLY, () -> "could not write solutions into partial results file: " + e.getMessage());
+        }
+    }
+
+    private void write() throws IOException {
+        if (this.batchCount > 0) {
+            final ByteBuffer buffer = ByteBuffer.wrap(this.batch.toString().getBytes(StandardCharsets.UTF_8));
+            while (buffer.hasRemaining()) {
+                this.channel.write(buffer);
+            }
+            this.batch.setLength(0);
+            this.batchCount = 0;
+        }
+        this.lastWriteTime = this.clock.getAsLong();
+    }
+
+    /**
+     * Writes the remaining batch and closes the partial results file.
+     *
+     * @throws IOException
+     */
+    public void close() throws IOException {
+        if (this.flushExecutor != null) {
+            // no interrupt: an interrupted channel write would close the channel
+            this.flushExecutor.shutdown();
+            try {
+                this.flushExecutor.awaitTermination(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        this.closeChannel();
+    }
+
+    private synchronized void closeChannel() throws IOException {
+        if ((this.channel != null) && this.channel.isOpen()) {
+            this.write();
+            this.channel.close();
+        }
+    }
+
+    /**
+     * Returns the solutions, keyed as in
+     * {@link Assembly#addSolution(HashMap, SSC, long)}. Must not be called
+     * before all solutions are added.
+     *
+     * @return
+     */
+    public HashMap<Long, SSC> getSolutions() {
+        return this.solutions;
+    }
+
+    /**
+     * Returns the search depth of each solution, keyed as in
+     * {@link #getSolutions()}. Must not be called before all solutions are
+     * added.
+     *
+     * @return
+     */
+    public HashMap<Long, Integer> getSolutionDepths() {
+        return this.solutionDepths;
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2019 Michael Wenk [https://github.com/michaelwenk]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package assembly;
+
+import casekit.NMR.Utils;
+import casekit.NMR.model.Spectrum;
+import logging.Log;
+import model.SSC;
+import org.openscience.cdk.exception.CDKException;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Class for the validation of final SSC candidates of the assembly process
+ * of a single query spectrum in background. <br>
+ * The assembly threads only do the cheap checks inline, see
+ * {@link Assembly#isFinalSSCCandidate(SSC, Spectrum)}, and submit the
+ * candidates to a pool of validation threads. These do the full subspectrum
+ * validation and kekulization, see
+ * {@link Assembly#isValidFinalSSC(SSC, Spectrum, double, double)}, and add
+ * the confirmed candidates to the {@link SolutionSink} shared by all
+ * assembly threads.
+ * So the assembly threads can keep expanding while candidates are
+ * validated. The number of pending candidates is limited; if the validation
+ * threads fall behind, submitting blocks the assembly threads.
+ *
+ * @author Michael Wenk [https://github.com/michaelwenk]
+ */
+public class SolutionValidationStage {
+
+    // max. number of pending candidates per validation thread
+    public final static int MAX_PENDING_PER_THREAD = 4;
+
+    private final Spectrum querySpectrum;
+    private final double shiftTol, thrsMatchFactor;
+    private final SolutionSink solutionSink;
+    private final ExecutorService executor;
+    private final Semaphore pendingPermits;
+    // this stage and each pending candidate are registered parties
+    private final Phaser pendingValidations;
+    private final AtomicReference<Exception> failure;
+    private final AtomicLong submittedCount, rejectedCount;
+    private final AssemblyStatistics assemblyStatistics;
+
+    /**
+     * Creates and starts a new validation stage.
+     *
+     * @param querySpectrum query spectrum
+     * @param shiftTol shift tolerance
+     * @param thrsMatchFactor threshold for the match factor
+     * @param nThreads number of validation threads
+     * @param solutionSink sink to add the confirmed candidates to
+     * @param assemblyStatistics statistics to count the rejected candidates
+     * and validation time in
+     */
+    public SolutionValidationStage(final Spectrum querySpectrum, final double shiftTol, final double thrsMatchFactor, final int nThreads, final SolutionSink solutionSink,
+                                   final AssemblyStatistics assemblyStatistics) {
+        this.querySpectrum = querySpectrum;
+        this.shiftTol = shiftTol;
+        this.thrsMatchFactor = thrsMatchFactor;
+        this.solutionSink = solutionSink;
+        this.executor = Utils.initExecuter(nThreads);
+        this.pendingPermits = new Semaphore(Integer.max(1, nThreads) * MAX_PENDING_PER_THREAD);
+        this.pendingValidations = new Phaser(1);
+        this.failure = new AtomicReference<>();
+        this.submittedCount = new AtomicLong(0);
+        this.rejectedCount = new AtomicLong(0);
+        this.assemblyStatistics = assemblyStatistics;
+    }
+
+    /**
+     * Submits a final SSC candidate for validation. This method blocks only
+     * while the max. number of pending candidates is reached. The candidate
+     * must not be modified after submission.
+     *
+     * @param candidate candidate which passed
+     * {@link Assembly#isFinalSSCCandidate(SSC, Spectrum)}
+     * @param depth search depth of the candidate, i.e. number of extensions
+     * of its start SSC; a negative value means unknown
+     */
+    public void submit(final SSC candidate, final int depth) {
+        // pending validations always finish, so waiting for a permit can not dead lock
+        this.pendingPermits.acquireUninterruptibly();
+        this.pendingValidations.register();
+        this.submittedCount.incrementAndGet();
+        try {
+            this.executor.execute(() -> {
+                try {
+                    this.validate(candidate, depth);
+                } catch (CDKException | IOException | RuntimeException e) {
+                    this.failure.compareAndSet(null, e);
+                } finally {
+                    // write buffered log messages of this thread, if any
+                    Log.flush();
+                    this.pendingValidations.arriveAndDeregister();
+                    this.pendingPermits.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            this.pendingValidations.arriveAndDeregister();
+            this.pendingPermits.release();
+            throw e;
+        }
+    }
+
+    private void validate(final SSC candidate, final int depth) throws CDKException, IOException {
+        final long validationStartTime = System.nanoTime();
+        final boolean isValidFinalSSC = Assembly.isValidFinalSSC(candidate, this.querySpectrum, this.shiftTol, this.thrsMatchFactor);
+        this.assemblyStatistics.addTime(AssemblyStatistics.Stage.VALIDATION, validationStartTime);
+        if (!isValidFinalSSC) {
+            this.rejectedCount.incrementAndGet();
+            this.assemblyStatistics.countPrune(AssemblyStatistics.PruneReason.INVALID_FINAL_SSC);
+            return;
+        }
+        if (this.solutionSink.add(candidate, depth)) {
+            Log.debug(Log.Subsystem.ASSEMBLY, () -> "-> solution found at depth " + depth);
+            this.assemblyStatistics.countSolutionDepth(depth);
+        }
+    }
+
+    /**
+     * Waits until all submitted candidates are validated and stops the
+     * validation threads, also if the validation of a candidate failed.
+     *
+     * @throws InterruptedException
+     * @throws IllegalStateException if the validation of a candidate failed
+     */
+    public void close() throws InterruptedException {
+        try {
+            // validations are only submitted by the assembly threads, which are done at this point
+            this.pendingValidations.awaitAdvanceInterruptibly(this.pendingValidations.arrive());
+            if (this.failure.get() != null) {
+                throw new IllegalStateException(this.failure.get());
+            }
+        } finally {
+            Utils.stopExecuter(this.executor, 5);
+        }
+    }
+
+    public long getSubmittedCount() {
+        return this.submittedCount.get();
+    }
+
+    public long getRejectedCount() {
+        return this.rejectedCount.get();
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2019 Michael Wenk [https://github.com/michaelwenk]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package assembly;
+
+import model.SSC;
+import model.SSCLibrary;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+
+/**
+ * Class for the containment links between the SSCs in a ranked SSC library.
+ * <br>
+ * SSCs built from the same source structure and root atom but with
+ * different maximum spheres (see {@link model.SSC#getSourceID()} and
+ * {@link model.SSC#getSourceAtomIndex()}) form a chain: each one is contained
+ * in all ones with a higher maximum sphere. Once a containing SSC is part of
+ * an intermediate, extending it by a contained SSC mostly adds nothing new.
+ * <br>
+ * Skipping contained SSCs is a heuristic: the contained SSC could overlap
+ * with another part of the intermediate than the containing one and add
+ * other atoms there. Therefore pruning by containment is opt-in; without
+ * it, there are no links, see {@link #none(int)}. <br>
+ * SSCs without a source, e.g. from libraries of older versions, have no
+ * links.
+ *
+ * @author Michael Wenk [https://github.com/michaelwenk]
+ */
+public class SphereContainment {
+
+    // indices of ranked SSCs containing each ranked SSC
+    private final BitSet[] containingSSCIndices;
+    private final long linksCount;
+
+    private SphereContainment(final BitSet[] containingSSCIndices) {
+        this.containingSSCIndices = containingSSCIndices;
+        long count = 0;
+        for (final BitSet bitSet : containingSSCIndices) {
+            count += bitSet.cardinality();
+        }
+        this.linksCount = count;
+    }
+
+    /**
+     * Builds the containment links for all SSCs in a ranked SSC library. The
+     * SSC indices have to be 0, 1, 2 etc., as given by
+     * {@link search.SSCRanker#getHits()}.
+     *
+     * @param rankedSSCLibrary ranked SSC library
+     * @return
+     */
+    public static SphereContainment build(final SSCLibrary rankedSSCLibrary) {
+        final int sscCount = (int) rankedSSCLibrary.getSSCCount();
+        final BitSet[] containingSSCIndices = new BitSet[sscCount];
+        // ranked SSCs per pair of source structure and source atom
+        final HashMap<String, ArrayList<Integer>> sourceGroups = new HashMap<>();
+        SSC ssc;
+        for (int i = 0; i < sscCount; i++) {
+            containingSSCIndices[i] = new BitSet(sscCount);
+            ssc = rankedSSCLibrary.getSSC(i);
+            if (!ssc.hasSource()) {
+                continue;
+            }
+            sourceGroups.computeIfAbsent(ssc.getSourceID() + "_" + ssc.getSourceAtomIndex(), key -> new ArrayList<>()).add(i);
+        }
+        for (final ArrayList<Integer> sourceGroup : sourceGroups.values()) {
+            for (final int sscIndex1 : sourceGroup) {
+                for (final int sscIndex2 : sourceGroup) {
+                    if (rankedSSCLibrary.getSSC(sscIndex1).getMaxSphere() < rankedSSCLibrary.getSSC(sscIndex2).getMaxSphere()) {
+                        containingSSCIndices[sscIndex1].set(sscIndex2);
+                    }
+                }
+            }
+        }
+
+        return new SphereContainment(containingSSCIndices);
+    }
+
+    /**
+     * Returns a containment without links, i.e. no ranked SSC is skipped.
+     *
+     * @param sscCount number of ranked SSCs
+     * @return
+     */
+    public static SphereContainment none(final int sscCount) {
+        // one shared set for all SSCs; the returned sets must not be modified anyway
+        final BitSet noSSCIndices = new BitSet(sscCount);
+        final BitSet[] containingSSCIndices = new BitSet[sscCount];
+        Arrays.fill(containingSSCIndices, noSSCIndices);
+
+        return new SphereContainment(containingSSCIndices);
+    }
+
+    /**
+     * Returns the indices of all ranked SSCs which contain the given ranked
+     * SSC. The returned set must not be modified.
+     *
+     * @param sscIndex
+     * @return
+     */
+    public BitSet getContainingSSCIndices(final long sscIndex) {
+        return this.containingSSCIndices[(int) sscIndex];
+    }
+
+    /**
+     * Checks whether a ranked SSC is contained in one of the ranked SSCs of a
+     * path.
+     *
+     * @param sscIndex
+     * @param path indices of ranked SSCs
+     * @return
+     */
+    public boolean isSubsumed(final long sscIndex, final Collection<Long> path) {
+        final BitSet containingSSCIndices = this.containingSSCIndices[(int) sscIndex];
+        for (int j = containingSSCIndices.nextSetBit(0); j >= 0; j = containingSSCIndices.nextSetBit(j + 1)) {
+            if (path.contains((long) j)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Returns the number of pairs of a ranked SSC and a ranked SSC containing
+     * it.
+     *
+     * @return
+     */
+    public long getLinksCount() {
+        return this.linksCount;
+    }
+}
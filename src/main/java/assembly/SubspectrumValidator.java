@@ -0,0 +1,173 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2019 Michael Wenk [https://github.com/michaelwenk]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package assembly;
+
+import casekit.NMR.Utils;
+import casekit.NMR.match.Matcher;
+import casekit.NMR.model.Assignment;
+import casekit.NMR.model.Signal;
+import casekit.NMR.model.Spectrum;
+import start.Start;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Class for the incremental validation of a growing subspectrum against a
+ * query spectrum, see
+ * {@link Assembly#isValidSubspectrum(Spectrum, Spectrum, double, double)}.
+ * <br>
+ * Each signal is matched only once when it is added. The matched query
+ * signals, their usage counts and the deviation sums are kept, so that
+ * adding k signals costs O(k) and a rollback to a previous signal count
+ * restores the previous state. <br>
+ * An instance is not thread-safe and is meant to follow one path of the
+ * assembly process of one thread.
+ *
+ * @author Michael Wenk [https://github.com/michaelwenk]
+ */
+public class SubspectrumValidator {
+
+    private final Spectrum querySpectrum;
+    private final double shiftTol, thrsMatchFactor;
+    // max. number of subspectrum signals which can be matched to each query signal (equivalences)
+    private final int[] maxUsageCounts;
+    private final int[] usageCounts;
+    // matched query signal index for each added signal; -1 if not matched
+    private final ArrayList<Integer> matchedSignalIndices;
+    // deviation sums of the first n added signals
+    private final ArrayList<Double> deviationSums;
+    private int unmatchedCount, overusedCount;
+
+    public SubspectrumValidator(final Spectrum querySpectrum, final double shiftTol, final double thrsMatchFactor) {
+        this.querySpectrum = querySpectrum;
+        this.shiftTol = shiftTol;
+        this.thrsMatchFactor = thrsMatchFactor;
+        this.maxUsageCounts = new int[querySpectrum.getSignalCount()];
+        for (int i = 0; i < querySpectrum.getSignalCount(); i++) {
+            // note: + 1 to query spectrum equ. signal count, because the requested (equ.) signal itself could be used too
+            this.maxUsageCounts[i] = querySpectrum.getEquivalentSignals(i).size() + 1;
+        }
+        this.usageCounts = new int[querySpectrum.getSignalCount()];
+        this.matchedSignalIndices = new ArrayList<>();
+        this.deviationSums = new ArrayList<>();
+        this.deviationSums.add(0.0);
+        this.unmatchedCount = 0;
+        this.overusedCount = 0;
+    }
+
+    /**
+     * Adds and matches all signals of a subspectrum from the given signal
+     * index on. The signals before that index have to be the already added
+     * ones.
+     *
+     * @param subspectrum subspectrum
+     * @param fromSignalIndex index of first signal to add, usually
+     * {@link #getSignalCount()}
+     * @return whether the subspectrum is valid after adding the signals
+     */
+    public boolean addSignals(final Spectrum subspectrum, final int fromSignalIndex) {
+        final ArrayList<Signal> signals = new ArrayList<>();
+        for (int i = fromSignalIndex; i < subspectrum.getSignalCount(); i++) {
+            signals.add(subspectrum.getSignal(i));
+        }
+
+        return this.addSignals(signals);
+    }
+
+    /**
+     * Adds and matches the given signals.
+     *
+     * @param signals signals to append
+     * @return whether the subspectrum is valid after adding the signals
+     */
+    public boolean addSignals(final List<Signal> signals) {
+        if (signals.isEmpty()) {
+            return this.isValid();
+        }
+        final Spectrum signalsToAdd = new Spectrum(this.querySpectrum.getNuclei());
+        for (final Signal signal : signals) {
+            signalsToAdd.addSignal(signal);
+        }
+        final Assignment matchAssignments = Matcher.matchSpectra(signalsToAdd, this.querySpectrum, 0, 0, this.shiftTol);
+        int matchedSignalIndex;
+        double deviationSum = this.deviationSums.get(this.deviationSums.size() - 1);
+        for (int i = 0; i < signalsToAdd.getSignalCount(); i++) {
+            matchedSignalIndex = matchAssignments.getAssignment(0, i);
+            this.matchedSignalIndices.add(matchedSignalIndex);
+            if (matchedSignalIndex < 0) {
+                this.unmatchedCount++;
+            } else {
+                this.usageCounts[matchedSignalIndex]++;
+                if (this.usageCounts[matchedSignalIndex] == this.maxUsageCounts[matchedSignalIndex] + 1) {
+                    this.overusedCount++;
+                }
+                deviationSum += Math.abs(signalsToAdd.getShift(i, 0) - this.querySpectrum.getShift(matchedSignalIndex, 0));
+            }
+            this.deviationSums.add(deviationSum);
+        }
+
+        return this.isValid();
+    }
+
+    /**
+     * Removes all signals added after the first given number of signals.
+     *
+     * @param signalCount number of signals to keep
+     */
+    public void rollback(final int signalCount) {
+        int matchedSignalIndex;
+        while (this.matchedSignalIndices.size() > signalCount) {
+            matchedSignalIndex = this.matchedSignalIndices.remove(this.matchedSignalIndices.size() - 1);
+            this.deviationSums.remove(this.deviationSums.size() - 1);
+            if (matchedSignalIndex < 0) {
+                this.unmatchedCount--;
+            } else {
+                if (this.usageCounts[matchedSignalIndex] == this.maxUsageCounts[matchedSignalIndex] + 1) {
+                    this.overusedCount--;
+                }
+                this.usageCounts[matchedSignalIndex]--;
+            }
+        }
+    }
+
+    public int getSignalCount() {
+        return this.matchedSignalIndices.size();
+    }
+
+    public double getAverageDeviation() {
+        if (this.matchedSignalIndices.isEmpty()) {
+            return 0.0;
+        }
+
+        return this.deviationSums.get(this.deviationSums.size() - 1) / this.matchedSignalIndices.size();
+    }
+
+    /**
+     * Returns whether the added signals are a valid subspectrum of the query
+     * spectrum: all signals are matched, no query signal is used more often
+     * than its equivalences allow and the average deviation does not exceed
+     * the match factor threshold.
+     *
+     * @return
+     */
+    public boolean isValid() {
+        if (this.matchedSignalIndices.size() > this.querySpectrum.getSignalCount()) {
+            return false;
+        }
+        if ((this.unmatchedCount > 0) || (this.overusedCount > 0)) {
+            return false;
+        }
+
+        return Utils.roundDouble(this.getAverageDeviation(), Start.DECIMAL_PLACES) <= this.thrsMatchFactor;
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2019 Michael Wenk [https://github.com/michaelwenk]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package assembly.strategy;
+
+import assembly.AssemblyEngine;
+import org.openscience.cdk.exception.CDKException;
+
+/**
+ * Interface for a search strategy of the assembly process. A strategy only
+ * decides which intermediates are extended in which order; start SSCs,
+ * extensions, final SSC candidates, search budget and statistics are
+ * handled by the given {@link AssemblyEngine}.
+ *
+ * @author Michael Wenk [https://github.com/michaelwenk]
+ */
+public interface AssemblyStrategy {
+
+    String[] NAMES = new String[]{"dfs", "bfs", "seq", "beam", "bestfirst", "iddfs"};
+
+    /**
+     * Returns the name of this strategy as used in the command line.
+     *
+     * @return
+     */
+    String getName();
+
+    /**
+     * Assembles the ranked SSCs of the given engine. Final SSC candidates are
+     * submitted to the engine; the method returns when the search is
+     * finished or the search budget is exhausted.
+     *
+     * @param engine assembly engine of the current query
+     * @throws Exception
+     */
+    void assemble(final AssemblyEngine engine) throws Exception;
+
+    /**
+     * Creates a strategy by its name, see {@link #NAMES}.
+     *
+     * @param name strategy name
+     * @param beamWidth beam width, only used for beam search
+     * @param beamDepth max. beam depth, only used for beam search; a value
+     * smaller than 1 means no limit
+     * @param maxFrontierSize max. number of intermediates per level, only
+     * used for BFS; a value smaller than 1 means no limit
+     * @param maxDepthLimit max. depth limit, only used for iterative
+     * deepening; a value smaller than 1 means no limit
+     * @return
+     * @throws CDKException if the name is unknown or the beam width is not
+     * positive for beam search
+     */
+    static AssemblyStrategy fromName(final String name, final int beamWidth, final int beamDepth, final int maxFrontierSize, final int maxDepthLimit) throws CDKException {
+        switch (name.toLowerCase()) {
+            case "dfs":
+                return new DFSStrategy();
+            case "bfs":
+                return new BFSStrategy(maxFrontierSize);
+            case "seq":
+                return new SeqStrategy();
+            case "beam":
+                if (beamWidth < 1) {
+                    throw new CDKException(Thread.currentThread().getStackTrace()[1].getMethodName() + ": beam width has to be positive: " + beamWidth);
+                }
+                return new BeamStrategy(beamWidth, beamDepth);
+            case "bestfirst":
+                return new BestFirstStrategy();
+            case "iddfs":
+                return new IterativeDeepeningStrategy(maxDepthLimit);
+            default:
+                throw new CDKException(Thread.currentThread().getStackTrace()[1].getMethodName() + ": unknown assembly strategy \"" + name + "\", expected one of " + String.join(", ", NAMES));
+        }
+    }
+}
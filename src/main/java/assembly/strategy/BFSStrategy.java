@@ -0,0 +1,127 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2019 Michael Wenk [https://github.com/michaelwenk]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package assembly.strategy;
+
+import assembly.AssemblyEngine;
+import assembly.AssemblyStatistics;
+import assembly.SearchState;
+import logging.Log;
+import model.StructureMap;
+import org.openscience.cdk.exception.CDKException;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.concurrent.Callable;
+
+/**
+ * Level-synchronous breadth-first search over all start SSCs. All
+ * intermediates of one level (frontier) are extended in parallel, see
+ * {@link AssemblyEngine#expand(SearchState)}; the next level is built only after the whole level is
+ * done. <br>
+ * Intermediates with the same structure within a level (confirmed by
+ * canonical SMILES, see {@link StructureMap}) are kept only once:
+ * the state with the lowest next SSC index (see
+ * {@link SearchState#getNextSSCIndex()}) is kept, because it can be
+ * extended by the most ranked SSCs, and gets the compatible SSC indices of
+ * all its duplicates. <br>
+ * If a level exceeds the frontier limit, only its best states are kept,
+ * ranked by signal coverage (descending) and average shift deviation
+ * (ascending), see {@link SearchState#compareScores(SearchState, SearchState)}.
+ * The dropped states are counted in the assembly statistics.
+ *
+ * @author Michael Wenk [https://github.com/michaelwenk]
+ */
+public class BFSStrategy implements AssemblyStrategy {
+
+    private final int maxFrontierSize;
+
+    /**
+     * @param maxFrontierSize max. number of intermediates per level; a value
+     * smaller than 1 means no limit
+     */
+    public BFSStrategy(final int maxFrontierSize) {
+        this.maxFrontierSize = maxFrontierSize;
+    }
+
+    @Override
+    public String getName() {
+        return "bfs";
+    }
+
+    @Override
+    public void assemble(final AssemblyEngine engine) throws Exception {
+        ArrayList<SearchState> frontier = this.selectFrontier(engine, engine.getStartStates());
+        ArrayList<Callable<ArrayList<SearchState>>> callables;
+        ArrayList<SearchState> nextFrontier;
+        int level = 0;
+        while (!frontier.isEmpty() && !engine.getSearchBudget().isExhausted()) {
+            if (Log.isEnabled(Log.Subsystem.ASSEMBLY, Log.Level.DEBUG)) {
+                Log.log(Log.Subsystem.ASSEMBLY, Log.Level.DEBUG, "--> BFS level " + level + ": " + frontier.size() + " intermediates");
+            }
+            callables = new ArrayList<>();
+            for (final SearchState searchState : frontier) {
+                callables.add(() -> engine.expand(searchState));
+            }
+            nextFrontier = new ArrayList<>();
+            // the results are in frontier order, so the next level does not depend on the thread scheduling
+            for (final ArrayList<SearchState> childStates : engine.invokeAll(callables)) {
+                nextFrontier.addAll(childStates);
+            }
+            frontier = this.selectFrontier(engine, nextFrontier);
+            level++;
+        }
+    }
+
+    /**
+     * Removes duplicate states of a level and applies the frontier limit.
+     *
+     * @param engine
+     * @param levelStates
+     * @return
+     * @throws CDKException
+     */
+    private ArrayList<SearchState> selectFrontier(final AssemblyEngine engine, final ArrayList<SearchState> levelStates) throws CDKException {
+        final AssemblyStatistics assemblyStatistics = engine.getAssemblyStatistics();
+        // a hash hit is confirmed by canonical SMILES before states are merged
+        final StructureMap<SearchState> uniqueStates = new StructureMap<>(searchState -> searchState.getIntermediate().getSubstructure());
+        SearchState uniqueState;
+        BitSet compatibleSSCIndices;
+        long key;
+        for (final SearchState levelState : levelStates) {
+            key = uniqueStates.getKey(levelState.getIntermediate().getSubstructure());
+            uniqueState = uniqueStates.get(key);
+            if (uniqueState == null) {
+                uniqueStates.put(key, levelState);
+                continue;
+            }
+            assemblyStatistics.countPrune(AssemblyStatistics.PruneReason.DUPLICATE_STATE);
+            compatibleSSCIndices = (BitSet) uniqueState.getCompatibleSSCIndices().clone();
+            compatibleSSCIndices.or(levelState.getCompatibleSSCIndices());
+            if ((levelState.getNextSSCIndex() < uniqueState.getNextSSCIndex())
+                    || ((levelState.getNextSSCIndex() == uniqueState.getNextSSCIndex()) && (SearchState.comparePaths(levelState.getPath(), uniqueState.getPath()) < 0))) {
+                uniqueState = levelState;
+            }
+            uniqueStates.put(key, new SearchState(uniqueState.getIntermediate(), uniqueState.getPath(), compatibleSSCIndices,
+                    engine.getQuerySpectrum().getSignalCount(), uniqueState.getAverageDeviation()));
+        }
+        final ArrayList<SearchState> frontier = new ArrayList<>(uniqueStates.values());
+        if ((this.maxFrontierSize > 0) && (frontier.size() > this.maxFrontierSize)) {
+            frontier.sort(SearchState::compareScores);
+            assemblyStatistics.countPrunes(AssemblyStatistics.PruneReason.FRONTIER_LIMIT, frontier.size() - this.maxFrontierSize);
+            Log.debug(Log.Subsystem.ASSEMBLY, () -> "--> BFS level truncated from " + frontier.size() + " to " + this.maxFrontierSize + " intermediates");
+
+            return new ArrayList<>(frontier.subList(0, this.maxFrontierSize));
+        }
+
+        return frontier;
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2019 Michael Wenk [https://github.com/michaelwenk]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package assembly.strategy;
+
+import assembly.AssemblyEngine;
+import assembly.SearchState;
+import logging.Log;
+import model.StructureMap;
+import org.openscience.cdk.exception.CDKException;
+
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+
+/**
+ * Beam search over all start SSCs. At each depth, all intermediates in the
+ * beam are extended in parallel by each higher ranked SSC and only the best
+ * intermediates are kept, ranked by signal coverage (descending) and average
+ * shift deviation (ascending) against the query spectrum. Intermediates with
+ * the same structure are kept only once. <br>
+ * Unlike {@link DFSStrategy}, the search is not exhaustive; its cost is
+ * bounded by the beam width and max. depth.
+ *
+ * @author Michael Wenk [https://github.com/michaelwenk]
+ */
+public class BeamStrategy implements AssemblyStrategy {
+
+    private final int beamWidth, maxDepth;
+
+    /**
+     * @param beamWidth max. number of intermediates kept per depth
+     * @param maxDepth max. number of extensions of a start SSC; a value
+     * smaller than 1 means no limit
+     */
+    public BeamStrategy(final int beamWidth, final int maxDepth) {
+        this.beamWidth = beamWidth;
+        this.maxDepth = maxDepth;
+    }
+
+    @Override
+    public String getName() {
+        return "beam";
+    }
+
+    @Override
+    public void assemble(final AssemblyEngine engine) throws Exception {
+        ArrayList<SearchState> beam = this.selectBeam(engine.getStartStates());
+        ArrayList<Callable<ArrayList<SearchState>>> callables;
+        ArrayList<SearchState> nextBeam;
+        int depth = 0;
+        while (!beam.isEmpty() && ((this.maxDepth < 1) || (depth < this.maxDepth)) && !engine.getSearchBudget().isExhausted()) {
+            if (Log.isEnabled(Log.Subsystem.ASSEMBLY, Log.Level.DEBUG)) {
+                Log.log(Log.Subsystem.ASSEMBLY, Log.Level.DEBUG, "--> beam at depth " + depth + ": " + beam.size() + " intermediates");
+            }
+            callables = new ArrayList<>();
+            for (final SearchState beamState : beam) {
+                callables.add(() -> engine.expand(beamState));
+            }
+            nextBeam = new ArrayList<>();
+            for (final ArrayList<SearchState> childStates : engine.invokeAll(callables)) {
+                nextBeam.addAll(childStates);
+            }
+            beam = this.selectBeam(nextBeam);
+            depth++;
+        }
+    }
+
+    /**
+     * Selects the best beam states: signal coverage (descending), average
+     * deviation (ascending) and path (ascending) for a deterministic order.
+     * States with the same structure are kept only once, see
+     * {@link StructureMap}.
+     *
+     * @param beamStates
+     * @return
+     * @throws CDKException
+     */
+    private ArrayList<SearchState> selectBeam(final ArrayList<SearchState> beamStates) throws CDKException {
+        beamStates.sort(SearchState::compareScores);
+        final StructureMap<SearchState> beam = new StructureMap<>(beamState -> beamState.getIntermediate().getSubstructure());
+        long key;
+        for (final SearchState beamState : beamStates) {
+            if (beam.size() >= this.beamWidth) {
+                break;
+            }
+            key = beam.getKey(beamState.getIntermediate().getSubstructure());
+            if (!beam.contains(key)) {
+                beam.put(key, beamState);
+            }
+        }
+
+        return new ArrayList<>(beam.values());
+    }
+}
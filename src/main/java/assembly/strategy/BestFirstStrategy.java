@@ -0,0 +1,90 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2019 Michael Wenk [https://github.com/michaelwenk]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package assembly.strategy;
+
+import assembly.AssemblyEngine;
+import assembly.SearchState;
+import logging.Log;
+
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Best-first search over all start SSCs. All search states share one
+ * priority queue, ordered by their bound (unassigned query signals plus
+ * average shift deviation, ascending). Each thread pops the most promising
+ * state, extends it by each higher ranked SSC and pushes the extended
+ * intermediates back into the queue. So intermediates close to the query
+ * are completed first, independent of their start SSC. <br>
+ * The search ends if the queue is empty and no thread is expanding a state
+ * anymore, or if the search budget is exhausted. The queue is not bounded,
+ * so a time limit or node budget should be set for large ranked SSC
+ * libraries.
+ *
+ * @author Michael Wenk [https://github.com/michaelwenk]
+ */
+public class BestFirstStrategy implements AssemblyStrategy {
+
+    @Override
+    public String getName() {
+        return "bestfirst";
+    }
+
+    @Override
+    public void assemble(final AssemblyEngine engine) throws Exception {
+        final PriorityBlockingQueue<SearchState> searchStates = new PriorityBlockingQueue<>(64, (searchState1, searchState2) -> {
+            final int boundComp = Double.compare(searchState1.getBound(), searchState2.getBound());
+            if (boundComp != 0) {
+                return boundComp;
+            }
+
+            return SearchState.comparePaths(searchState1.getPath(), searchState2.getPath());
+        });
+        final ArrayList<SearchState> startStates = engine.getStartStates();
+        // number of states which are in the queue or being expanded; new states can only come from the latter
+        final AtomicInteger pendingStatesCount = new AtomicInteger(startStates.size());
+        searchStates.addAll(startStates);
+
+        final ArrayList<Callable<Void>> callables = new ArrayList<>();
+        for (int t = 0; t < engine.getNThreads(); t++) {
+            callables.add(() -> {
+                SearchState searchState;
+                ArrayList<SearchState> childStates;
+                while (!engine.getSearchBudget().isExhausted()) {
+                    searchState = searchStates.poll(10, TimeUnit.MILLISECONDS);
+                    if (searchState == null) {
+                        if (pendingStatesCount.get() == 0) {
+                            break;
+                        }
+                        continue;
+                    }
+                    try {
+                        if (Log.isEnabled(Log.Subsystem.ASSEMBLY, Log.Level.TRACE)) {
+                            Log.log(Log.Subsystem.ASSEMBLY, Log.Level.TRACE, "--> best-first state: " + searchState.getPath() + " with bound " + searchState.getBound());
+                        }
+                        childStates = engine.expand(searchState);
+                        // the child states are counted before their parent is done
+                        pendingStatesCount.addAndGet(childStates.size());
+                        searchStates.addAll(childStates);
+                    } finally {
+                        pendingStatesCount.decrementAndGet();
+                    }
+                }
+                return null;
+            });
+        }
+        engine.invokeAll(callables);
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2019 Michael Wenk [https://github.com/michaelwenk]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package assembly.strategy;
+
+import assembly.AssemblyEngine;
+import assembly.SearchState;
+import assembly.SubspectrumValidator;
+import logging.Log;
+import model.SSC;
+
+import java.util.ArrayList;
+import java.util.Stack;
+import java.util.concurrent.Callable;
+
+/**
+ * Depth-first search of each start SSC, with the start SSCs in parallel.
+ * Each thread keeps one {@link SubspectrumValidator} which follows the
+ * current path.
+ *
+ * @author Michael Wenk [https://github.com/michaelwenk]
+ */
+public class DFSStrategy implements AssemblyStrategy {
+
+    // a state on the stack and the next ranked SSC index to extend it with
+    private static class Frame {
+        private final SearchState searchState;
+        private long nextSSCIndex;
+
+        private Frame(final SearchState searchState) {
+            this.searchState = searchState;
+            this.nextSSCIndex = searchState.getNextSSCIndex();
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "dfs";
+    }
+
+    @Override
+    public void assemble(final AssemblyEngine engine) throws Exception {
+        final ArrayList<Callable<Void>> callables = new ArrayList<>();
+        for (final long startSSCIndex : engine.getStartSSCIndices()) {
+            callables.add(() -> {
+                this.assemble(engine, startSSCIndex);
+                return null;
+            });
+        }
+        engine.invokeAll(callables);
+    }
+
+    private void assemble(final AssemblyEngine engine, final long startSSCIndex) throws Exception {
+        final SSC startSSC = engine.getStartSSC(startSSCIndex);
+        // check whether the current SSC is already a final SSC
+        if (engine.submitIfFinalSSCCandidate(startSSC, 0)) {
+            return;
+        }
+        final Stack<Frame> frames = new Stack<>();
+        frames.push(new Frame(engine.createStartState(startSSC, startSSCIndex)));
+        // keeps the matched signals of the intermediate on top of the stack
+        final SubspectrumValidator subspectrumValidator = engine.createSubspectrumValidator(startSSC);
+        Frame frame;
+        long i;
+        SSC newIntermediate;
+        while (!frames.isEmpty()) {
+            frame = frames.peek();
+            // skip ranked SSCs without any possible overlap to the current path
+            i = frame.searchState.getCompatibleSSCIndices().nextSetBit((int) frame.nextSSCIndex);
+            if ((i < 0) || (i >= engine.getSSCCount())) {
+                frames.pop();
+                continue;
+            }
+            frame.nextSSCIndex = i + 1;
+            // skip start SSCs of other searches and smaller sphere versions of an SSC in the current path
+            if (!engine.isExtension(startSSCIndex, i) || engine.isSubsumed(i, frame.searchState.getPath())) {
+                continue;
+            }
+            // time limit or node budget reached -> stop and keep the solutions found so far
+            if (!engine.expandNode(startSSCIndex)) {
+                break;
+            }
+            if (Log.isEnabled(Log.Subsystem.ASSEMBLY, Log.Level.TRACE)) {
+                Log.log(Log.Subsystem.ASSEMBLY, Log.Level.TRACE, "\n\n-------------------------------- " + frame.searchState.getPath() + ", " + i + " --------------------------------");
+            }
+            // the validator follows the current path; after backtracking the signals of the removed intermediates are rolled back
+            subspectrumValidator.rollback(frame.searchState.getIntermediate().getSubspectrum().getSignalCount());
+            newIntermediate = engine.extend(frame.searchState.getIntermediate(), i, subspectrumValidator);
+            if (newIntermediate == null) {
+                continue;
+            }
+            // a candidate can not be extended anymore; it is validated in background while the search goes on
+            if (engine.submitIfFinalSSCCandidate(newIntermediate, frame.searchState.getPath().size())) {
+                continue;
+            }
+            subspectrumValidator.addSignals(newIntermediate.getSubspectrum(), subspectrumValidator.getSignalCount());
+            frames.push(new Frame(engine.createChildState(frame.searchState, newIntermediate, i, subspectrumValidator.getAverageDeviation())));
+        }
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2019 Michael Wenk [https://github.com/michaelwenk]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package assembly.strategy;
+
+import assembly.AssemblyEngine;
+import assembly.SubspectrumValidator;
+import logging.Log;
+import model.SSC;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.LinkedHashSet;
+import java.util.Stack;
+import java.util.concurrent.Callable;
+
+/**
+ * Iterative-deepening depth-first search of each start SSC, with the start
+ * SSCs in parallel. Each iteration is a DFS in which an intermediate is
+ * extended at most as often as the current depth limit; the limit is raised
+ * by one after each iteration. Final SSC candidates are only submitted at
+ * the depth limit, since all shallower ones were already submitted in
+ * earlier iterations. <br>
+ * Only the current path is kept, and it holds one complete intermediate per
+ * depth, as in {@link DFSStrategy}: an extension creates a new SSC (see
+ * {@link AssemblyEngine#extend(SSC, long, SubspectrumValidator)}) and there
+ * is no way to undo it on an SSC, so intermediates are not kept as deltas.
+ * Only the matched signals and the compatible SSC indices of the path are
+ * kept as deltas which are rolled back on backtracking, so unlike
+ * {@link DFSStrategy} no search state (path set and compatible SSC
+ * indices) is copied per depth. The memory is bounded by the depth limit
+ * times the intermediate size. The overlap compatibility of the engine is
+ * built once and reused by all iterations. Start SSCs whose search tree was
+ * explored completely are skipped in later iterations.
+ *
+ * @author Michael Wenk [https://github.com/michaelwenk]
+ */
+public class IterativeDeepeningStrategy implements AssemblyStrategy {
+
+    private final int maxDepth;
+
+    // a complete intermediate of the current path and the next ranked SSC index to extend it with
+    private static class Frame {
+        private final SSC intermediate;
+        private final long sscIndex;
+        private long nextSSCIndex;
+
+        private Frame(final SSC intermediate, final long sscIndex, final long nextSSCIndex) {
+            this.intermediate = intermediate;
+            this.sscIndex = sscIndex;
+            this.nextSSCIndex = nextSSCIndex;
+        }
+    }
+
+    /**
+     * @param maxDepth max. depth limit, i.e. number of extensions of a start
+     * SSC; a value smaller than 1 means no limit
+     */
+    public IterativeDeepeningStrategy(final int maxDepth) {
+        this.maxDepth = maxDepth;
+    }
+
+    @Override
+    public String getName() {
+        return "iddfs";
+    }
+
+    @Override
+    public void assemble(final AssemblyEngine engine) throws Exception {
+        // start SSCs whose search tree was explored completely in an earlier iteration
+        final boolean[] completedStarts = new boolean[(int) engine.getNStarts()];
+        ArrayList<Callable<Void>> callables;
+        for (int depthLimit = 0; ((this.maxDepth < 1) || (depthLimit <= this.maxDepth)) && !engine.getSearchBudget().isExhausted(); depthLimit++) {
+            callables = new ArrayList<>();
+            for (int i = 0; i < completedStarts.length; i++) {
+                if (completedStarts[i]) {
+                    continue;
+                }
+                final int startPosition = i;
+                final long startSSCIndex = engine.getStartSSCIndices().get(i);
+                final int currentDepthLimit = depthLimit;
+                callables.add(() -> {
+                    completedStarts[startPosition] = !this.assemble(engine, startSSCIndex, currentDepthLimit);
+                    return null;
+                });
+            }
+            if (callables.isEmpty()) {
+                break;
+            }
+            final int currentDepthLimit = depthLimit;
+            final int startsCount = callables.size();
+            Log.debug(Log.Subsystem.ASSEMBLY, () -> "--> iterative deepening: depth limit " + currentDepthLimit + " for " + startsCount + " start SSCs");
+            engine.invokeAll(callables);
+        }
+    }
+
+    /**
+     * Depth-limited DFS of one start SSC.
+     *
+     * @param engine
+     * @param startSSCIndex
+     * @param depthLimit max. number of extensions of the start SSC
+     * @return whether the search tree was not explored completely, i.e. an
+     * intermediate at the depth limit could have been extended further or
+     * the search budget is exhausted
+     * @throws Exception
+     */
+    private boolean assemble(final AssemblyEngine engine, final long startSSCIndex, final int depthLimit) throws Exception {
+        final SSC startSSC = engine.getStartSSC(startSSCIndex);
+        // check whether the current SSC is already a final SSC
+        if (engine.isFinalSSCCandidate(startSSC)) {
+            if (depthLimit == 0) {
+                engine.submitIfFinalSSCCandidate(startSSC, 0);
+            }
+            return false;
+        }
+        if (depthLimit == 0) {
+            return true;
+        }
+        final int sscCount = (int) engine.getSSCCount();
+        // number of SSCs in the current path which could overlap with each ranked SSC
+        final int[] compatibleCounts = new int[sscCount];
+        this.updateCompatibleCounts(engine, compatibleCounts, startSSCIndex, 1);
+        // indices of the ranked SSCs in the current path
+        final LinkedHashSet<Long> path = new LinkedHashSet<>();
+        path.add(startSSCIndex);
+        final Stack<Frame> frames = new Stack<>();
+        // the ranked SSCs added to the start SSC are in ranked order, starting with the first one
+        frames.push(new Frame(startSSC, startSSCIndex, 0));
+        // keeps the matched signals of the intermediate on top of the stack
+        final SubspectrumValidator subspectrumValidator = engine.createSubspectrumValidator(startSSC);
+        boolean isCutOff = false;
+        Frame frame;
+        int i, depth;
+        SSC newIntermediate;
+        while (!frames.isEmpty()) {
+            frame = frames.peek();
+            // skip ranked SSCs without any possible overlap to the current path
+            i = (int) frame.nextSSCIndex;
+            while ((i < sscCount) && (compatibleCounts[i] == 0)) {
+                i++;
+            }
+            if (i >= sscCount) {
+                this.updateCompatibleCounts(engine, compatibleCounts, frame.sscIndex, -1);
+                path.remove(frames.pop().sscIndex);
+                continue;
+            }
+            frame.nextSSCIndex = i + 1;
+            // skip start SSCs of other searches and smaller sphere versions of an SSC in the current path
+            if (!engine.isExtension(startSSCIndex, i) || engine.isSubsumed(i, path)) {
+                continue;
+            }
+            // time limit or node budget reached -> stop and keep the solutions found so far
+            if (!engine.expandNode(startSSCIndex)) {
+                return true;
+            }
+            // the validator follows the current path; after backtracking the signals of the removed intermediates are rolled back
+            subspectrumValidator.rollback(frame.intermediate.getSubspectrum().getSignalCount());
+            newIntermediate = engine.extend(frame.intermediate, i, subspectrumValidator);
+            if (newIntermediate == null) {
+                continue;
+            }
+            depth = frames.size();
+            if (engine.isFinalSSCCandidate(newIntermediate)) {
+                // shallower candidates were already submitted in earlier iterations
+                if (depth == depthLimit) {
+                    engine.submitIfFinalSSCCandidate(newIntermediate, depth);
+                }
+                continue;
+            }
+            if (depth == depthLimit) {
+                isCutOff = true;
+                continue;
+            }
+            subspectrumValidator.addSignals(newIntermediate.getSubspectrum(), subspectrumValidator.getSignalCount());
+            this.updateCompatibleCounts(engine, compatibleCounts, i, 1);
+            path.add((long) i);
+            frames.push(new Frame(newIntermediate, i, i + 1));
+        }
+
+        return isCutOff;
+    }
+
+    private void updateCompatibleCounts(final AssemblyEngine engine, final int[] compatibleCounts, final long sscIndex, final int delta) {
+        final BitSet compatibleSSCIndices = engine.getOverlapCompatibility().getCompatibleSSCIndices(sscIndex);
+        for (int j = compatibleSSCIndices.nextSetBit(0); j >= 0; j = compatibleSSCIndices.nextSetBit(j + 1)) {
+            compatibleCounts[j] += delta;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2019 Michael Wenk [https://github.com/michaelwenk]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package assembly.strategy;
+
+import assembly.AssemblyEngine;
+import logging.Log;
+import model.SSC;
+
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+
+/**
+ * Sequential assembly of each start SSC, with the start SSCs in parallel:
+ * the intermediate is extended by all other ranked SSCs one after another
+ * and starts again from the start SSC after each final SSC candidate.
+ *
+ * @author Michael Wenk [https://github.com/michaelwenk]
+ */
+public class SeqStrategy implements AssemblyStrategy {
+
+    @Override
+    public String getName() {
+        return "seq";
+    }
+
+    @Override
+    public void assemble(final AssemblyEngine engine) throws Exception {
+        final ArrayList<Callable<Void>> callables = new ArrayList<>();
+        for (final long startSSCIndex : engine.getStartSSCIndices()) {
+            callables.add(() -> {
+                this.assemble(engine, startSSCIndex);
+                return null;
+            });
+        }
+        engine.invokeAll(callables);
+    }
+
+    private void assemble(final AssemblyEngine engine, final long startSSCIndex) throws Exception {
+        final SSC startSSC = engine.getStartSSC(startSSCIndex);
+        // check whether the current SSC is already a final SSC
+        if (engine.submitIfFinalSSCCandidate(startSSC, 0)) {
+            return;
+        }
+        SSC intermediate = startSSC, newIntermediate;
+        // number of extensions of the current intermediate
+        int depth = 0;
+        for (long i = 0; i < engine.getSSCCount(); i++) {
+            if (i == startSSCIndex) {
+                continue;
+            }
+            if (!engine.expandNode(startSSCIndex)) {
+                break;
+            }
+            if (Log.isEnabled(Log.Subsystem.ASSEMBLY, Log.Level.TRACE)) {
+                Log.log(Log.Subsystem.ASSEMBLY, Log.Level.TRACE, "\n\n-------------------------------- " + startSSCIndex + ", " + i + " --------------------------------");
+            }
+            newIntermediate = engine.extend(intermediate, i, null);
+            if (newIntermediate == null) {
+                continue;
+            }
+            depth++;
+            if (engine.submitIfFinalSSCCandidate(newIntermediate, depth)) {
+                // the start SSC itself is never modified
+                intermediate = startSSC;
+                depth = 0;
+                continue;
+            }
+            intermediate = newIntermediate;
+        }
+    }
+}
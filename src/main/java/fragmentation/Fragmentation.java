@@ -34,6 +34,9 @@ import java.util.logging.Logger;
 
 public class Fragmentation {
     
+    // SDF property of the NMRShiftDB ID of a structure
+    public final static String NMRSHIFTDB_ID_PROPERTY = "nmrshiftdb2 ID";
+    
     /**
      * Builds a set of substructure-subspectrum-correlations (SSC objects) from  
      * an atom container set for all its molecules and atoms by using a 
@@ -47,10 +50,10 @@ public class Fragmentation {
      * @throws java.lang.InterruptedException
      * @throws org.openscience.cdk.exception.CDKException
      * @throws CloneNotSupportedException
-     * @see Fragmentation#buildSSCs(Object[], int, long)
+     * @see Fragmentation#buildSSCLibrary(HashMap, int, int, long, String)
      */
     public static SSCLibrary buildSSCLibrary(final HashMap<Integer, Object[]> SSCComponentsSet, final int maxSphere, final int nThreads) throws InterruptedException, CDKException, CloneNotSupportedException {                
-        return Fragmentation.buildSSCLibrary(SSCComponentsSet, maxSphere, nThreads, 0);
+        return Fragmentation.buildSSCLibrary(SSCComponentsSet, maxSphere, nThreads, 0, null);
     }
     
     /**
@@ -63,11 +66,15 @@ public class Fragmentation {
      * all directions
      * @param nThreads Number of threads to use for parallelization
      * @param offset offset value as starting point for indexing the SSCs
+     * @param sourceName name of the structure source, e.g. the SDF file 
+     * name, to qualify the source IDs of structures without NMRShiftDB ID; 
+     * null to store no source for such structures
      * @return
      * @throws java.lang.InterruptedException
-     * @see Fragmentation#buildSSCs(Object[], int, long)
+     * @see Fragmentation#buildSSCs(Object[], String, int, long)
+     * @see Fragmentation#getSourceID(IAtomContainer, String, int)
      */
-    public static SSCLibrary buildSSCLibrary(final HashMap<Integer, Object[]> SSCComponentsSet, final int maxSphere, final int nThreads, final long offset) throws InterruptedException {
+    public static SSCLibrary buildSSCLibrary(final HashMap<Integer, Object[]> SSCComponentsSet, final int maxSphere, final int nThreads, final long offset, final String sourceName) throws InterruptedException {
         // initialize an executor
         final ExecutorService executor = Utils.initExecuter(nThreads);
         final SSCLibrary sscLibrary = new SSCLibrary();
@@ -76,7 +83,8 @@ public class Fragmentation {
         long offsetSSCIndex = offset;
         for (final int index: SSCComponentsSet.keySet()) {
             final long offsetSSCIndexFinalCopy = offsetSSCIndex;           
-            callables.add(() -> Fragmentation.buildSSCs(SSCComponentsSet.get(index), maxSphere, offsetSSCIndexFinalCopy));
+            final String sourceID = Fragmentation.getSourceID((IAtomContainer) SSCComponentsSet.get(index)[0], sourceName, index);
+            callables.add(() -> Fragmentation.buildSSCs(SSCComponentsSet.get(index), sourceID, maxSphere, offsetSSCIndexFinalCopy));
             offsetSSCIndex += ((IAtomContainer) SSCComponentsSet.get(index)[0]).getAtomCount();
         }
         // execute all task in parallel
@@ -103,12 +111,36 @@ public class Fragmentation {
         return sscLibrary;
     }
     
+    /**
+     * Returns a globally unique ID of a structure to store as source in its 
+     * SSCs: its NMRShiftDB ID or, if missing, the source name qualified by 
+     * the index of the structure in that source. The index alone restarts 
+     * with each SDF file.
+     *
+     * @param structure
+     * @param sourceName name of the structure source, e.g. the SDF file name
+     * @param index index of the structure in its source
+     * @return null if the structure has no NMRShiftDB ID and no source name 
+     * is given
+     */
+    public static String getSourceID(final IAtomContainer structure, final String sourceName, final int index) {
+        final Object nmrShiftDBID = structure.getProperty(NMRSHIFTDB_ID_PROPERTY);
+        if (nmrShiftDBID != null) {
+            return "nmrshiftdb2:" + nmrShiftDBID;
+        }
+        
+        return (sourceName != null) ? sourceName + ":" + index : null;
+    }
+    
     /**
      * Builds a set of substructure-subspectrum-correlations (SSC objects) from one 
      * structure for all its atoms by using a breadth first search 
      * with spherical limit. 
      *
      * @param SSCComponentsSet
+     * @param sourceID globally unique ID of the structure to store as source 
+     * in each SSC, see {@link #getSourceID(IAtomContainer, String, int)}; 
+     * null for no source
      * @param maxSphere Spherical limit for building a substructure into 
      * all directions
      * to be the same type as in used spectrum property.
@@ -116,7 +148,7 @@ public class Fragmentation {
      * @return
      * @see Fragmentation#buildSSC(IAtomContainer, Spectrum, Assignment, int, int)
      */
-    private static SSCLibrary buildSSCs(final Object[] SSCComponentsSet, final int maxSphere, final long offsetSSCIndex) throws CDKException {
+    private static SSCLibrary buildSSCs(final Object[] SSCComponentsSet, final String sourceID, final int maxSphere, final long offsetSSCIndex) throws CDKException {
         final IAtomContainer structure = (IAtomContainer) SSCComponentsSet[0];
         final Spectrum spectrum = (Spectrum) SSCComponentsSet[1];
         final Assignment assignment = (Assignment) SSCComponentsSet[2];
@@ -145,6 +177,7 @@ public class Fragmentation {
                 return new SSCLibrary();                
             }
             ssc.setIndex(offsetSSCIndex + i);
+            ssc.setSource(sourceID, i);
             sscLibrary.insert(ssc);
         }
        
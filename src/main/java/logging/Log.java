@@ -0,0 +1,163 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2019 Michael Wenk [https://github.com/michaelwenk]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package logging;
+
+import org.openscience.cdk.exception.CDKException;
+
+import java.util.function.Supplier;
+
+/**
+ * Class for level-gated logging per subsystem. <br>
+ * A message is only built if the level of its subsystem is enabled, either
+ * by passing it as {@link Supplier} or by guarding it with
+ * {@link #isEnabled(Subsystem, Level)}. <br>
+ * If buffering is enabled, each thread collects its messages in an own
+ * buffer which is written at once when it is full or
+ * {@link #flush()} is called.
+ *
+ * @author Michael Wenk [https://github.com/michaelwenk]
+ */
+public class Log {
+
+    public enum Subsystem {
+        ASSEMBLY, MATCH, RANKING
+    }
+
+    public enum Level {
+        OFF, ERROR, INFO, DEBUG, TRACE
+    }
+
+    private final static int BUFFER_FLUSH_SIZE = 1 << 16;
+
+    private final static Level[] LEVELS = new Level[Subsystem.values().length];
+    private final static ThreadLocal<StringBuilder> BUFFERS = ThreadLocal.withInitial(StringBuilder::new);
+    private static volatile boolean buffered = false;
+
+    static {
+        Log.setLevel(Level.INFO);
+    }
+
+    /**
+     * Sets the given level for all subsystems.
+     *
+     * @param level
+     */
+    public static void setLevel(final Level level) {
+        for (final Subsystem subsystem : Subsystem.values()) {
+            Log.setLevel(subsystem, level);
+        }
+    }
+
+    public static void setLevel(final Subsystem subsystem, final Level level) {
+        LEVELS[subsystem.ordinal()] = level;
+    }
+
+    public static Level getLevel(final Subsystem subsystem) {
+        return LEVELS[subsystem.ordinal()];
+    }
+
+    /**
+     * Sets the levels from a comma separated list of level definitions, e.g.
+     * "info,assembly=trace,ranking=debug". A definition without subsystem
+     * sets the level for all subsystems.
+     *
+     * @param levelDefinitions level definitions
+     * @throws CDKException if a subsystem or level is unknown
+     */
+    public static void setLevels(final String levelDefinitions) throws CDKException {
+        String[] definition;
+        for (final String levelDefinition : levelDefinitions.split(",")) {
+            if (levelDefinition.trim().isEmpty()) {
+                continue;
+            }
+            definition = levelDefinition.split("=");
+            try {
+                if (definition.length == 1) {
+                    Log.setLevel(Level.valueOf(definition[0].trim().toUpperCase()));
+                } else {
+                    Log.setLevel(Subsystem.valueOf(definition[0].trim().toUpperCase()), Level.valueOf(definition[1].trim().toUpperCase()));
+                }
+            } catch (IllegalArgumentException e) {
+                throw new CDKException(Thread.currentThread().getStackTrace()[1].getMethodName() + ": invalid level definition: \"" + levelDefinition + "\"");
+            }
+        }
+    }
+
+    /**
+     * Enables or disables the per-thread buffering of messages. Before
+     * disabling, the buffer of each thread should be flushed.
+     *
+     * @param buffered
+     */
+    public static void setBuffered(final boolean buffered) {
+        Log.buffered = buffered;
+    }
+
+    public static boolean isEnabled(final Subsystem subsystem, final Level level) {
+        return level.compareTo(LEVELS[subsystem.ordinal()]) <= 0;
+    }
+
+    public static void log(final Subsystem subsystem, final Level level, final Supplier<String> message) {
+        if (Log.isEnabled(subsystem, level)) {
+            Log.write(level, message.get());
+        }
+    }
+
+    public static void log(final Subsystem subsystem, final Level level, final String message) {
+        if (Log.isEnabled(subsystem, level)) {
+            Log.write(level, message);
+        }
+    }
+
+    public static void error(final Subsystem subsystem, final Supplier<String> message) {
+        Log.log(subsystem, Level.ERROR, message);
+    }
+
+    public static void info(final Subsystem subsystem, final Supplier<String> message) {
+        Log.log(subsystem, Level.INFO, message);
+    }
+
+    public static void debug(final Subsystem subsystem, final Supplier<String> message) {
+        Log.log(subsystem, Level.DEBUG, message);
+    }
+
+    public static void trace(final Subsystem subsystem, final Supplier<String> message) {
+        Log.log(subsystem, Level.TRACE, message);
+    }
+
+    private static void write(final Level level, final String message) {
+        if (level == Level.ERROR) {
+            System.err.println(message);
+            return;
+        }
+        if (!Log.buffered) {
+            System.out.println(message);
+            return;
+        }
+        final StringBuilder buffer = BUFFERS.get();
+        buffer.append(message).append(System.lineSeparator());
+        if (buffer.length() >= BUFFER_FLUSH_SIZE) {
+            Log.flush();
+        }
+    }
+
+    /**
+     * Writes the buffered messages of the calling thread, if any.
+     */
+    public static void flush() {
+        final StringBuilder buffer = BUFFERS.get();
+        if (buffer.length() > 0) {
+            System.out.print(buffer);
+            buffer.setLength(0);
+        }
+    }
+}
@@ -13,9 +13,9 @@ package match;
 
 import casekit.NMR.Utils;
 import casekit.NMR.model.Signal;
-import hose.HOSECodeBuilder;
 import hose.model.ConnectionTree;
 import hose.model.ConnectionTreeNode;
+import logging.Log;
 import model.SSC;
 import org.openscience.cdk.exception.CDKException;
 import org.openscience.cdk.interfaces.IAtom;
@@ -183,60 +183,67 @@ public class Match {
             return maxMatchingSphere;
         }
 
-        ConnectionTree connectionTreeSSC1, connectionTreeSSC2;
-        ConnectionTreeNode nodeInSphereSSC1, nodeInSphereSSC2;
-        ArrayList<ConnectionTreeNode> nodesInSphereSSC1, nodesInSphereSSC2;
-        Signal signalSSC1, signalSSC2;
         String HOSECodeSSC1, HOSECodeSSC2;
-        boolean invalid;
-        // iterates over each sphere until max. matching sphere and builds new conn. trees because of comparable order of the elements
+        // iterates over each sphere until max. matching sphere and uses the conn. trees built with that sphere as limit
+        // because of comparable order of the elements; both are cached in the SSCs
         for (int s = 0; s <= Integer.min(ssc1.getMaxSphere(), ssc2.getMaxSphere()); s++) {
-            connectionTreeSSC1 = HOSECodeBuilder.buildConnectionTree(ssc1.getSubstructure(), atomIndexSSC1, s);
-            connectionTreeSSC2 = HOSECodeBuilder.buildConnectionTree(ssc2.getSubstructure(), atomIndexSSC2, s);
-            HOSECodeSSC1 = HOSECodeBuilder.buildHOSECode(connectionTreeSSC1, false);
-            HOSECodeSSC2 = HOSECodeBuilder.buildHOSECode(connectionTreeSSC2, false);
+            HOSECodeSSC1 = ssc1.getHOSECode(atomIndexSSC1, s);
+            HOSECodeSSC2 = ssc2.getHOSECode(atomIndexSSC2, s);
             if (!HOSECodeSSC1.equals(HOSECodeSSC2)) {
                 break;
             }
-
-            // new added part:
-            // for each conn. tree node pair in conn. tree (which should be similar until max. matching sphere) compare the multiplicity information
-            // and also the shifts within a certain shift tolerance range (is that second step needed?)
-//            if(s == Integer.min(ssc1.getMaxSphere(), ssc2.getMaxSphere())){
-                nodesInSphereSSC1 = connectionTreeSSC1.getNodesInSphere(s);
-                nodesInSphereSSC2 = connectionTreeSSC2.getNodesInSphere(s);
-                invalid = false;
-                for (int i = 0; i < connectionTreeSSC1.getNodesCountInSphere(s); i++) {
-                    nodeInSphereSSC1 = nodesInSphereSSC1.get(i);
-                    nodeInSphereSSC2 = nodesInSphereSSC2.get(i);
-                    if(nodeInSphereSSC1.isRingClosureNode()){
-                        continue;
-                    }
-                    signalSSC1 = ssc1.getSubspectrum().getSignal(ssc1.getAssignments().getIndex(0, nodeInSphereSSC1.getKey()));
-                    signalSSC2 = ssc2.getSubspectrum().getSignal(ssc2.getAssignments().getIndex(0, nodeInSphereSSC2.getKey()));
-                    if((signalSSC1 == null) || (signalSSC2 == null)){
-                            continue;
-                    }
-
-                    if(!signalSSC1.getMultiplicity().equals(signalSSC2.getMultiplicity()) // this is, actually, for the last matching sphere
-//                            || (Math.abs(signalSSC1.getShift(0) - signalSSC2.getShift(0)) > shiftTol) // @TODO is this shift comparison needed?
-                    ){
-                        invalid = true;
-                        break;
-                    }
-
-                }
-                if(invalid){
-                    break;
-                }
-//            }
+            if (!Match.hasMatchingMultiplicitiesInSphere(ssc1, ssc2, ssc1.getConnectionTree(atomIndexSSC1, s), ssc2.getConnectionTree(atomIndexSSC2, s), s)) {
+                break;
+            }
 
             maxMatchingSphere = s;
-//            System.out.println("   --> in s: " + s + " -> " + HOSECodeSSC1 + " vs. " + HOSECodeSSC2);
+            if (Log.isEnabled(Log.Subsystem.MATCH, Log.Level.TRACE)) {
+                Log.log(Log.Subsystem.MATCH, Log.Level.TRACE, "   --> in s: " + s + " -> " + HOSECodeSSC1 + " vs. " + HOSECodeSSC2);
+            }
         }
 
         return maxMatchingSphere;
     }
 
-    
+    /**
+     * Checks whether the nodes of two connection trees in a certain sphere
+     * have the same multiplicities, pairwise in node order. Ring closure nodes
+     * and atoms without assigned signal are ignored. <br>
+     * Both connection trees have to be built with {@code sphere} as maximum
+     * sphere, so that their nodes are in comparable order.
+     *
+     * @param ssc1
+     * @param ssc2
+     * @param connectionTreeSSC1 connection tree of an atom in {@code ssc1}
+     * @param connectionTreeSSC2 connection tree of an atom in {@code ssc2}
+     * @param sphere
+     * @return
+     */
+    public static boolean hasMatchingMultiplicitiesInSphere(final SSC ssc1, final SSC ssc2, final ConnectionTree connectionTreeSSC1, final ConnectionTree connectionTreeSSC2, final int sphere) {
+        final ArrayList<ConnectionTreeNode> nodesInSphereSSC1 = connectionTreeSSC1.getNodesInSphere(sphere);
+        final ArrayList<ConnectionTreeNode> nodesInSphereSSC2 = connectionTreeSSC2.getNodesInSphere(sphere);
+        ConnectionTreeNode nodeInSphereSSC1, nodeInSphereSSC2;
+        Signal signalSSC1, signalSSC2;
+        // for each conn. tree node pair in conn. tree (which should be similar until max. matching sphere) compare the multiplicity information
+        // and also the shifts within a certain shift tolerance range (is that second step needed?)
+        for (int i = 0; i < connectionTreeSSC1.getNodesCountInSphere(sphere); i++) {
+            nodeInSphereSSC1 = nodesInSphereSSC1.get(i);
+            nodeInSphereSSC2 = nodesInSphereSSC2.get(i);
+            if(nodeInSphereSSC1.isRingClosureNode()){
+                continue;
+            }
+            signalSSC1 = ssc1.getSubspectrum().getSignal(ssc1.getAssignments().getIndex(0, nodeInSphereSSC1.getKey()));
+            signalSSC2 = ssc2.getSubspectrum().getSignal(ssc2.getAssignments().getIndex(0, nodeInSphereSSC2.getKey()));
+            if((signalSSC1 == null) || (signalSSC2 == null)){
+                continue;
+            }
+            if(!signalSSC1.getMultiplicity().equals(signalSSC2.getMultiplicity()) // this is, actually, for the last matching sphere
+//                    || (Math.abs(signalSSC1.getShift(0) - signalSSC2.getShift(0)) > shiftTol) // @TODO is this shift comparison needed?
+            ){
+                return false;
+            }
+        }
+
+        return true;
+    }
 }
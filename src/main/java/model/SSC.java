@@ -18,12 +18,22 @@ import casekit.NMR.model.Signal;
 import casekit.NMR.model.Spectrum;
 import hose.HOSECodeBuilder;
 import hose.model.ConnectionTree;
+import org.openscience.cdk.atomtype.CDKAtomTypeMatcher;
 import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.interfaces.IAtom;
 import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IAtomType;
 import org.openscience.cdk.tools.manipulator.AtomContainerManipulator;
+import org.openscience.cdk.tools.manipulator.AtomTypeManipulator;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
  * Class for representing a subspectrum-substructure-correlation.
@@ -44,6 +54,10 @@ public final class SSC {
     private final HashMap<String, ArrayList<Integer>> HOSECodeLookupIndices;
     // connection tree holding the spherical information about the substructure
     private final HashMap<Integer, ConnectionTree> connectionTrees;
+    // lazily built connection trees and HOSE codes for each atom with each sphere as limit,
+    // at position atomIndex * (maxSphere + 1) + sphere; reset at each update
+    private AtomicReferenceArray<ConnectionTree> sphereConnectionTrees;
+    private AtomicReferenceArray<String> sphereHOSECodes;
     // stores all atom indices for each occurring atom type in substructure    
     private HashMap<String, ArrayList<Integer>> atomTypeIndices;
     // for pre-search: map of multiplicities as keys consisting 
@@ -52,8 +66,14 @@ public final class SSC {
     private final MultiplicitySectionsBuilder multiplicitySectionsBuilder;
     // index to use in SSC library
     private long index;
+    // globally unique ID of the source structure, null if unknown
+    private String sourceID;
+    // index of the root atom in the source structure, -1 if unknown
+    private int sourceAtomIndex;
     // indices of open-sphere (unsaturated) atoms of substructure
     private final ArrayList<Integer> unsaturatedAtomIndices;    
+    // lazily built symmetry class of each atom; reset at each update
+    private volatile long[] symmetryClasses;
     public final static int MIN_LIMIT = -20, MAX_LIMIT = 260, STEP_SIZE = 5, STEPS = (MAX_LIMIT - MIN_LIMIT) / STEP_SIZE; // ppm range from -20 to 260 in 5 ppm steps
 
     /**
@@ -76,6 +96,8 @@ public final class SSC {
         this.HOSECodeLookupIndices = new HashMap<>();
         this.connectionTrees = new HashMap<>();
         this.index = -1;
+        this.sourceID = null;
+        this.sourceAtomIndex = -1;
         this.unsaturatedAtomIndices = new ArrayList<>();
         this.multiplicitySections = new HashMap<>();      
         this.multiplicitySectionsBuilder = new MultiplicitySectionsBuilder();
@@ -84,14 +106,21 @@ public final class SSC {
     
     /**
      * Returns a full clone of that SSC, with one exception: The index of the 
-     * SSC clone is set to default value (-1).
+     * SSC clone is set to default value (-1). <br>
+     * Already built HOSE codes per sphere and the source are taken over.
      *
      * @return
      * @throws CDKException
      * @throws java.lang.CloneNotSupportedException
      */
     public SSC getClone() throws Exception {
-      return new SSC(this.subspectrum, this.assignment, this.substructure, this.rootAtomIndex, this.maxSphere);
+        final SSC clone = new SSC(this.subspectrum, this.assignment, this.substructure, this.rootAtomIndex, this.maxSphere);
+        clone.setSource(this.sourceID, this.sourceAtomIndex);
+        for (int i = 0; i < this.sphereHOSECodes.length(); i++) {
+            clone.sphereHOSECodes.set(i, this.sphereHOSECodes.get(i));
+        }
+
+        return clone;
     }
     
     /**
@@ -105,10 +134,107 @@ public final class SSC {
      */
     public void update() throws CDKException {
         AtomContainerManipulator.percieveAtomTypesAndConfigureAtoms(this.substructure);
+        this.sphereConnectionTrees = new AtomicReferenceArray<>(this.getAtomCount() * (this.maxSphere + 1));
+        this.sphereHOSECodes = new AtomicReferenceArray<>(this.getAtomCount() * (this.maxSphere + 1));
         this.updateAtomTypeIndices();
         this.updateUnsaturatedAtomIndices();
         this.updateHOSECodes();
         this.updateMultiplicitySections(); 
+        this.symmetryClasses = null;
+    }
+
+    /**
+     * Updates the features of that SSC after an extension of its substructure,
+     * where atoms and bonds were only appended. <br>
+     * The atom types are perceived again for changed atoms and their
+     * neighbors only. Unsaturation, connection trees and HOSE codes are
+     * updated for atoms within max. sphere bonds around changed atoms only,
+     * because the environments of all other atoms are the same as before.
+     * Multiplicity sections are added for the appended signals only.
+     *
+     * @param changedAtomIndices indices of added atoms and of atoms with added
+     * bonds
+     * @throws CDKException
+     * @see #update()
+     */
+    public void update(final Collection<Integer> changedAtomIndices) throws CDKException {
+        final int previousAtomCount = this.sphereHOSECodes.length() / (this.maxSphere + 1);
+        // atom types depend on the direct neighborhood only
+        final CDKAtomTypeMatcher atomTypeMatcher = CDKAtomTypeMatcher.getInstance(this.substructure.getBuilder());
+        IAtomType matchedAtomType;
+        for (final int atomIndex : this.getAtomIndicesInSpheres(changedAtomIndices, 1)) {
+            matchedAtomType = atomTypeMatcher.findMatchingAtomType(this.substructure, this.substructure.getAtom(atomIndex));
+            if (matchedAtomType != null) {
+                AtomTypeManipulator.configure(this.substructure.getAtom(atomIndex), matchedAtomType);
+            }
+        }
+        final LinkedHashSet<Integer> affectedAtomIndices = this.getAtomIndicesInSpheres(changedAtomIndices, this.maxSphere);
+        // keep the lazily built connection trees and HOSE codes of unaffected atoms
+        final AtomicReferenceArray<ConnectionTree> sphereConnectionTrees = new AtomicReferenceArray<>(this.getAtomCount() * (this.maxSphere + 1));
+        final AtomicReferenceArray<String> sphereHOSECodes = new AtomicReferenceArray<>(this.getAtomCount() * (this.maxSphere + 1));
+        for (int i = 0; i < previousAtomCount; i++) {
+            if (affectedAtomIndices.contains(i)) {
+                continue;
+            }
+            for (int s = 0; s <= this.maxSphere; s++) {
+                sphereConnectionTrees.set(i * (this.maxSphere + 1) + s, this.sphereConnectionTrees.get(i * (this.maxSphere + 1) + s));
+                sphereHOSECodes.set(i * (this.maxSphere + 1) + s, this.sphereHOSECodes.get(i * (this.maxSphere + 1) + s));
+            }
+        }
+        this.sphereConnectionTrees = sphereConnectionTrees;
+        this.sphereHOSECodes = sphereHOSECodes;
+        // atom types of already existing atoms do not change
+        for (int i = previousAtomCount; i < this.getAtomCount(); i++) {
+            this.atomTypeIndices.computeIfAbsent(this.substructure.getAtom(i).getSymbol(), key -> new ArrayList<>()).add(i);
+        }
+        this.unsaturatedAtomIndices.removeAll(affectedAtomIndices);
+        for (final int atomIndex : affectedAtomIndices) {
+            if (!Utils.isSaturated(this.substructure, atomIndex)) {
+                this.unsaturatedAtomIndices.add(atomIndex);
+            }
+        }
+        Collections.sort(this.unsaturatedAtomIndices);
+        for (final int atomIndex : affectedAtomIndices) {
+            this.updateHOSECode(atomIndex);
+        }
+        // signals were only appended, so the sections of the existing ones stay the same
+        int previousSignalCount = 0;
+        for (final ArrayList<Integer> shiftSections : this.multiplicitySections.values()) {
+            previousSignalCount += shiftSections.size();
+        }
+        this.multiplicitySectionsBuilder.addMultiplicitySections(this.subspectrum, previousSignalCount, this.multiplicitySections);
+        this.symmetryClasses = null;
+    }
+
+    /**
+     * Returns the indices of the given atoms and of all atoms within a
+     * certain number of bonds around them.
+     *
+     * @param atomIndices
+     * @param sphere max. number of bonds
+     * @return
+     */
+    private LinkedHashSet<Integer> getAtomIndicesInSpheres(final Collection<Integer> atomIndices, final int sphere) {
+        final LinkedHashSet<Integer> atomIndicesInSpheres = new LinkedHashSet<>();
+        HashSet<Integer> atomIndicesInSphere = new HashSet<>(), atomIndicesInNextSphere;
+        for (final int atomIndex : atomIndices) {
+            if (Utils.checkIndexInAtomContainer(this.substructure, atomIndex) && atomIndicesInSpheres.add(atomIndex)) {
+                atomIndicesInSphere.add(atomIndex);
+            }
+        }
+        for (int s = 1; s <= sphere; s++) {
+            atomIndicesInNextSphere = new HashSet<>();
+            for (final int atomIndex : atomIndicesInSphere) {
+                for (final IAtom connectedAtom : this.substructure.getConnectedAtomsList(this.substructure.getAtom(atomIndex))) {
+                    if (atomIndicesInSpheres.add(this.substructure.indexOf(connectedAtom))) {
+                        atomIndicesInNextSphere.add(this.substructure.indexOf(connectedAtom));
+                    }
+                }
+            }
+            atomIndicesInSphere = atomIndicesInNextSphere;
+        }
+
+        return atomIndicesInSpheres;
     }
     
     @Override
@@ -179,6 +305,37 @@ public final class SSC {
         return this.unsaturatedAtomIndices;
     }
     
+    /**
+     * Returns the exact symmetry class of each atom in substructure. Atoms of
+     * the same class are mapped onto each other by an automorphism which
+     * keeps the assigned shifts, multiplicities and saturation, so they lead
+     * to the same extensions in the assembly process. The classes are built
+     * on first request after each update.
+     *
+     * @return class per atom index; must not be modified
+     * @see StructureHash#calculateSymmetryClasses(IAtomContainer, long[])
+     */
+    public long[] getSymmetryClasses(){
+        long[] symmetryClasses = this.symmetryClasses;
+        if(symmetryClasses == null){
+            final long[] atomInvariants = new long[this.getAtomCount()];
+            Integer signalIndex;
+            Signal signal;
+            for (int i = 0; i < this.getAtomCount(); i++) {
+                signalIndex = this.assignment.getIndex(0, i);
+                signal = (signalIndex != null) ? this.subspectrum.getSignal(signalIndex) : null;
+                if(signal != null){
+                    atomInvariants[i] = Objects.hashCode(signal.getShift(0)) * 31L + Objects.hashCode(signal.getMultiplicity());
+                }
+                atomInvariants[i] = atomInvariants[i] * 31 + (this.unsaturatedAtomIndices.contains(i) ? 1 : 0);
+            }
+            symmetryClasses = StructureHash.calculateSymmetryClasses(this.substructure, atomInvariants);
+            this.symmetryClasses = symmetryClasses;
+        }
+
+        return symmetryClasses;
+    }
+    
     public void updateAtomTypeIndices(){
         this.atomTypeIndices = Utils.getAtomTypeIndices(this.substructure);
     } 
@@ -251,6 +408,54 @@ public final class SSC {
         return null;
     }
 
+    /**
+     * Returns the connection tree of an atom with a certain sphere as limit.
+     * It is built at the first request and kept until the next update, so
+     * that repeated requests cost only an array lookup.
+     *
+     * @param atomIndexInSubstructure
+     * @param sphere sphere limit, from 0 to max. sphere of this SSC
+     * @return null if the atom index or sphere is not valid
+     * @throws CDKException
+     */
+    public ConnectionTree getConnectionTree(final int atomIndexInSubstructure, final int sphere) throws CDKException {
+        if(!Utils.checkIndexInAtomContainer(this.substructure, atomIndexInSubstructure) || (sphere < 0) || (sphere > this.maxSphere)){
+            return null;
+        }
+        final int position = atomIndexInSubstructure * (this.maxSphere + 1) + sphere;
+        ConnectionTree connectionTree = this.sphereConnectionTrees.get(position);
+        if(connectionTree == null){
+            connectionTree = HOSECodeBuilder.buildConnectionTree(this.substructure, atomIndexInSubstructure, sphere);
+            this.sphereConnectionTrees.set(position, connectionTree);
+        }
+
+        return connectionTree;
+    }
+
+    /**
+     * Returns the HOSE code of an atom with a certain sphere as limit.
+     * It is built at the first request and kept until the next update, so
+     * that repeated requests cost only an array lookup.
+     *
+     * @param atomIndexInSubstructure
+     * @param sphere sphere limit, from 0 to max. sphere of this SSC
+     * @return null if the atom index or sphere is not valid
+     * @throws CDKException
+     */
+    public String getHOSECode(final int atomIndexInSubstructure, final int sphere) throws CDKException {
+        if(!Utils.checkIndexInAtomContainer(this.substructure, atomIndexInSubstructure) || (sphere < 0) || (sphere > this.maxSphere)){
+            return null;
+        }
+        final int position = atomIndexInSubstructure * (this.maxSphere + 1) + sphere;
+        String HOSECode = this.sphereHOSECodes.get(position);
+        if(HOSECode == null){
+            HOSECode = HOSECodeBuilder.buildHOSECode(this.getConnectionTree(atomIndexInSubstructure, sphere), false);
+            this.sphereHOSECodes.set(position, HOSECode);
+        }
+
+        return HOSECode;
+    }
+
     /**
      * @param atomIndexInSubstructure
      * @param sphere
@@ -324,6 +529,39 @@ public final class SSC {
         return this.index;
     }
     
+    /**
+     * Sets the structure this SSC was built from: SSCs with the same source 
+     * structure and source atom but different maximum spheres contain each 
+     * other.
+     *
+     * @param sourceID globally unique ID of the source structure, e.g. its 
+     * NMRShiftDB ID
+     * @param sourceAtomIndex index of the root atom in the source structure
+     */
+    public void setSource(final String sourceID, final int sourceAtomIndex){
+        this.sourceID = sourceID;
+        this.sourceAtomIndex = sourceAtomIndex;
+    }
+    
+    public String getSourceID(){
+        return this.sourceID;
+    }
+    
+    public int getSourceAtomIndex(){
+        return this.sourceAtomIndex;
+    }
+    
+    /**
+     * Checks whether the source structure and source atom of this SSC are 
+     * known.
+     *
+     * @return
+     * @see #setSource(String, int)
+     */
+    public boolean hasSource(){
+        return (this.sourceID != null) && (this.sourceAtomIndex >= 0);
+    }
+    
     public Spectrum getSubspectrum(){
         return this.subspectrum;
     }
@@ -36,6 +36,10 @@ public class SSCConverter {
                 sscDocument.getInteger("maxSphere")
                 );
         ssc.setIndex(sscDocument.getLong("index"));
+        // SSC libraries of older versions contain no source or only a source index, which is not unique across SDF files
+        if (sscDocument.containsKey("sourceID") && sscDocument.containsKey("sourceAtomIndex")) {
+            ssc.setSource(sscDocument.getString("sourceID"), sscDocument.getInteger("sourceAtomIndex"));
+        }
 
         return ssc;
     }
@@ -48,6 +52,10 @@ public class SSCConverter {
         document.append("maxSphere", ssc.getMaxSphere());
         document.append("rootAtomIndex", ssc.getRootAtomIndex());
         document.append("index", sscIndex);
+        if (ssc.hasSource()) {
+            document.append("sourceID", ssc.getSourceID());
+            document.append("sourceAtomIndex", ssc.getSourceAtomIndex());
+        }
         document.append("multSections", ssc.getMultiplicitySections());
         
         return document;
@@ -63,6 +71,10 @@ public class SSCConverter {
                 jsonObject.get("maxSphere").getAsInt()
         );
         ssc.setIndex(jsonObject.get("index").getAsJsonObject().get("$numberLong").getAsLong());
+        // SSC libraries of older versions contain no source or only a source index, which is not unique across SDF files
+        if (jsonObject.has("sourceID") && jsonObject.has("sourceAtomIndex")) {
+            ssc.setSource(jsonObject.get("sourceID").getAsString(), jsonObject.get("sourceAtomIndex").getAsInt());
+        }
 
         return ssc;
     }
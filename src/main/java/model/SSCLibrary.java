@@ -564,11 +564,12 @@ public final class SSCLibrary {
      * @throws java.lang.InterruptedException
      * @throws java.lang.CloneNotSupportedException
      * 
-     * @see Fragmentation#buildSSCLibrary(HashMap, int, int, long)
+     * @see Fragmentation#buildSSCLibrary(HashMap, int, int, long, String)
      * @see #extend(String, String, int, long)
      */
     public void extend(final String pathToNMRShiftDB, final String property, final int maxSphere, final long offset) throws FileNotFoundException, CDKException, InterruptedException, CloneNotSupportedException {
-        this.extend(Fragmentation.buildSSCLibrary(NMRShiftDB.getSSCComponentsFromNMRShiftDB(pathToNMRShiftDB, property), maxSphere, this.nThreads, offset));
+        // the file name qualifies the source IDs of structures without NMRShiftDB ID
+        this.extend(Fragmentation.buildSSCLibrary(NMRShiftDB.getSSCComponentsFromNMRShiftDB(pathToNMRShiftDB, property), maxSphere, this.nThreads, offset, new File(pathToNMRShiftDB).getName()));
     }
     
     /**
@@ -0,0 +1,330 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2019 Michael Wenk [https://github.com/michaelwenk]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package model;
+
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IBond;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+
+/**
+ * Class for a canonical hash of a structure, independent of its atom order.
+ * <br>
+ * Each atom starts with an invariant of its element, charge, number of
+ * implicit hydrogens and number of connections. The invariants are then
+ * refined iteratively by the invariants of the neighbors and the connecting
+ * bonds, until the number of different invariants does not grow anymore.
+ * The sorted final invariants are combined to the hash. <br>
+ * Isomorphic structures always get the same hash. Different structures
+ * could get the same hash in rare cases, so a hash hit has to be confirmed,
+ * e.g. by canonical SMILES. <br>
+ * The final invariants of the atoms themselves are only a partition of the
+ * atoms, see {@link #calculateAtomClasses(IAtomContainer, long[])}; the
+ * exact symmetry classes are built from them by an automorphism search, see
+ * {@link #calculateSymmetryClasses(IAtomContainer, long[])}.
+ *
+ * @author Michael Wenk [https://github.com/michaelwenk]
+ */
+public class StructureHash {
+
+    private final static long PRIME = 0x9E3779B97F4A7C15L;
+    // invariant of an atom individualized in the automorphism search
+    private final static long INDIVIDUALIZED = 0x2545F4914F6CDD1DL;
+
+    // neighbor atom indices, bond codes and initial invariants of each atom
+    private static class Graph {
+        private final int[][] neighbors;
+        private final long[][] bondCodes;
+        private final long[] invariants;
+
+        private Graph(final int[][] neighbors, final long[][] bondCodes, final long[] invariants) {
+            this.neighbors = neighbors;
+            this.bondCodes = bondCodes;
+            this.invariants = invariants;
+        }
+    }
+
+    /**
+     * Calculates the canonical hash of a structure.
+     *
+     * @param ac structure
+     * @return
+     */
+    public static long calculate(final IAtomContainer ac) {
+        final Graph graph = StructureHash.buildGraph(ac, null);
+        final long[] invariants = StructureHash.refine(graph, graph.invariants);
+        Arrays.sort(invariants);
+        long hash = StructureHash.mix(ac.getAtomCount() * PRIME + ac.getBondCount());
+        for (final long invariant : invariants) {
+            hash = StructureHash.mix(hash * PRIME + invariant);
+        }
+
+        return hash;
+    }
+
+    /**
+     * Calculates a partition of the atoms of a structure by iterative
+     * refinement, incl. the given additional atom invariants. Topologically
+     * equivalent atoms always get the same class, but atoms of the same class
+     * could be non-equivalent, so the classes are canonical but not exact.
+     *
+     * @param ac structure
+     * @param atomInvariants additional invariant per atom, e.g. its assigned
+     * shift; null for none
+     * @return class per atom, in atom order
+     * @see #calculateSymmetryClasses(IAtomContainer, long[])
+     */
+    public static long[] calculateAtomClasses(final IAtomContainer ac, final long[] atomInvariants) {
+        final Graph graph = StructureHash.buildGraph(ac, atomInvariants);
+
+        return StructureHash.refine(graph, graph.invariants);
+    }
+
+    /**
+     * Calculates the exact symmetry classes of the atoms of a structure: two
+     * atoms are in the same class if and only if an automorphism of the
+     * structure, which also keeps the given additional atom invariants, maps
+     * one to the other. <br>
+     * The refined classes of
+     * {@link #calculateAtomClasses(IAtomContainer, long[])} are split by
+     * searching such an automorphism for each atom and the representatives
+     * of the classes found so far.
+     *
+     * @param ac structure
+     * @param atomInvariants additional invariant per atom, e.g. its assigned
+     * shift; null for none
+     * @return class per atom, in atom order: the lowest atom index of its
+     * class
+     */
+    public static long[] calculateSymmetryClasses(final IAtomContainer ac, final long[] atomInvariants) {
+        final Graph graph = StructureHash.buildGraph(ac, atomInvariants);
+        final long[] atomClasses = StructureHash.refine(graph, graph.invariants);
+        final long[] symmetryClasses = new long[atomClasses.length];
+        // representatives of the symmetry classes found so far per refined class
+        final HashMap<Long, ArrayList<Integer>> representatives = new HashMap<>();
+        ArrayList<Integer> representativesInClass;
+        for (int i = 0; i < atomClasses.length; i++) {
+            symmetryClasses[i] = i;
+            representativesInClass = representatives.computeIfAbsent(atomClasses[i], key -> new ArrayList<>());
+            for (final int representative : representativesInClass) {
+                if (StructureHash.isInSameOrbit(graph, atomClasses, representative, i)) {
+                    symmetryClasses[i] = representative;
+                    break;
+                }
+            }
+            if (symmetryClasses[i] == i) {
+                representativesInClass.add(i);
+            }
+        }
+
+        return symmetryClasses;
+    }
+
+    private static boolean isInSameOrbit(final Graph graph, final long[] atomClasses, final int atomIndex1, final int atomIndex2) {
+        final long[] colors1 = atomClasses.clone();
+        final long[] colors2 = atomClasses.clone();
+        colors1[atomIndex1] = StructureHash.mix(colors1[atomIndex1] * PRIME + INDIVIDUALIZED);
+        colors2[atomIndex2] = StructureHash.mix(colors2[atomIndex2] * PRIME + INDIVIDUALIZED);
+
+        return StructureHash.isIsomorphic(graph, colors1, colors2);
+    }
+
+    /**
+     * Searches an automorphism of the graph which maps the first atom
+     * coloring onto the second one, by refinement and individualization of
+     * the atoms of the first non-discrete class. Refinement is invariant
+     * under isomorphism, so no automorphism is missed; a found mapping is
+     * verified bond by bond, so hash collisions can not lead to a wrong
+     * result.
+     */
+    private static boolean isIsomorphic(final Graph graph, final long[] colors1, final long[] colors2) {
+        final long[] refinedColors1 = StructureHash.refine(graph, colors1);
+        final long[] refinedColors2 = StructureHash.refine(graph, colors2);
+        final long[] sortedColors1 = refinedColors1.clone();
+        final long[] sortedColors2 = refinedColors2.clone();
+        Arrays.sort(sortedColors1);
+        Arrays.sort(sortedColors2);
+        if (!Arrays.equals(sortedColors1, sortedColors2)) {
+            return false;
+        }
+        // first atom of a class with more than one atom
+        final HashMap<Long, Integer> classSizes = new HashMap<>();
+        for (final long color : refinedColors1) {
+            classSizes.merge(color, 1, Integer::sum);
+        }
+        int atomIndex1 = -1;
+        for (int i = 0; i < refinedColors1.length; i++) {
+            if (classSizes.get(refinedColors1[i]) > 1) {
+                atomIndex1 = i;
+                break;
+            }
+        }
+        if (atomIndex1 == -1) {
+            return StructureHash.isAutomorphism(graph, refinedColors1, refinedColors2);
+        }
+        long[] nextColors1, nextColors2;
+        for (int atomIndex2 = 0; atomIndex2 < refinedColors2.length; atomIndex2++) {
+            if (refinedColors2[atomIndex2] != refinedColors1[atomIndex1]) {
+                continue;
+            }
+            nextColors1 = refinedColors1.clone();
+            nextColors2 = refinedColors2.clone();
+            nextColors1[atomIndex1] = StructureHash.mix(nextColors1[atomIndex1] * PRIME + INDIVIDUALIZED);
+            nextColors2[atomIndex2] = StructureHash.mix(nextColors2[atomIndex2] * PRIME + INDIVIDUALIZED);
+            if (StructureHash.isIsomorphic(graph, nextColors1, nextColors2)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    // checks the mapping given by two discrete colorings
+    private static boolean isAutomorphism(final Graph graph, final long[] colors1, final long[] colors2) {
+        final HashMap<Long, Integer> atomIndicesByColor2 = new HashMap<>();
+        for (int i = 0; i < colors2.length; i++) {
+            atomIndicesByColor2.put(colors2[i], i);
+        }
+        final int[] mapping = new int[colors1.length];
+        for (int i = 0; i < colors1.length; i++) {
+            mapping[i] = atomIndicesByColor2.get(colors1[i]);
+            if ((graph.invariants[i] != graph.invariants[mapping[i]]) || (graph.neighbors[i].length != graph.neighbors[mapping[i]].length)) {
+                return false;
+            }
+        }
+        boolean isBonded;
+        for (int i = 0; i < colors1.length; i++) {
+            for (int k = 0; k < graph.neighbors[i].length; k++) {
+                isBonded = false;
+                for (int l = 0; l < graph.neighbors[mapping[i]].length; l++) {
+                    if ((graph.neighbors[mapping[i]][l] == mapping[graph.neighbors[i][k]]) && (graph.bondCodes[mapping[i]][l] == graph.bondCodes[i][k])) {
+                        isBonded = true;
+                        break;
+                    }
+                }
+                if (!isBonded) {
+                    return false;
+                }
+            }
+        }
+
+        return true;
+    }
+
+    private static Graph buildGraph(final IAtomContainer ac, final long[] atomInvariants) {
+        final int atomCount = ac.getAtomCount();
+        final IdentityHashMap<IAtom, Integer> atomIndices = new IdentityHashMap<>();
+        for (int i = 0; i < atomCount; i++) {
+            atomIndices.put(ac.getAtom(i), i);
+        }
+        final int[] connectionsCounts = new int[atomCount];
+        for (final IBond bond : ac.bonds()) {
+            connectionsCounts[atomIndices.get(bond.getAtom(0))]++;
+            connectionsCounts[atomIndices.get(bond.getAtom(1))]++;
+        }
+        final int[][] neighbors = new int[atomCount][];
+        final long[][] bondCodes = new long[atomCount][];
+        for (int i = 0; i < atomCount; i++) {
+            neighbors[i] = new int[connectionsCounts[i]];
+            bondCodes[i] = new long[connectionsCounts[i]];
+            connectionsCounts[i] = 0;
+        }
+        int atomIndex1, atomIndex2;
+        long bondCode;
+        for (final IBond bond : ac.bonds()) {
+            atomIndex1 = atomIndices.get(bond.getAtom(0));
+            atomIndex2 = atomIndices.get(bond.getAtom(1));
+            bondCode = StructureHash.getBondCode(bond);
+            neighbors[atomIndex1][connectionsCounts[atomIndex1]] = atomIndex2;
+            bondCodes[atomIndex1][connectionsCounts[atomIndex1]] = bondCode;
+            connectionsCounts[atomIndex1]++;
+            neighbors[atomIndex2][connectionsCounts[atomIndex2]] = atomIndex1;
+            bondCodes[atomIndex2][connectionsCounts[atomIndex2]] = bondCode;
+            connectionsCounts[atomIndex2]++;
+        }
+        final long[] invariants = new long[atomCount];
+        for (int i = 0; i < atomCount; i++) {
+            invariants[i] = StructureHash.getAtomInvariant(ac.getAtom(i), neighbors[i].length);
+            if (atomInvariants != null) {
+                invariants[i] = StructureHash.mix(invariants[i] * PRIME + atomInvariants[i]);
+            }
+        }
+
+        return new Graph(neighbors, bondCodes, invariants);
+    }
+
+    private static long[] refine(final Graph graph, final long[] initialInvariants) {
+        final int atomCount = initialInvariants.length;
+        long[] invariants = initialInvariants.clone(), nextInvariants;
+        int classesCount = StructureHash.countClasses(invariants), nextClassesCount;
+        long neighborsSum, neighborsXor, neighborInvariant;
+        // at most n refinements are needed to distinguish all atoms
+        for (int iteration = 0; iteration < atomCount; iteration++) {
+            nextInvariants = new long[atomCount];
+            for (int i = 0; i < atomCount; i++) {
+                // order independent combination of the neighbors
+                neighborsSum = 0;
+                neighborsXor = 0;
+                for (int k = 0; k < graph.neighbors[i].length; k++) {
+                    neighborInvariant = StructureHash.mix(invariants[graph.neighbors[i][k]] + graph.bondCodes[i][k]);
+                    neighborsSum += neighborInvariant;
+                    neighborsXor ^= StructureHash.mix(neighborInvariant);
+                }
+                nextInvariants[i] = StructureHash.mix(invariants[i] * PRIME + neighborsSum) ^ neighborsXor;
+            }
+            nextClassesCount = StructureHash.countClasses(nextInvariants);
+            invariants = nextInvariants;
+            if (nextClassesCount <= classesCount) {
+                break;
+            }
+            classesCount = nextClassesCount;
+        }
+
+        return invariants;
+    }
+
+    private static long getAtomInvariant(final IAtom atom, final int connectionsCount) {
+        long invariant = atom.getSymbol().hashCode();
+        invariant = invariant * 31 + ((atom.getFormalCharge() != null) ? atom.getFormalCharge() : 0);
+        invariant = invariant * 31 + ((atom.getImplicitHydrogenCount() != null) ? atom.getImplicitHydrogenCount() : 0);
+        invariant = invariant * 31 + connectionsCount;
+        invariant = invariant * 31 + (atom.isAromatic() ? 1 : 0);
+
+        return StructureHash.mix(invariant);
+    }
+
+    private static long getBondCode(final IBond bond) {
+        return ((bond.getOrder() != null) ? bond.getOrder().ordinal() + 1 : 0) * 2 + (bond.isAromatic() ? 1 : 0);
+    }
+
+    private static int countClasses(final long[] invariants) {
+        final HashSet<Long> classes = new HashSet<>();
+        for (final long invariant : invariants) {
+            classes.add(invariant);
+        }
+
+        return classes.size();
+    }
+
+    // finalizer of SplitMix64
+    private static long mix(long value) {
+        value = (value ^ (value >>> 30)) * 0xBF58476D1CE4E5B9L;
+        value = (value ^ (value >>> 27)) * 0x94D049BB133111EBL;
+
+        return value ^ (value >>> 31);
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2019 Michael Wenk [https://github.com/michaelwenk]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package model;
+
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.smiles.SmiFlavor;
+import org.openscience.cdk.smiles.SmilesGenerator;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.function.Function;
+
+/**
+ * Class for a map of values with unique structures, in insertion order. <br>
+ * As for the solutions of the assembly process, the values are keyed by
+ * their structure hash (see {@link StructureHash}) and a hash hit is
+ * confirmed by canonical SMILES; a different structure with the same hash
+ * gets the next free key. So two values are only treated as the same
+ * structure if their SMILES are equal. <br>
+ * An instance is not thread-safe.
+ *
+ * @param <V> value type
+ *
+ * @author Michael Wenk [https://github.com/michaelwenk]
+ */
+public class StructureMap<V> {
+
+    private final Function<V, IAtomContainer> structureOf;
+    private final LinkedHashMap<Long, V> values;
+    // canonical SMILES of already compared values per key
+    private final HashMap<Long, String> smilesPerKey;
+    private SmilesGenerator smilesGenerator;
+
+    /**
+     * @param structureOf returns the structure of a value
+     */
+    public StructureMap(final Function<V, IAtomContainer> structureOf) {
+        this.structureOf = structureOf;
+        this.values = new LinkedHashMap<>();
+        this.smilesPerKey = new HashMap<>();
+    }
+
+    /**
+     * Returns the key of a value with the same structure in this map, or the
+     * free key to use for this structure if there is none yet, see
+     * {@link #contains(long)}.
+     *
+     * @param structure
+     * @return
+     * @throws CDKException
+     */
+    public long getKey(final IAtomContainer structure) throws CDKException {
+        long key = StructureHash.calculate(structure);
+        String structureAsSMILES = null;
+        String existingStructureAsSMILES;
+        while (this.values.containsKey(key)) {
+            if (this.smilesGenerator == null) {
+                this.smilesGenerator = new SmilesGenerator(SmiFlavor.Absolute);
+            }
+            if (structureAsSMILES == null) {
+                structureAsSMILES = this.smilesGenerator.create(structure);
+            }
+            existingStructureAsSMILES = this.smilesPerKey.get(key);
+            if (existingStructureAsSMILES == null) {
+                existingStructureAsSMILES = this.smilesGenerator.create(this.structureOf.apply(this.values.get(key)));
+                this.smilesPerKey.put(key, existingStructureAsSMILES);
+            }
+            if (structureAsSMILES.equals(existingStructureAsSMILES)) {
+                return key;
+            }
+            // different structure with same hash -> next free key
+            key++;
+        }
+
+        return key;
+    }
+
+    public boolean contains(final long key) {
+        return this.values.containsKey(key);
+    }
+
+    public V get(final long key) {
+        return this.values.get(key);
+    }
+
+    /**
+     * Puts a value under a key returned by {@link #getKey(IAtomContainer)}
+     * for its structure; an existing value is replaced.
+     *
+     * @param key
+     * @param value
+     */
+    public void put(final long key, final V value) {
+        this.values.put(key, value);
+    }
+
+    public int size() {
+        return this.values.size();
+    }
+
+    /**
+     * Returns the values in insertion order.
+     *
+     * @return
+     */
+    public Collection<V> values() {
+        return this.values.values();
+    }
+}
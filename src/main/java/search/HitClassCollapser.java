@@ -0,0 +1,267 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2019 Michael Wenk [https://github.com/michaelwenk]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package search;
+
+import casekit.NMR.model.Signal;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import model.SSC;
+import model.SSCLibrary;
+import model.StructureHash;
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.smiles.SmiFlavor;
+import org.openscience.cdk.smiles.SmilesGenerator;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.TreeMap;
+
+/**
+ * Class to group the ranked SSCs (hits) of a query spectrum into hit
+ * classes. <br>
+ * Hits of one class have the same substructure (same canonical SMILES) and
+ * max. sphere, and the shifts of their symmetry classes (see
+ * {@link StructureHash#calculateSymmetryClasses(IAtomContainer, long[])})
+ * deviate by at most the shift tolerance from the ones of the class
+ * representative, i.e. its best ranked hit. The symmetry classes of
+ * different hits are matched by the canonical atom order of the SMILES. So
+ * all members of a class lead to the same extensions within shift
+ * tolerance, and the assembly process only needs to use the
+ * representatives. The members of each class are kept for reporting.
+ *
+ * @author Michael Wenk [https://github.com/michaelwenk]
+ */
+public final class HitClassCollapser {
+
+    private final SSCLibrary rankedSSCLibrary;
+    private final SSCLibrary representatives;
+    // ranked SSC indices of all members per class, in ranked order; the first one is the representative
+    private final ArrayList<ArrayList<Long>> hitClasses;
+
+    /**
+     * Instanciates a new object of this class.
+     *
+     * @param rankedSSCLibrary ranked SSC library with indices 0, 1, 2 etc.,
+     * as given by {@link SSCRanker#getHits()}
+     */
+    public HitClassCollapser(final SSCLibrary rankedSSCLibrary) {
+        this.rankedSSCLibrary = rankedSSCLibrary;
+        this.representatives = new SSCLibrary(rankedSSCLibrary.getNThreads());
+        this.hitClasses = new ArrayList<>();
+    }
+
+    /**
+     * Groups the ranked SSCs into hit classes and builds the library of the
+     * class representatives in ranked order.
+     *
+     * @param shiftTol shift tolerance value [ppm] in which chemical shifts are
+     * considered as the same
+     * @throws Exception
+     *
+     * @see #getRepresentatives()
+     * @see #getHitClasses()
+     */
+    public void collapse(final double shiftTol) throws Exception {
+        this.representatives.removeAll();
+        this.hitClasses.clear();
+        // classes per pair of canonical SMILES and max. sphere
+        final HashMap<String, ArrayList<Integer>> classIndices = new HashMap<>();
+        final ArrayList<TreeMap<Integer, ArrayList<Double>>> representativeShifts = new ArrayList<>();
+        final SmilesGenerator smilesGenerator = new SmilesGenerator(SmiFlavor.Absolute);
+        SSC ssc;
+        String key;
+        int[] canonicalOrder;
+        TreeMap<Integer, ArrayList<Double>> shifts;
+        Integer matchingClassIndex;
+        for (long i = 0; i < this.rankedSSCLibrary.getSSCCount(); i++) {
+            ssc = this.rankedSSCLibrary.getSSC(i);
+            canonicalOrder = new int[ssc.getAtomCount()];
+            try {
+                key = smilesGenerator.create(ssc.getSubstructure(), canonicalOrder) + "_" + ssc.getMaxSphere();
+            } catch (CDKException e) {
+                // without SMILES the hit can not be compared and gets its own class
+                key = null;
+            }
+            shifts = HitClassCollapser.getShiftsPerSymmetryClass(ssc, canonicalOrder);
+            matchingClassIndex = null;
+            if (key != null) {
+                for (final int classIndex : classIndices.computeIfAbsent(key, k -> new ArrayList<>())) {
+                    if (HitClassCollapser.isMatch(representativeShifts.get(classIndex), shifts, shiftTol)) {
+                        matchingClassIndex = classIndex;
+                        break;
+                    }
+                }
+            }
+            if (matchingClassIndex != null) {
+                this.hitClasses.get(matchingClassIndex).add(i);
+                continue;
+            }
+            if (key != null) {
+                classIndices.get(key).add(this.hitClasses.size());
+            }
+            representativeShifts.add(shifts);
+            this.hitClasses.add(new ArrayList<>(Collections.singletonList(i)));
+        }
+        // the representatives keep the ranked order and get new indices 0, 1, 2 etc.
+        SSC representative;
+        for (final ArrayList<Long> hitClass : this.hitClasses) {
+            representative = this.rankedSSCLibrary.getSSC(hitClass.get(0)).getClone();
+            representative.setIndex(this.representatives.getSSCCount());
+            this.representatives.insert(representative);
+        }
+    }
+
+    /**
+     * Returns the sorted shifts of each symmetry class, keyed by the lowest
+     * canonical position of its atoms, so that the keys of isomorphic
+     * substructures correspond; atoms without assigned signal are ignored.
+     *
+     * @param ssc
+     * @param canonicalOrder canonical position of each atom, as given by
+     * {@link SmilesGenerator#create(IAtomContainer, int[])}
+     * @return
+     */
+    private static TreeMap<Integer, ArrayList<Double>> getShiftsPerSymmetryClass(final SSC ssc, final int[] canonicalOrder) {
+        final long[] symmetryClasses = StructureHash.calculateSymmetryClasses(ssc.getSubstructure(), null);
+        // lowest canonical position per symmetry class
+        final HashMap<Long, Integer> classKeys = new HashMap<>();
+        for (int i = 0; i < ssc.getAtomCount(); i++) {
+            classKeys.merge(symmetryClasses[i], canonicalOrder[i], Integer::min);
+        }
+        final TreeMap<Integer, ArrayList<Double>> shifts = new TreeMap<>();
+        Integer signalIndex;
+        Signal signal;
+        for (int i = 0; i < ssc.getAtomCount(); i++) {
+            signalIndex = ssc.getAssignments().getIndex(0, i);
+            signal = (signalIndex != null) ? ssc.getSubspectrum().getSignal(signalIndex) : null;
+            if ((signal == null) || (signal.getShift(0) == null)) {
+                continue;
+            }
+            shifts.computeIfAbsent(classKeys.get(symmetryClasses[i]), key -> new ArrayList<>()).add(signal.getShift(0));
+        }
+        for (final ArrayList<Double> shiftsInClass : shifts.values()) {
+            Collections.sort(shiftsInClass);
+        }
+
+        return shifts;
+    }
+
+    private static boolean isMatch(final TreeMap<Integer, ArrayList<Double>> shifts1, final TreeMap<Integer, ArrayList<Double>> shifts2, final double shiftTol) {
+        if (!shifts1.keySet().equals(shifts2.keySet())) {
+            return false;
+        }
+        ArrayList<Double> shiftsInClass1, shiftsInClass2;
+        for (final int atomClass : shifts1.keySet()) {
+            shiftsInClass1 = shifts1.get(atomClass);
+            shiftsInClass2 = shifts2.get(atomClass);
+            if (shiftsInClass1.size() != shiftsInClass2.size()) {
+                return false;
+            }
+            for (int k = 0; k < shiftsInClass1.size(); k++) {
+                if (Math.abs(shiftsInClass1.get(k) - shiftsInClass2.get(k)) > shiftTol) {
+                    return false;
+                }
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns a SSC library containing clones of the class representatives
+     * in ranked order. The SSC indices are set in new order starting at 0,
+     * 1, 2 etc., which are also the class indices.
+     *
+     * @return
+     *
+     * @see #collapse(double)
+     */
+    public SSCLibrary getRepresentatives() {
+        return this.representatives;
+    }
+
+    /**
+     * Returns the ranked SSC indices of the members of each class, in ranked
+     * order. The first member of a class is its representative.
+     *
+     * @return
+     *
+     * @see #collapse(double)
+     */
+    public ArrayList<ArrayList<Long>> getHitClasses() {
+        return this.hitClasses;
+    }
+
+    public int getHitClassesCount() {
+        return this.hitClasses.size();
+    }
+
+    /**
+     * Returns the members of all classes with more than one member.
+     *
+     * @param rankedSSCIndices library SSC indices in ranked order, see
+     * {@link SSCRanker#getRankedSSCIndices()}, to also report the library
+     * indices of the members; null for ranked indices only
+     * @return
+     */
+    public JsonObject toJson(final ArrayList<Long> rankedSSCIndices) {
+        final JsonObject jsonObject = new JsonObject();
+        jsonObject.addProperty("hits", this.rankedSSCLibrary.getSSCCount());
+        jsonObject.addProperty("hitClasses", this.getHitClassesCount());
+        final JsonArray collapsedHitClasses = new JsonArray();
+        JsonObject collapsedHitClass;
+        JsonArray members, libraryMembers;
+        for (int classIndex = 0; classIndex < this.hitClasses.size(); classIndex++) {
+            if (this.hitClasses.get(classIndex).size() < 2) {
+                continue;
+            }
+            collapsedHitClass = new JsonObject();
+            collapsedHitClass.addProperty("classIndex", classIndex);
+            members = new JsonArray();
+            libraryMembers = new JsonArray();
+            for (final long rankedSSCIndex : this.hitClasses.get(classIndex)) {
+                members.add(rankedSSCIndex);
+                if (rankedSSCIndices != null) {
+                    libraryMembers.add(rankedSSCIndices.get((int) rankedSSCIndex));
+                }
+            }
+            collapsedHitClass.add("rankedSSCIndices", members);
+            if (rankedSSCIndices != null) {
+                collapsedHitClass.add("librarySSCIndices", libraryMembers);
+            }
+            collapsedHitClasses.add(collapsedHitClass);
+        }
+        jsonObject.add("collapsedHitClasses", collapsedHitClasses);
+
+        return jsonObject;
+    }
+
+    /**
+     * Writes the hit classes as JSON file.
+     *
+     * @param pathToFile path to file
+     * @param rankedSSCIndices see {@link #toJson(ArrayList)}
+     * @throws IOException
+     */
+    public void write(final String pathToFile, final ArrayList<Long> rankedSSCIndices) throws IOException {
+        try (final BufferedWriter bw = new BufferedWriter(new FileWriter(pathToFile))) {
+            bw.append(new GsonBuilder().setPrettyPrinting().create().toJson(this.toJson(rankedSSCIndices)));
+            bw.newLine();
+        }
+    }
+}
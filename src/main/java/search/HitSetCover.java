@@ -0,0 +1,207 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2019 Michael Wenk [https://github.com/michaelwenk]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package search;
+
+import casekit.NMR.Utils;
+import casekit.NMR.match.Matcher;
+import casekit.NMR.model.Assignment;
+import casekit.NMR.model.Spectrum;
+import model.SSC;
+import model.SSCLibrary;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Class to select a small subset of the ranked SSCs (hits) of a query
+ * spectrum which still covers each query signal several times. <br>
+ * A hit covers the query signals its subspectrum signals are matched to. The
+ * hits are picked greedily: each time the hit covering most of the query
+ * signals which still need a cover, the better ranked one for equal counts.
+ * A query signal needs as many covers as the given redundancy, but at most
+ * as many as there are hits covering it. The selected hits keep the ranked
+ * order. <br>
+ * The assembly process then only uses the selection, which trades recall for
+ * speed on large hit counts.
+ *
+ * @author Michael Wenk [https://github.com/michaelwenk]
+ */
+public final class HitSetCover {
+
+    private final SSCLibrary rankedSSCLibrary;
+    private final SSCLibrary selection;
+    // ranked SSC indices of the selected hits, in ranked order
+    private final ArrayList<Long> selectedSSCIndices;
+
+    /**
+     * Instanciates a new object of this class.
+     *
+     * @param rankedSSCLibrary ranked SSC library with indices 0, 1, 2 etc.,
+     * as given by {@link SSCRanker#getHits()}
+     */
+    public HitSetCover(final SSCLibrary rankedSSCLibrary) {
+        this.rankedSSCLibrary = rankedSSCLibrary;
+        this.selection = new SSCLibrary(rankedSSCLibrary.getNThreads());
+        this.selectedSSCIndices = new ArrayList<>();
+    }
+
+    /**
+     * Selects the hits covering each query signal and builds the library of
+     * the selected hits in ranked order.
+     *
+     * @param querySpectrum query spectrum
+     * @param shiftTol shift tolerance value [ppm] in which chemical shifts are
+     * considered as the same
+     * @param redundancy number of covers needed for each query signal
+     * @throws Exception
+     *
+     * @see #getSelection()
+     * @see #getSelectedSSCIndices()
+     */
+    public void select(final Spectrum querySpectrum, final double shiftTol, final int redundancy) throws Exception {
+        this.selection.removeAll();
+        this.selectedSSCIndices.clear();
+        final int sscCount = (int) this.rankedSSCLibrary.getSSCCount();
+        final BitSet[] coveredSignalIndices = HitSetCover.buildCoveredSignalIndices(this.rankedSSCLibrary, querySpectrum, shiftTol);
+        // remaining number of covers needed per query signal
+        final int[] neededCoversCounts = new int[querySpectrum.getSignalCount()];
+        for (int i = 0; i < sscCount; i++) {
+            for (int j = coveredSignalIndices[i].nextSetBit(0); j >= 0; j = coveredSignalIndices[i].nextSetBit(j + 1)) {
+                if (neededCoversCounts[j] < redundancy) {
+                    neededCoversCounts[j]++;
+                }
+            }
+        }
+        // lazy greedy: the gain of a hit can only decrease, so a hit whose updated gain is still the best one is picked
+        final PriorityQueue<int[]> queue = new PriorityQueue<>((entry1, entry2) -> (entry1[0] != entry2[0])
+                ? Integer.compare(entry2[0], entry1[0])
+                : Integer.compare(entry1[1], entry2[1]));
+        for (int i = 0; i < sscCount; i++) {
+            if (!coveredSignalIndices[i].isEmpty()) {
+                queue.add(new int[]{coveredSignalIndices[i].cardinality(), i});
+            }
+        }
+        final BitSet selectedIndices = new BitSet(sscCount);
+        int[] entry;
+        int gain;
+        while (!queue.isEmpty()) {
+            entry = queue.poll();
+            gain = HitSetCover.getGain(coveredSignalIndices[entry[1]], neededCoversCounts);
+            if (gain == 0) {
+                continue;
+            }
+            if ((gain < entry[0]) && !queue.isEmpty() && ((gain < queue.peek()[0]) || ((gain == queue.peek()[0]) && (entry[1] > queue.peek()[1])))) {
+                queue.add(new int[]{gain, entry[1]});
+                continue;
+            }
+            selectedIndices.set(entry[1]);
+            for (int j = coveredSignalIndices[entry[1]].nextSetBit(0); j >= 0; j = coveredSignalIndices[entry[1]].nextSetBit(j + 1)) {
+                if (neededCoversCounts[j] > 0) {
+                    neededCoversCounts[j]--;
+                }
+            }
+        }
+        // the selected hits keep the ranked order and get new indices 0, 1, 2 etc.
+        SSC selectedSSC;
+        for (int i = selectedIndices.nextSetBit(0); i >= 0; i = selectedIndices.nextSetBit(i + 1)) {
+            this.selectedSSCIndices.add((long) i);
+            selectedSSC = this.rankedSSCLibrary.getSSC(i).getClone();
+            selectedSSC.setIndex(this.selection.getSSCCount());
+            this.selection.insert(selectedSSC);
+        }
+    }
+
+    private static int getGain(final BitSet coveredSignalIndices, final int[] neededCoversCounts) {
+        int gain = 0;
+        for (int j = coveredSignalIndices.nextSetBit(0); j >= 0; j = coveredSignalIndices.nextSetBit(j + 1)) {
+            if (neededCoversCounts[j] > 0) {
+                gain++;
+            }
+        }
+
+        return gain;
+    }
+
+    /**
+     * Matches the subspectrum of each hit against the query spectrum in
+     * parallel.
+     *
+     * @param rankedSSCLibrary ranked SSC library with indices 0, 1, 2 etc.
+     * @param querySpectrum
+     * @param shiftTol
+     * @return covered query signal indices per hit
+     * @throws InterruptedException
+     */
+    static BitSet[] buildCoveredSignalIndices(final SSCLibrary rankedSSCLibrary, final Spectrum querySpectrum, final double shiftTol) throws InterruptedException {
+        final BitSet[] coveredSignalIndices = new BitSet[(int) rankedSSCLibrary.getSSCCount()];
+        final ExecutorService executor = Utils.initExecuter(rankedSSCLibrary.getNThreads());
+        final ArrayList<Callable<Void>> callables = new ArrayList<>();
+        for (int i = 0; i < coveredSignalIndices.length; i++) {
+            final int sscIndex = i;
+            callables.add(() -> {
+                final Spectrum subspectrum = rankedSSCLibrary.getSSC(sscIndex).getSubspectrum();
+                final Assignment matchAssignments = Matcher.matchSpectra(subspectrum, querySpectrum, 0, 0, shiftTol);
+                final BitSet signalIndices = new BitSet(querySpectrum.getSignalCount());
+                for (int k = 0; k < subspectrum.getSignalCount(); k++) {
+                    if (matchAssignments.getAssignment(0, k) >= 0) {
+                        signalIndices.set(matchAssignments.getAssignment(0, k));
+                    }
+                }
+                coveredSignalIndices[sscIndex] = signalIndices;
+                return null;
+            });
+        }
+        executor.invokeAll(callables)
+                .forEach(future -> {
+                    try {
+                        future.get();
+                    } catch (InterruptedException | ExecutionException e) {
+                        throw new IllegalStateException(e);
+                    }
+                });
+        Utils.stopExecuter(executor, 5);
+
+        return coveredSignalIndices;
+    }
+
+    /**
+     * Returns a SSC library containing clones of the selected hits in ranked
+     * order. The SSC indices are set in new order starting at 0, 1, 2 etc.
+     *
+     * @return
+     *
+     * @see #select(Spectrum, double, int)
+     */
+    public SSCLibrary getSelection() {
+        return this.selection;
+    }
+
+    /**
+     * Returns the ranked SSC indices of the selected hits, in ranked order.
+     * The position in the list is the SSC index in the selection library.
+     *
+     * @return
+     *
+     * @see #select(Spectrum, double, int)
+     */
+    public ArrayList<Long> getSelectedSSCIndices() {
+        return this.selectedSSCIndices;
+    }
+
+    public int getSelectedCount() {
+        return this.selectedSSCIndices.size();
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2019 Michael Wenk [https://github.com/michaelwenk]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package search;
+
+import casekit.NMR.model.Spectrum;
+import model.SSC;
+import model.SSCLibrary;
+import org.openscience.cdk.exception.CDKException;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashSet;
+
+/**
+ * Class to select the start SSCs of the assembly process among the ranked
+ * SSCs (hits) of a query spectrum. <br>
+ * With the "rank" policy the start SSCs are simply the best ranked hits,
+ * which often are near-identical fragments around the same atom. With the
+ * "diverse" policy, the hits are picked in ranked order in three passes,
+ * until enough start SSCs are found:
+ * <ol>
+ * <li>hits with a new root HOSE code which also cover a query signal not
+ * covered by the start SSCs so far</li>
+ * <li>hits with a new root HOSE code</li>
+ * <li>all remaining hits</li>
+ * </ol>
+ * The root HOSE codes are compared at a fixed sphere, so that hits with
+ * different max. spheres around the same kind of atom are not seen as
+ * different. <br>
+ * The ranked SSC library itself is not changed; the selected start SSCs are
+ * given by their ranked SSC indices, see
+ * {@link assembly.AssemblyEngine#getStartSSCIndices()}.
+ *
+ * @author Michael Wenk [https://github.com/michaelwenk]
+ */
+public final class StartSSCSelector {
+
+    public final static String[] POLICIES = new String[]{"rank", "diverse"};
+
+    private final SSCLibrary rankedSSCLibrary;
+    // ranked SSC indices of the start SSCs, in ranked order
+    private final ArrayList<Long> startSSCIndices;
+
+    /**
+     * Instanciates a new object of this class.
+     *
+     * @param rankedSSCLibrary ranked SSC library with indices 0, 1, 2 etc.,
+     * as given by {@link SSCRanker#getHits()}
+     */
+    public StartSSCSelector(final SSCLibrary rankedSSCLibrary) {
+        this.rankedSSCLibrary = rankedSSCLibrary;
+        this.startSSCIndices = new ArrayList<>();
+    }
+
+    /**
+     * Checks whether a start selection policy name is valid, see
+     * {@link #POLICIES}.
+     *
+     * @param policy policy name
+     * @throws CDKException if the name is unknown
+     */
+    public static void checkPolicy(final String policy) throws CDKException {
+        for (final String name : StartSSCSelector.POLICIES) {
+            if (name.equalsIgnoreCase(policy)) {
+                return;
+            }
+        }
+        throw new CDKException(Thread.currentThread().getStackTrace()[1].getMethodName() + ": unknown start selection policy: \"" + policy + "\"");
+    }
+
+    /**
+     * Selects the start SSCs by the given policy.
+     *
+     * @param policy policy name, see {@link #POLICIES}
+     * @param querySpectrum query spectrum
+     * @param shiftTol shift tolerance value [ppm] in which chemical shifts are
+     * considered as the same
+     * @param rootSphere sphere at which the root HOSE codes are compared,
+     * e.g. the minimum matching sphere count; SSCs with a lower max. sphere
+     * are compared at their max. sphere
+     * @param nStarts number of start SSCs to select
+     * @throws Exception
+     *
+     * @see #getStartSSCIndices()
+     */
+    public void select(final String policy, final Spectrum querySpectrum, final double shiftTol, final int rootSphere, final long nStarts) throws Exception {
+        StartSSCSelector.checkPolicy(policy);
+        this.startSSCIndices.clear();
+        final int sscCount = (int) this.rankedSSCLibrary.getSSCCount();
+        final BitSet selectedIndices = new BitSet(sscCount);
+        if (policy.equalsIgnoreCase("diverse")) {
+            final BitSet[] coveredSignalIndices = HitSetCover.buildCoveredSignalIndices(this.rankedSSCLibrary, querySpectrum, shiftTol);
+            final String[] rootHOSECodes = new String[sscCount];
+            SSC ssc;
+            for (int i = 0; i < sscCount; i++) {
+                ssc = this.rankedSSCLibrary.getSSC(i);
+                rootHOSECodes[i] = ssc.getHOSECode(ssc.getRootAtomIndex(), Integer.max(0, Integer.min(rootSphere, ssc.getMaxSphere())));
+            }
+            final HashSet<String> usedRootHOSECodes = new HashSet<>();
+            final BitSet coveredByStarts = new BitSet(querySpectrum.getSignalCount());
+            int selectedCount = 0;
+            for (int pass = 0; pass < 3; pass++) {
+                for (int i = 0; (i < sscCount) && (selectedCount < nStarts); i++) {
+                    if (selectedIndices.get(i)) {
+                        continue;
+                    }
+                    if ((pass < 2) && usedRootHOSECodes.contains(rootHOSECodes[i])) {
+                        continue;
+                    }
+                    if ((pass == 0) && StartSSCSelector.isSubset(coveredSignalIndices[i], coveredByStarts)) {
+                        continue;
+                    }
+                    selectedIndices.set(i);
+                    selectedCount++;
+                    usedRootHOSECodes.add(rootHOSECodes[i]);
+                    coveredByStarts.or(coveredSignalIndices[i]);
+                }
+            }
+        } else {
+            selectedIndices.set(0, (int) Long.min(Long.max(0, nStarts), sscCount));
+        }
+        for (int i = selectedIndices.nextSetBit(0); i >= 0; i = selectedIndices.nextSetBit(i + 1)) {
+            this.startSSCIndices.add((long) i);
+        }
+    }
+
+    private static boolean isSubset(final BitSet bitSet1, final BitSet bitSet2) {
+        final BitSet difference = (BitSet) bitSet1.clone();
+        difference.andNot(bitSet2);
+
+        return difference.isEmpty();
+    }
+
+    /**
+     * Returns the ranked SSC indices of the selected start SSCs, in ranked
+     * order.
+     *
+     * @return
+     *
+     * @see #select(String, Spectrum, double, int, long)
+     */
+    public ArrayList<Long> getStartSSCIndices() {
+        return this.startSSCIndices;
+    }
+}
@@ -14,6 +14,11 @@ package start;
 
 import analysis.MultiplicitySectionsBuilder;
 import assembly.Assembly;
+import assembly.AssemblyResult;
+import assembly.DepictionStage;
+import assembly.SearchBudget;
+import assembly.strategy.AssemblyStrategy;
+import assembly.strategy.DFSStrategy;
 import casekit.NMR.Utils;
 import casekit.NMR.dbservice.MongoDB;
 import casekit.NMR.match.Matcher;
@@ -26,11 +31,17 @@ import com.mongodb.client.MongoCollection;
 import com.mongodb.client.model.Filters;
 import model.SSC;
 import model.SSCLibrary;
+import logging.Log;
 import org.bson.Document;
 import org.bson.conversions.Bson;
 import org.openscience.cdk.exception.CDKException;
 import org.openscience.cdk.silent.SilentChemObjectBuilder;
+import org.openscience.cdk.smiles.SmiFlavor;
+import org.openscience.cdk.smiles.SmilesGenerator;
 import org.openscience.cdk.smiles.SmilesParser;
+import search.HitClassCollapser;
+import search.HitSetCover;
+import search.StartSSCSelector;
 import search.SSCRanker;
 
 import java.io.*;
@@ -50,6 +61,11 @@ public class ProcessQueries {
     private final BufferedReader br;
     private final TimeMeasurement tm;
     private final double shiftTol, matchFactorThrs;
+    private long timeLimit, maxExpandedNodes, depictionSamplingRate, maxDepictions;
+    private AssemblyStrategy assemblyStrategy;
+    private boolean collapseHitClasses, overlapPruning, containmentPruning;
+    private int hitCoverRedundancy;
+    private String startSelectionPolicy;
 
     private String mongoUser, mongoPassword, mongoAuthDB, mongoDBName, mongoDBCollection;
     private MongoClient mongo;
@@ -72,9 +88,121 @@ public class ProcessQueries {
         this.br = new BufferedReader(new FileReader(this.pathToQueriesFile));
         this.tm = new TimeMeasurement();
 
+        this.timeLimit = -1;
+        this.maxExpandedNodes = -1;
+        this.depictionSamplingRate = -1;
+        this.assemblyStrategy = new DFSStrategy();
+        this.collapseHitClasses = false;
+        this.overlapPruning = false;
+        this.containmentPruning = false;
+        this.hitCoverRedundancy = -1;
+        this.startSelectionPolicy = "rank";
+        this.maxDepictions = -1;
+
         this.useMongoDB = false;
     }
 
+    /**
+     * Sets the limits for the assembly process of each query spectrum. If a
+     * limit is reached, the solutions found so far are kept and the next
+     * query spectrum is processed.
+     *
+     * @param timeLimit time limit in seconds; a value smaller than 1 means no
+     * limit
+     * @param maxExpandedNodes maximum number of expanded nodes; a value
+     * smaller than 1 means no limit
+     */
+    public void setAssemblyLimits(final long timeLimit, final long maxExpandedNodes) {
+        this.timeLimit = timeLimit;
+        this.maxExpandedNodes = maxExpandedNodes;
+    }
+
+    /**
+     * Enables the depiction of accepted intermediates during the assembly
+     * process. The pictures are written in background into the outputs
+     * folder. By default, no depiction is done.
+     *
+     * @param depictionSamplingRate depict every n-th accepted intermediate; a
+     * value smaller than 1 disables the depiction
+     * @param maxDepictions maximum number of pictures per query spectrum; a
+     * value smaller than 1 means no limit
+     */
+    public void setDepiction(final long depictionSamplingRate, final long maxDepictions) {
+        this.depictionSamplingRate = depictionSamplingRate;
+        this.maxDepictions = maxDepictions;
+    }
+
+    /**
+     * Sets the search strategy of the assembly process. By default, an
+     * exhaustive DFS per start SSC is done, see {@link DFSStrategy}.
+     *
+     * @param assemblyStrategy search strategy
+     */
+    public void setAssemblyStrategy(final AssemblyStrategy assemblyStrategy) {
+        this.assemblyStrategy = assemblyStrategy;
+    }
+
+    /**
+     * Enables the skipping of extensions by ranked SSCs which have no
+     * possible overlap with any ranked SSC of the current path, see
+     * {@link assembly.OverlapCompatibility}. This is a heuristic which could
+     * miss solutions. By default, no extension is skipped.
+     *
+     * @param overlapPruning
+     */
+    public void setOverlapPruning(final boolean overlapPruning) {
+        this.overlapPruning = overlapPruning;
+    }
+
+    /**
+     * Enables the skipping of extensions by ranked SSCs which are contained
+     * in a ranked SSC of the current path with a higher max. sphere, see
+     * {@link assembly.SphereContainment}. This is a heuristic which could
+     * miss solutions. By default, no extension is skipped.
+     *
+     * @param containmentPruning
+     */
+    public void setContainmentPruning(final boolean containmentPruning) {
+        this.containmentPruning = containmentPruning;
+    }
+
+    /**
+     * Enables the grouping of the ranked SSCs of each query spectrum into hit
+     * classes, see {@link HitClassCollapser}. The assembly process then uses
+     * the class representatives only. By default, no grouping is done.
+     *
+     * @param collapseHitClasses
+     */
+    public void setHitClassCollapsing(final boolean collapseHitClasses) {
+        this.collapseHitClasses = collapseHitClasses;
+    }
+
+    /**
+     * Enables the selection of a subset of the ranked SSCs of each query
+     * spectrum which covers each query signal several times, see
+     * {@link HitSetCover}. The assembly process then uses the selected SSCs
+     * only. By default, no selection is done.
+     *
+     * @param hitCoverRedundancy number of covers needed for each query
+     * signal; a value smaller than 1 disables the selection
+     */
+    public void setHitSetCover(final int hitCoverRedundancy) {
+        this.hitCoverRedundancy = hitCoverRedundancy;
+    }
+
+    /**
+     * Sets the policy to select the start SSCs among the ranked SSCs of each
+     * query spectrum, see {@link StartSSCSelector}. By default, the best
+     * ranked SSCs are used ("rank").
+     *
+     * @param startSelectionPolicy policy name, see
+     * {@link StartSSCSelector#POLICIES}
+     * @throws CDKException if the name is unknown
+     */
+    public void setStartSelectionPolicy(final String startSelectionPolicy) throws CDKException {
+        StartSSCSelector.checkPolicy(startSelectionPolicy);
+        this.startSelectionPolicy = startSelectionPolicy;
+    }
 
     public void initMongoDBProcessing(final String mongoUser, final String mongoPassword, final String mongoAuthDB, final String mongoDBName, final String mongoDBCollection) throws CDKException {
         this.mongoUser = mongoUser;
@@ -152,6 +280,7 @@ public class ProcessQueries {
             }
             // main processing of the query spectrum against the SSC library
             this.processCore(sscRanker, querySpectrum, querySpectrumCounter);
+            Log.flush();
 
             querySpectrumCounter++;
         }
@@ -191,12 +320,29 @@ public class ProcessQueries {
 //        System.out.println("\n\n");
 
         sscRanker.findHits(querySpectrum, this.shiftTol);
-        System.out.println("\n\nno. of matches:    " + sscRanker.getHitsCount());
-        System.out.println("ranked SSC indices:    " + sscRanker.getRankedSSCIndices());
-        System.out.println("ranked match factors:  " + sscRanker.getRankedMatchFactors());
-        System.out.println("ranked match tanimoto: " + sscRanker.getRankedTanimotoCoefficients() + "\n");
-
-        final SSCLibrary rankedSSCLibrary = sscRanker.getHits();
+        Log.info(Log.Subsystem.RANKING, () -> "\n\nno. of matches:    " + sscRanker.getHitsCount());
+        Log.debug(Log.Subsystem.RANKING, () -> "ranked SSC indices:    " + sscRanker.getRankedSSCIndices()
+                + "\nranked match factors:  " + sscRanker.getRankedMatchFactors()
+                + "\nranked match tanimoto: " + sscRanker.getRankedTanimotoCoefficients() + "\n");
+
+        SSCLibrary rankedSSCLibrary = sscRanker.getHits();
+        HitClassCollapser hitClassCollapser = null;
+        if (this.collapseHitClasses) {
+            // hits with same substructure and shifts lead to the same extensions
+            hitClassCollapser = new HitClassCollapser(rankedSSCLibrary);
+            hitClassCollapser.collapse(this.shiftTol);
+            rankedSSCLibrary = hitClassCollapser.getRepresentatives();
+            final int hitClassesCount = hitClassCollapser.getHitClassesCount();
+            Log.info(Log.Subsystem.RANKING, () -> "no. of hit classes: " + hitClassesCount);
+        }
+        if (this.hitCoverRedundancy > 0) {
+            // hits which only cover already covered query signals are left out
+            final HitSetCover hitSetCover = new HitSetCover(rankedSSCLibrary);
+            hitSetCover.select(querySpectrum, this.shiftTol, this.hitCoverRedundancy);
+            rankedSSCLibrary = hitSetCover.getSelection();
+            final int selectedCount = hitSetCover.getSelectedCount();
+            Log.info(Log.Subsystem.RANKING, () -> "no. of hits in set cover: " + selectedCount);
+        }
 
         long nStartSSCs;
         if ((this.nStarts > 0) && (this.nStarts < rankedSSCLibrary.getSSCCount()/*sscRanker.getHitsCount()*/)) {
@@ -205,10 +351,38 @@ public class ProcessQueries {
             nStartSSCs = rankedSSCLibrary.getSSCCount();
         }
         System.out.println("\nnumber of start SSCs for query " + querySpectrumCounter + ":\t" + nStartSSCs);
-
-        final HashMap<String, SSC> solutions = Assembly.assemble(nStartSSCs, sscRanker.getNThreads(), rankedSSCLibrary, this.minMatchingSphere, querySpectrum, this.matchFactorThrs, this.shiftTol, this.pathToOutputsFolder, querySpectrumCounter);
+        // the ranked SSC library keeps its order; the start SSCs are given by their ranked SSC indices
+        final StartSSCSelector startSSCSelector = new StartSSCSelector(rankedSSCLibrary);
+        startSSCSelector.select((nStartSSCs < rankedSSCLibrary.getSSCCount()) ? this.startSelectionPolicy : "rank", querySpectrum, this.shiftTol, this.minMatchingSphere, nStartSSCs);
+        final ArrayList<Long> startSSCIndices = startSSCSelector.getStartSSCIndices();
+        Log.debug(Log.Subsystem.RANKING, () -> "start SSCs (ranked SSC indices): " + startSSCIndices);
+
+        final SearchBudget searchBudget = new SearchBudget(this.timeLimit * 1000, this.maxExpandedNodes);
+        final DepictionStage depictionStage = new DepictionStage(this.pathToOutputsFolder, querySpectrumCounter, this.depictionSamplingRate, this.maxDepictions);
+        final AssemblyResult assemblyResult;
+        try {
+            assemblyResult = Assembly.assemble(startSSCIndices, sscRanker.getNThreads(), rankedSSCLibrary, this.minMatchingSphere, querySpectrum, this.matchFactorThrs, this.shiftTol, this.pathToOutputsFolder, querySpectrumCounter, searchBudget, depictionStage, this.assemblyStrategy, this.overlapPruning, this.containmentPruning);
+        } finally {
+            depictionStage.close();
+        }
+        if (depictionStage.isEnabled()) {
+            System.out.println("\ndepicted intermediates for query " + querySpectrumCounter + ":\t" + depictionStage.getDepictedCount() + " (dropped: " + depictionStage.getDroppedCount() + ")");
+        }
+        // the canonical SMILES are built only once for each unique solution
+        final SmilesGenerator smilesGenerator = new SmilesGenerator(SmiFlavor.Absolute);
+        final HashMap<String, SSC> solutions = new HashMap<>();
+        final HashMap<String, Integer> solutionDepths = new HashMap<>();
+        String solutionSMILES;
+        for (final Map.Entry<Long, SSC> solutionEntry : assemblyResult.getSolutions().entrySet()) {
+            solutionSMILES = smilesGenerator.create(solutionEntry.getValue().getSubstructure());
+            solutions.put(solutionSMILES, solutionEntry.getValue());
+            solutionDepths.put(solutionSMILES, assemblyResult.getSolutionDepths().get(solutionEntry.getKey()));
+        }
 
         System.out.println("\nsolutions for query " + querySpectrumCounter + " (" + querySpectrum.getSpecDescription() + "):\t" + solutions.size());
+        if (assemblyResult.isTruncated()) {
+            System.out.println("-> assembly truncated (time limit or node budget reached) after " + assemblyResult.getExpandedNodesCount() + " expanded nodes; solutions are the ones found until then");
+        }
 
         final String[] solutionsSMILESToSort = new String[solutions.size()];
         int solutionsCounter = 0;
@@ -242,9 +416,10 @@ public class ProcessQueries {
             System.out.println("SMILES:          :\t" + smiles);
             System.out.println("              --> \t" + "atoms: " + solutions.get(smiles).getSubstructure().getAtomCount() + ", bonds: " + solutions.get(smiles).getSubstructure().getBondCount());
             System.out.println("              --> \t" + "tanimoto: " + tanimotoCoefficients.get(smiles));
+            System.out.println("              --> \t" + "depth: " + solutionDepths.get(smiles));
 
 
-            bw.append(smiles + " " + i + " " + tanimotoCoefficients.get(smiles));
+            bw.append(smiles + " " + i + " " + tanimotoCoefficients.get(smiles) + " " + solutionDepths.get(smiles));
             bw.newLine();
             bw.flush();
 
@@ -280,6 +455,11 @@ public class ProcessQueries {
         }
 
         bw.close();
+        // counters and timers of the assembly process, next to the results
+        assemblyResult.getAssemblyStatistics().write(this.pathToOutputsFolder + "/statistics_" + querySpectrumCounter + ".json");
+        if (hitClassCollapser != null) {
+            hitClassCollapser.write(this.pathToOutputsFolder + "/hitclasses_" + querySpectrumCounter + ".json", sscRanker.getRankedSSCIndices());
+        }
 
 
 
@@ -12,6 +12,8 @@
 
 package start;
 
+import assembly.strategy.AssemblyStrategy;
+import logging.Log;
 import model.SSCLibrary;
 import org.apache.commons.cli.*;
 import org.openscience.cdk.exception.CDKException;
@@ -24,9 +26,10 @@ import java.io.IOException;
  */
 public class Start {  
     
-    private String pathToNMRShiftDB, mongoUser, mongoPassword, mongoAuthDB, mongoDBName, mongoDBCollection, pathToQueriesFile, pathToOutputsFolder, pathToJSON, format;
-    private int nThreads, nStarts, maxSphere, minMatchingSphere;
-    private boolean importFromNMRShiftDB, extendFromNMRShiftDB, useMongoDB, useJSON, removeDuplicates;
+    private String pathToNMRShiftDB, mongoUser, mongoPassword, mongoAuthDB, mongoDBName, mongoDBCollection, pathToQueriesFile, pathToOutputsFolder, pathToJSON, format, strategy, startSelectionPolicy;
+    private int nThreads, nStarts, maxSphere, minMatchingSphere, beamWidth, beamDepth, maxFrontierSize, maxDepthLimit, hitCoverRedundancy;
+    private long timeLimit, maxExpandedNodes, depictionSamplingRate, maxDepictions;
+    private boolean importFromNMRShiftDB, extendFromNMRShiftDB, useMongoDB, useJSON, removeDuplicates, collapseHitClasses, overlapPruning, containmentPruning;
     private SSCLibrary sscLibrary;   
     private ProcessQueries processQueries;
     private double shiftTol, matchFactorThrs;
@@ -48,6 +51,14 @@ public class Start {
             throw new CDKException(Thread.currentThread().getStackTrace()[1].getMethodName() + ": invalid format: \"" + this.format + "\"");
         }
         this.processQueries = new ProcessQueries(this.sscLibrary, this.pathToQueriesFile, this.pathToOutputsFolder, this.nThreads, this.nStarts, this.shiftTol, this.matchFactorThrs, this.minMatchingSphere);
+        this.processQueries.setAssemblyLimits(this.timeLimit, this.maxExpandedNodes);
+        this.processQueries.setDepiction(this.depictionSamplingRate, this.maxDepictions);
+        this.processQueries.setOverlapPruning(this.overlapPruning);
+        this.processQueries.setContainmentPruning(this.containmentPruning);
+        this.processQueries.setHitClassCollapsing(this.collapseHitClasses);
+        this.processQueries.setHitSetCover(this.hitCoverRedundancy);
+        this.processQueries.setStartSelectionPolicy(this.startSelectionPolicy);
+        this.processQueries.setAssemblyStrategy(AssemblyStrategy.fromName(this.strategy, this.beamWidth, this.beamDepth, this.maxFrontierSize, this.maxDepthLimit));
         if (this.useMongoDB) {
             this.processQueries.initMongoDBProcessing(this.mongoUser, this.mongoPassword, this.mongoAuthDB, this.mongoDBName, this.mongoDBCollection);
         }
@@ -171,6 +182,22 @@ public class Start {
             this.minMatchingSphere = Integer.parseInt(cmd.getOptionValue("minsphere", "1"));
             this.nThreads = Integer.parseInt(cmd.getOptionValue("nthreads", "1"));            
             this.nStarts = Integer.parseInt(cmd.getOptionValue("nstarts", "-1"));                        
+            this.timeLimit = Long.parseLong(cmd.getOptionValue("timelimit", "-1"));
+            this.maxExpandedNodes = Long.parseLong(cmd.getOptionValue("maxnodes", "-1"));
+            this.depictionSamplingRate = Long.parseLong(cmd.getOptionValue("depict", "-1"));
+            this.maxDepictions = Long.parseLong(cmd.getOptionValue("maxdepictions", "100"));
+            this.strategy = cmd.getOptionValue("strategy", "dfs");
+            this.beamWidth = Integer.parseInt(cmd.getOptionValue("beamwidth", "50"));
+            this.beamDepth = Integer.parseInt(cmd.getOptionValue("beamdepth", "-1"));
+            this.maxFrontierSize = Integer.parseInt(cmd.getOptionValue("maxfrontier", "10000"));
+            this.maxDepthLimit = Integer.parseInt(cmd.getOptionValue("maxdepthlimit", "-1"));
+            this.overlapPruning = cmd.hasOption("overlapprune");
+            this.containmentPruning = cmd.hasOption("containmentprune");
+            this.collapseHitClasses = cmd.hasOption("hitclasses");
+            this.hitCoverRedundancy = Integer.parseInt(cmd.getOptionValue("hitcover", "-1"));
+            this.startSelectionPolicy = cmd.getOptionValue("startpolicy", "rank");
+            Log.setLevels(cmd.getOptionValue("loglevels", "info"));
+            Log.setBuffered(cmd.hasOption("logbuffer"));
             this.pathToQueriesFile = cmd.getOptionValue("query");
             this.pathToOutputsFolder = cmd.getOptionValue("output", ".");
             
@@ -179,6 +206,22 @@ public class Start {
             System.out.println("-minMatchingSphere: " + this.minMatchingSphere);   
             System.out.println("-nThreads: " + this.nThreads);
             System.out.println("-nStarts: " + this.nStarts);
+            System.out.println("-timeLimit: " + this.timeLimit);
+            System.out.println("-maxExpandedNodes: " + this.maxExpandedNodes);
+            System.out.println("-depictionSamplingRate: " + this.depictionSamplingRate);
+            System.out.println("-maxDepictions: " + this.maxDepictions);
+            System.out.println("-strategy: " + this.strategy);
+            System.out.println("-beamWidth: " + this.beamWidth);
+            System.out.println("-beamDepth: " + this.beamDepth);
+            System.out.println("-maxFrontierSize: " + this.maxFrontierSize);
+            System.out.println("-maxDepthLimit: " + this.maxDepthLimit);
+            System.out.println("-overlapPruning: " + this.overlapPruning);
+            System.out.println("-containmentPruning: " + this.containmentPruning);
+            System.out.println("-collapseHitClasses: " + this.collapseHitClasses);
+            System.out.println("-hitCoverRedundancy: " + this.hitCoverRedundancy);
+            System.out.println("-startSelectionPolicy: " + this.startSelectionPolicy);
+            System.out.println("-logLevels: " + cmd.getOptionValue("loglevels", "info"));
+            System.out.println("-logBuffer: " + cmd.hasOption("logbuffer"));
             System.out.println("-removeDuplicates: " + this.removeDuplicates);
             System.out.println("-pathToQueriesFile: " + this.pathToQueriesFile);
             System.out.println("-pathToOutputsFolder: " + this.pathToOutputsFolder + "\n\n");
@@ -256,6 +299,114 @@ public class Start {
                 .desc("Specified number of ranked SSCs to use for assembly process. The default is set to use all matched SSC given a query spectrum.")
                 .build();
         options.addOption(nstartsOption);
+        Option timeLimitOption = Option.builder("tl")
+                .required(false)
+                .hasArg()
+                .longOpt("timelimit")
+                .desc("Time limit in seconds for the assembly process of each query spectrum. If it is reached, the solutions found so far are kept and the next query spectrum is processed. The default is set to no limit.")
+                .build();
+        options.addOption(timeLimitOption);
+        Option maxExpandedNodesOption = Option.builder("mn")
+                .required(false)
+                .hasArg()
+                .longOpt("maxnodes")
+                .desc("Maximum number of expanded nodes (attempts to extend an intermediate by a ranked SSC) in the assembly process of each query spectrum. If it is reached, the solutions found so far are kept and the next query spectrum is processed. The default is set to no limit.")
+                .build();
+        options.addOption(maxExpandedNodesOption);
+        Option depictionSamplingRateOption = Option.builder("dp")
+                .required(false)
+                .hasArg()
+                .longOpt("depict")
+                .desc("Enables the depiction of every n-th accepted intermediate during the assembly process. The pictures are written in background into the output directory. The default is set to no depiction.")
+                .build();
+        options.addOption(depictionSamplingRateOption);
+        Option maxDepictionsOption = Option.builder("dpmax")
+                .required(false)
+                .hasArg()
+                .longOpt("maxdepictions")
+                .desc("Maximum number of depicted intermediates for each query spectrum if \"depict\" is set. The default is set to 100.")
+                .build();
+        options.addOption(maxDepictionsOption);
+        Option strategyOption = Option.builder("s")
+                .required(false)
+                .hasArg()
+                .longOpt("strategy")
+                .desc("Search strategy of the assembly process: \"dfs\" (exhaustive depth-first search per start SSC), \"bfs\" (level-synchronous breadth-first search over all start SSCs, see \"maxfrontier\"), \"seq\" (sequential extension per start SSC), \"beam\" (beam search over all start SSCs, see \"beamwidth\"), \"bestfirst\" (best-first search over all start SSCs, which first extends the intermediates with the fewest unassigned query signals and lowest shift deviation) or \"iddfs\" (iterative deepening depth-first search per start SSC with bounded memory, see \"maxdepthlimit\"). The default is set to \"dfs\".")
+                .build();
+        options.addOption(strategyOption);
+        Option beamWidthOption = Option.builder("bw")
+                .required(false)
+                .hasArg()
+                .longOpt("beamwidth")
+                .desc("Number of best intermediates (by signal coverage and match factor) kept per depth if \"strategy\" is \"beam\". The results are approximate but the cost is bounded. The default is set to 50.")
+                .build();
+        options.addOption(beamWidthOption);
+        Option beamDepthOption = Option.builder("bd")
+                .required(false)
+                .hasArg()
+                .longOpt("beamdepth")
+                .desc("Maximum depth (number of extensions of a start SSC) of the beam search if \"strategy\" is \"beam\". The default is set to no limit.")
+                .build();
+        options.addOption(beamDepthOption);
+        Option maxFrontierSizeOption = Option.builder("fmax")
+                .required(false)
+                .hasArg()
+                .longOpt("maxfrontier")
+                .desc("Maximum number of intermediates per level of the breadth-first search if \"strategy\" is \"bfs\". Larger levels are truncated to their best intermediates (by signal coverage and match factor). A value smaller than 1 means no limit. The default is set to 10000.")
+                .build();
+        options.addOption(maxFrontierSizeOption);
+        Option maxDepthLimitOption = Option.builder("dlmax")
+                .required(false)
+                .hasArg()
+                .longOpt("maxdepthlimit")
+                .desc("Maximum depth limit (number of extensions of a start SSC) of the iterative deepening search if \"strategy\" is \"iddfs\". The default is set to no limit.")
+                .build();
+        options.addOption(maxDepthLimitOption);
+        Option overlapPruneOption = Option.builder("op")
+                .required(false)
+                .longOpt("overlapprune")
+                .desc("If given, extensions by ranked SSCs which have no possible overlap (in at least \"minsphere\" spheres) with any ranked SSC of the current path are skipped. This heuristic speeds up the assembly process but could miss solutions, because an intermediate can contain atom environments which are not in the ranked SSCs it was built from.")
+                .build();
+        options.addOption(overlapPruneOption);
+        Option containmentPruneOption = Option.builder("cp")
+                .required(false)
+                .longOpt("containmentprune")
+                .desc("If given, extensions by ranked SSCs which were built from the same source structure and root atom as a ranked SSC of the current path, but with a lower max. sphere, are skipped. This heuristic speeds up the assembly process but could miss solutions, because such an SSC could overlap with another part of the intermediate.")
+                .build();
+        options.addOption(containmentPruneOption);
+        Option hitClassesOption = Option.builder("hc")
+                .required(false)
+                .longOpt("hitclasses")
+                .desc("If given, the ranked SSCs of each query spectrum with same substructure and shifts within the shift tolerance are grouped into hit classes and only the best ranked SSC of each class is used in the assembly process. The classes are written into a JSON file in the output directory.")
+                .build();
+        options.addOption(hitClassesOption);
+        Option hitCoverOption = Option.builder("cov")
+                .required(false)
+                .hasArg()
+                .longOpt("hitcover")
+                .desc("If given, only a greedily selected subset of the ranked SSCs of each query spectrum is used in the assembly process, which covers each query signal as many times as given (if possible). This trades recall for speed on large numbers of ranked SSCs. The default is set to no selection.")
+                .build();
+        options.addOption(hitCoverOption);
+        Option startPolicyOption = Option.builder("sp")
+                .required(false)
+                .hasArg()
+                .longOpt("startpolicy")
+                .desc("Policy to select the start SSCs if \"nstarts\" is smaller than the number of ranked SSCs: \"rank\" (best ranked SSCs) or \"diverse\" (best ranked SSCs with distinct root HOSE codes, compared at \"minsphere\", and newly covered query signals first). The default is set to \"rank\".")
+                .build();
+        options.addOption(startPolicyOption);
+        Option logLevelsOption = Option.builder("log")
+                .required(false)
+                .hasArg()
+                .longOpt("loglevels")
+                .desc("Comma separated log levels (off, error, info, debug, trace), optionally per subsystem (assembly, match, ranking), e.g. \"info,assembly=trace\". The default is set to \"info\".")
+                .build();
+        options.addOption(logLevelsOption);
+        Option logBufferOption = Option.builder("logbuf")
+                .required(false)
+                .longOpt("logbuffer")
+                .desc("If given, log messages are buffered per thread and written in blocks.")
+                .build();
+        options.addOption(logBufferOption);
         Option importFromNMRShiftDBOption = Option.builder("import")
                 .required(false)
                 .desc("Indicates that a NMRShiftDB file (SDF) will be used to build a SSC library from that and to overwrite all entries within a MongoDB collection or JSON file. The parameters \"nmrshiftdb\" and \"maxsphere\" must be set too.")
@@ -0,0 +1,92 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2019 Michael Wenk [https://github.com/michaelwenk]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package assembly;
+
+import model.TestSSCs;
+import org.junit.jupiter.api.Test;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Michael Wenk [https://github.com/michaelwenk]
+ */
+public class AssemblyGraphTest {
+
+    private static IAtomContainer parseWithValencies(final String smiles) throws Exception {
+        final IAtomContainer ac = TestSSCs.parse(smiles);
+        for (final IAtom atom : ac.atoms()) {
+            atom.setValency(4);
+        }
+
+        return ac;
+    }
+
+    @Test
+    public void testValency() throws Exception {
+        // saturated ethane, incl. implicit hydrogens
+        AssemblyGraph graph = new AssemblyGraph(parseWithValencies("CC"));
+        assertFalse(graph.isValidBondAddition(0, 1.0f));
+
+        // one open valence at the radical atom only
+        graph = new AssemblyGraph(parseWithValencies("[CH2]C"));
+        assertTrue(graph.isValidBondAddition(0, 1.0f));
+        assertFalse(graph.isValidBondAddition(0, 2.0f));
+        assertFalse(graph.isValidBondAddition(1, 1.0f));
+
+        graph.addBond(0, graph.addGraph(new AssemblyGraph(parseWithValencies("[CH3]"))), 1.0f);
+        assertFalse(graph.isValidBondAddition(0, 1.0f));
+        assertFalse(graph.isValidBondAddition(2, 1.0f));
+    }
+
+    @Test
+    public void testNullValency() throws Exception {
+        final IAtomContainer ac = TestSSCs.parse("[CH2]C");
+        ac.getAtom(0).setValency(null);
+        final AssemblyGraph graph = new AssemblyGraph(ac);
+        assertFalse(graph.isValidBondAddition(0, 1.0f));
+
+        // null valencies are kept by copies and appended graphs
+        final AssemblyGraph copy = new AssemblyGraph(graph);
+        assertFalse(copy.isValidBondAddition(0, 1.0f));
+        final int offset = copy.addGraph(graph);
+        assertFalse(copy.isValidBondAddition(offset, 1.0f));
+    }
+
+    @Test
+    public void testAddGraph() throws Exception {
+        final AssemblyGraph graph = new AssemblyGraph(parseWithValencies("[CH2]C"));
+        final AssemblyGraph copy = new AssemblyGraph(graph);
+        final int offset = graph.addGraph(new AssemblyGraph(parseWithValencies("[CH2]CC")));
+        assertEquals(2, offset);
+        assertEquals(5, graph.getAtomCount());
+        assertEquals(3, graph.getBondCount());
+        assertTrue(graph.isBonded(0, 1));
+        assertTrue(graph.isBonded(offset, offset + 1));
+        assertTrue(graph.isBonded(offset + 2, offset + 1));
+        assertFalse(graph.isBonded(1, offset));
+        assertTrue(graph.isValidBondAddition(offset, 1.0f));
+
+        graph.addBond(0, offset, 1.0f);
+        assertEquals(4, graph.getBondCount());
+        assertTrue(graph.isBonded(offset, 0));
+        assertFalse(graph.isValidBondAddition(0, 1.0f));
+        assertFalse(graph.isValidBondAddition(offset, 1.0f));
+        // the copy is independent
+        assertEquals(2, copy.getAtomCount());
+        assertEquals(1, copy.getBondCount());
+        assertTrue(copy.isValidBondAddition(0, 1.0f));
+    }
+}
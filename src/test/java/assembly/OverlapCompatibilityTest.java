@@ -0,0 +1,67 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2019 Michael Wenk [https://github.com/michaelwenk]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package assembly;
+
+import model.SSCLibrary;
+import model.TestSSCs;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Michael Wenk [https://github.com/michaelwenk]
+ */
+public class OverlapCompatibilityTest {
+
+    private final static double SHIFT_TOL = 2.0;
+
+    private static SSCLibrary buildRankedSSCLibrary() throws Exception {
+        final SSCLibrary rankedSSCLibrary = new SSCLibrary(1);
+        rankedSSCLibrary.insert(TestSSCs.buildSSC("CCC", 0, 10.0, 20.0, 30.0));
+        rankedSSCLibrary.insert(TestSSCs.buildSSC("CCC", 1, 11.0, 21.0, 31.0));
+        // the methyl groups match only until sphere 1 because of the double bond
+        rankedSSCLibrary.insert(TestSSCs.buildSSC("C=CC", 2, 120.0, 130.0, 20.0));
+
+        return rankedSSCLibrary;
+    }
+
+    @Test
+    public void testBuild() throws Exception {
+        final OverlapCompatibility overlapCompatibility = OverlapCompatibility.build(buildRankedSSCLibrary(), 2, SHIFT_TOL, 2);
+        assertTrue(overlapCompatibility.isCompatible(0, 1));
+        assertTrue(overlapCompatibility.isCompatible(1, 0));
+        assertFalse(overlapCompatibility.isCompatible(0, 2));
+        assertFalse(overlapCompatibility.isCompatible(2, 1));
+        assertEquals(1, overlapCompatibility.getCompatiblePairsCount());
+        assertEquals(1, overlapCompatibility.getCompatibleSSCIndices(0).cardinality());
+        // with one matching sphere, the methyl groups are enough
+        assertTrue(OverlapCompatibility.build(buildRankedSSCLibrary(), 1, SHIFT_TOL, 2).isCompatible(0, 2));
+    }
+
+    @Test
+    public void testMinMatchingSphereCountAboveMaxSphere() throws Exception {
+        // no atom pair can match in more spheres than the SSCs contain
+        final OverlapCompatibility overlapCompatibility = OverlapCompatibility.build(buildRankedSSCLibrary(), 3, SHIFT_TOL, 1);
+        assertFalse(overlapCompatibility.isCompatible(0, 1));
+        assertEquals(0, overlapCompatibility.getCompatiblePairsCount());
+    }
+
+    @Test
+    public void testBuildAll() {
+        final OverlapCompatibility overlapCompatibility = OverlapCompatibility.buildAll(4);
+        assertTrue(overlapCompatibility.isCompatible(0, 3));
+        assertTrue(overlapCompatibility.isCompatible(2, 1));
+        assertEquals(6, overlapCompatibility.getCompatiblePairsCount());
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2019 Michael Wenk [https://github.com/michaelwenk]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package assembly;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Michael Wenk [https://github.com/michaelwenk]
+ */
+public class SearchBudgetTest {
+
+    @Test
+    public void testNodeLimit() {
+        final SearchBudget searchBudget = new SearchBudget(-1, 3);
+        for (int i = 0; i < 3; i++) {
+            assertTrue(searchBudget.expandNode());
+        }
+        assertFalse(searchBudget.expandNode());
+        assertEquals(3, searchBudget.getExpandedNodesCount());
+        assertTrue(searchBudget.isTruncated());
+        assertFalse(searchBudget.isCancelled());
+    }
+
+    @Test
+    public void testCancel() {
+        final SearchBudget searchBudget = SearchBudget.unlimited();
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(searchBudget.expandNode());
+        }
+        assertFalse(searchBudget.isTruncated());
+        searchBudget.cancel();
+        assertFalse(searchBudget.expandNode());
+        assertTrue(searchBudget.isCancelled());
+        assertTrue(searchBudget.isTruncated());
+        assertEquals(1000, searchBudget.getExpandedNodesCount());
+    }
+
+    @Test
+    public void testInterruptStaysExhausted() {
+        final SearchBudget searchBudget = SearchBudget.unlimited();
+        Thread.currentThread().interrupt();
+        try {
+            assertTrue(searchBudget.isExhausted());
+        } finally {
+            // clears the interrupted flag again
+            Thread.interrupted();
+        }
+        // once exhausted, a budget stays exhausted
+        assertFalse(searchBudget.expandNode());
+        assertTrue(searchBudget.isTruncated());
+    }
+}
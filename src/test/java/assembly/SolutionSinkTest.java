@@ -0,0 +1,116 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2019 Michael Wenk [https://github.com/michaelwenk]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package assembly;
+
+import model.SSC;
+import model.TestSSCs;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Michael Wenk [https://github.com/michaelwenk]
+ */
+public class SolutionSinkTest {
+
+    // linear alkanes with 1 to n carbon atoms
+    private static ArrayList<SSC> buildSolutions(final int n) throws Exception {
+        final ArrayList<SSC> solutions = new ArrayList<>();
+        String smiles = "";
+        double[] shifts;
+        for (int i = 1; i <= n; i++) {
+            smiles += "C";
+            shifts = new double[i];
+            Arrays.fill(shifts, 10.0);
+            solutions.add(TestSSCs.buildSSC(smiles, i - 1, shifts));
+        }
+
+        return solutions;
+    }
+
+    @Test
+    public void testFlushIfDue() throws Exception {
+        final ArrayList<SSC> solutions = buildSolutions(3);
+        final Path path = Files.createTempFile("solutions", ".smiles");
+        final AtomicLong time = new AtomicLong(0);
+        final SolutionSink solutionSink = new SolutionSink(TestSSCs.buildSpectrum(10.0), path.toString(), time::get);
+        try {
+            for (int i = 0; i < solutions.size(); i++) {
+                assertTrue(solutionSink.add(solutions.get(i), i));
+            }
+            // a duplicate keeps the depth of the first solution
+            assertFalse(solutionSink.add(solutions.get(1).getClone(), 5));
+            assertEquals(3, solutionSink.getSolutions().size());
+            for (final Long key : solutionSink.getSolutions().keySet()) {
+                assertEquals(solutionSink.getSolutions().get(key).getAtomCount() - 1, (int) solutionSink.getSolutionDepths().get(key));
+            }
+
+            // the batch is not due yet
+            solutionSink.flushIfDue();
+            assertTrue(Files.readAllLines(path).isEmpty());
+            // the batch is written by the periodic flush without any further solution
+            time.addAndGet(SolutionSink.BATCH_INTERVAL);
+            solutionSink.flushIfDue();
+            assertEquals(Arrays.asList("C 0", "CC 1", "CCC 2"), Files.readAllLines(path));
+        } finally {
+            solutionSink.close();
+            Files.delete(path);
+        }
+    }
+
+    @Test
+    public void testBatchingAndClose() throws Exception {
+        final ArrayList<SSC> solutions = buildSolutions(33);
+        final Path path = Files.createTempFile("solutions", ".smiles");
+        // the time does not advance, so only full batches are written
+        final SolutionSink solutionSink = new SolutionSink(TestSSCs.buildSpectrum(10.0), path.toString(), () -> 0);
+        try {
+            // a full batch is written at once
+            for (int i = 0; i < SolutionSink.BATCH_SIZE; i++) {
+                assertTrue(solutionSink.add(solutions.get(i), 0));
+            }
+            assertEquals(SolutionSink.BATCH_SIZE, Files.readAllLines(path).size());
+            assertTrue(solutionSink.add(solutions.get(32), 0));
+            assertEquals(SolutionSink.BATCH_SIZE, Files.readAllLines(path).size());
+            assertFalse(solutionSink.add(solutions.get(0), 0));
+
+            // the remaining batch is written on close
+            solutionSink.close();
+            assertEquals(33, Files.readAllLines(path).size());
+            assertEquals(33, solutionSink.getSolutions().size());
+            // closing twice is harmless
+            solutionSink.close();
+        } finally {
+            solutionSink.close();
+            Files.delete(path);
+        }
+    }
+
+    @Test
+    public void testWithoutFile() throws Exception {
+        final ArrayList<SSC> solutions = buildSolutions(2);
+        final SolutionSink solutionSink = new SolutionSink(TestSSCs.buildSpectrum(10.0), null);
+        assertTrue(solutionSink.add(solutions.get(0), 0));
+        assertTrue(solutionSink.add(solutions.get(1), 0));
+        assertFalse(solutionSink.add(solutions.get(1), 0));
+        solutionSink.close();
+        assertEquals(2, solutionSink.getSolutions().size());
+    }
+}
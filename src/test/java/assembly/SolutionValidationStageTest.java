@@ -0,0 +1,71 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2019 Michael Wenk [https://github.com/michaelwenk]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package assembly;
+
+import model.SSC;
+import model.TestSSCs;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Michael Wenk [https://github.com/michaelwenk]
+ */
+public class SolutionValidationStageTest {
+
+    @Test
+    public void testConcurrentSubmissions() throws Exception {
+        // valid: CH2 groups at 10 ppm; invalid: a shift without any query signal
+        final ArrayList<SSC> candidates = new ArrayList<>();
+        candidates.add(TestSSCs.buildSSC("C", 0, 10.0));
+        candidates.add(TestSSCs.buildSSC("CC", 1, 10.0, 10.0));
+        candidates.add(TestSSCs.buildSSC("CC", 2, 10.0, 99.0));
+        final SolutionSink solutionSink = new SolutionSink(TestSSCs.buildSpectrum(10.0, 10.0), null);
+        final AssemblyStatistics assemblyStatistics = new AssemblyStatistics(1);
+        // one validation thread, so that the submitting threads have to wait for free permits
+        final SolutionValidationStage solutionValidationStage = new SolutionValidationStage(TestSSCs.buildSpectrum(10.0, 10.0), 1.0, 1.0, 1, solutionSink, assemblyStatistics);
+        final int submissionsPerThread = 100;
+        final ExecutorService submitters = Executors.newFixedThreadPool(4);
+        for (int t = 0; t < 4; t++) {
+            submitters.execute(() -> {
+                for (int i = 0; i < submissionsPerThread; i++) {
+                    solutionValidationStage.submit(candidates.get(i % candidates.size()), i % candidates.size());
+                }
+            });
+        }
+        submitters.shutdown();
+        assertTrue(submitters.awaitTermination(30, TimeUnit.SECONDS));
+        solutionValidationStage.close();
+        solutionSink.close();
+
+        assertEquals(4 * submissionsPerThread, solutionValidationStage.getSubmittedCount());
+        // every third submission is the invalid candidate
+        assertEquals(4 * 33, solutionValidationStage.getRejectedCount());
+        assertEquals(4 * 33, assemblyStatistics.getPruneCount(AssemblyStatistics.PruneReason.INVALID_FINAL_SSC));
+        assertEquals(2, solutionSink.getSolutions().size());
+    }
+
+    @Test
+    public void testCloseWithoutSubmissions() throws Exception {
+        final SolutionSink solutionSink = new SolutionSink(TestSSCs.buildSpectrum(10.0), null);
+        final SolutionValidationStage solutionValidationStage = new SolutionValidationStage(TestSSCs.buildSpectrum(10.0), 1.0, 1.0, 2, solutionSink, new AssemblyStatistics(1));
+        solutionValidationStage.close();
+        solutionSink.close();
+        assertEquals(0, solutionValidationStage.getSubmittedCount());
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2019 Michael Wenk [https://github.com/michaelwenk]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package assembly;
+
+import model.SSC;
+import model.SSCLibrary;
+import model.TestSSCs;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Michael Wenk [https://github.com/michaelwenk]
+ */
+public class SphereContainmentTest {
+
+    private static SSC buildSSC(final long index, final int maxSphere, final String sourceID, final int sourceAtomIndex) throws Exception {
+        final SSC ssc = TestSSCs.buildSSC("CC", index, 10.0, 20.0);
+        final SSC sscWithMaxSphere = new SSC(ssc.getSubspectrum(), ssc.getAssignments(), ssc.getSubstructure(), 0, maxSphere);
+        sscWithMaxSphere.setIndex(index);
+        sscWithMaxSphere.setSource(sourceID, sourceAtomIndex);
+
+        return sscWithMaxSphere;
+    }
+
+    private static SSCLibrary buildRankedSSCLibrary() throws Exception {
+        final SSCLibrary rankedSSCLibrary = new SSCLibrary(1);
+        rankedSSCLibrary.insert(buildSSC(0, 3, "nmrshiftdb2:1", 0));
+        rankedSSCLibrary.insert(buildSSC(1, 1, "nmrshiftdb2:1", 0));
+        rankedSSCLibrary.insert(buildSSC(2, 2, "nmrshiftdb2:1", 0));
+        // same atom index in another structure
+        rankedSSCLibrary.insert(buildSSC(3, 1, "nmrshiftdb2:2", 0));
+        // no source
+        rankedSSCLibrary.insert(buildSSC(4, 1, null, 0));
+
+        return rankedSSCLibrary;
+    }
+
+    @Test
+    public void testBuild() throws Exception {
+        final SphereContainment sphereContainment = SphereContainment.build(buildRankedSSCLibrary());
+        assertEquals(3, sphereContainment.getLinksCount());
+        assertEquals(new BitSet(), sphereContainment.getContainingSSCIndices(0));
+        final BitSet containingSSCIndices = new BitSet();
+        containingSSCIndices.set(0);
+        containingSSCIndices.set(2);
+        assertEquals(containingSSCIndices, sphereContainment.getContainingSSCIndices(1));
+        assertTrue(sphereContainment.isSubsumed(1, Arrays.asList(3L, 2L)));
+        assertFalse(sphereContainment.isSubsumed(2, Collections.singletonList(1L)));
+        assertFalse(sphereContainment.isSubsumed(3, Arrays.asList(0L, 2L)));
+        assertFalse(sphereContainment.isSubsumed(4, Arrays.asList(0L, 2L)));
+    }
+
+    @Test
+    public void testNone() throws Exception {
+        final SphereContainment sphereContainment = SphereContainment.none((int) buildRankedSSCLibrary().getSSCCount());
+        assertEquals(0, sphereContainment.getLinksCount());
+        assertFalse(sphereContainment.isSubsumed(1, Arrays.asList(0L, 2L)));
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2019 Michael Wenk [https://github.com/michaelwenk]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package assembly;
+
+import casekit.NMR.Utils;
+import casekit.NMR.match.Matcher;
+import casekit.NMR.model.Assignment;
+import casekit.NMR.model.Signal;
+import casekit.NMR.model.Spectrum;
+import model.TestSSCs;
+import org.junit.jupiter.api.Test;
+import start.Start;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the incremental validation against the former full validation of
+ * {@link Assembly#isValidSubspectrum(Spectrum, Spectrum, double, double)},
+ * which matched the whole subspectrum at once.
+ *
+ * @author Michael Wenk [https://github.com/michaelwenk]
+ */
+public class SubspectrumValidatorTest {
+
+    private final static double SHIFT_TOL = 1.0, THRS_MATCH_FACTOR = 1.0;
+
+    private final Spectrum querySpectrum = TestSSCs.buildSpectrum(10.0, 20.0, 30.0, 40.0);
+
+    private static Signal signal(final double shift) {
+        return new Signal(TestSSCs.NUCLEI, new Double[]{shift}, TestSSCs.MULTIPLICITY, null);
+    }
+
+    // former implementation of Assembly.isValidSubspectrum
+    private static boolean isValidSubspectrumBaseline(final Spectrum subspectrum, final Spectrum querySpectrum, final double shiftTol, final double thrsMatchFactor) {
+        if ((subspectrum == null) || (subspectrum.getSignalCount() > querySpectrum.getSignalCount())) {
+            return false;
+        }
+        final Assignment matchAssignments = Matcher.matchSpectra(subspectrum, querySpectrum, 0, 0, shiftTol);
+        if (!matchAssignments.isFullyAssigned(0)) {
+            return false;
+        }
+        for (final int matchedSignalIndexInQuerySpectrum : matchAssignments.getAssignments(0)) {
+            if (Collections.frequency(matchAssignments.getAssignments(0), matchedSignalIndexInQuerySpectrum)
+                    > querySpectrum.getEquivalentSignals(matchedSignalIndexInQuerySpectrum).size() + 1) {
+                return false;
+            }
+        }
+
+        return Utils.roundDouble(Matcher.calculateAverageDeviation(subspectrum, querySpectrum, 0, 0, shiftTol), Start.DECIMAL_PLACES) <= thrsMatchFactor;
+    }
+
+    private void assertSameAsBaseline(final SubspectrumValidator subspectrumValidator, final Spectrum subspectrum) {
+        assertEquals(subspectrum.getSignalCount(), subspectrumValidator.getSignalCount());
+        final boolean isValid = isValidSubspectrumBaseline(subspectrum, this.querySpectrum, SHIFT_TOL, THRS_MATCH_FACTOR);
+        assertEquals(isValid, subspectrumValidator.isValid());
+        assertEquals(isValid, Assembly.isValidSubspectrum(subspectrum, this.querySpectrum, SHIFT_TOL, THRS_MATCH_FACTOR));
+    }
+
+    @Test
+    public void testAddSignals() {
+        final SubspectrumValidator subspectrumValidator = new SubspectrumValidator(this.querySpectrum, SHIFT_TOL, THRS_MATCH_FACTOR);
+        final Spectrum subspectrum = TestSSCs.buildSpectrum();
+        subspectrum.addSignal(signal(10.2));
+        assertTrue(subspectrumValidator.addSignals(subspectrum, 0));
+        assertSameAsBaseline(subspectrumValidator, subspectrum);
+        assertEquals(0.2, subspectrumValidator.getAverageDeviation(), 1e-9);
+
+        subspectrum.addSignal(signal(20.4));
+        subspectrum.addSignal(signal(29.8));
+        assertTrue(subspectrumValidator.addSignals(subspectrum, 1));
+        assertSameAsBaseline(subspectrumValidator, subspectrum);
+
+        // a signal without any matching query signal
+        subspectrum.addSignal(signal(55.0));
+        assertFalse(subspectrumValidator.addSignals(subspectrum, 3));
+        assertSameAsBaseline(subspectrumValidator, subspectrum);
+    }
+
+    @Test
+    public void testRollback() {
+        final SubspectrumValidator subspectrumValidator = new SubspectrumValidator(this.querySpectrum, SHIFT_TOL, THRS_MATCH_FACTOR);
+        final Spectrum subspectrum = TestSSCs.buildSpectrum();
+        subspectrum.addSignal(signal(10.2));
+        subspectrum.addSignal(signal(20.4));
+        subspectrumValidator.addSignals(subspectrum, 0);
+        final double averageDeviation = subspectrumValidator.getAverageDeviation();
+
+        // an unmatched and an overused signal, then back to the first two signals
+        subspectrumValidator.addSignals(Arrays.asList(signal(55.0), signal(10.1)));
+        assertFalse(subspectrumValidator.isValid());
+        subspectrumValidator.rollback(2);
+        assertSameAsBaseline(subspectrumValidator, subspectrum);
+        assertTrue(subspectrumValidator.isValid());
+        assertEquals(averageDeviation, subspectrumValidator.getAverageDeviation(), 1e-9);
+
+        // the same signals again give the same result as a validation from scratch
+        subspectrum.addSignal(signal(10.1));
+        subspectrumValidator.addSignals(subspectrum, 2);
+        assertSameAsBaseline(subspectrumValidator, subspectrum);
+        subspectrumValidator.rollback(0);
+        assertEquals(0, subspectrumValidator.getSignalCount());
+        assertEquals(0.0, subspectrumValidator.getAverageDeviation(), 1e-9);
+    }
+}
@@ -0,0 +1,38 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2019 Michael Wenk [https://github.com/michaelwenk]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package assembly.strategy;
+
+import org.junit.jupiter.api.Test;
+import org.openscience.cdk.exception.CDKException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * @author Michael Wenk [https://github.com/michaelwenk]
+ */
+public class AssemblyStrategyTest {
+
+    @Test
+    public void testFromName() throws CDKException {
+        for (final String name : AssemblyStrategy.NAMES) {
+            assertEquals(name, AssemblyStrategy.fromName(name, 1, 0, 0, 0).getName());
+        }
+        assertEquals("bestfirst", AssemblyStrategy.fromName("BestFirst", 1, 0, 0, 0).getName());
+    }
+
+    @Test
+    public void testFromNameInvalid() {
+        assertThrows(CDKException.class, () -> AssemblyStrategy.fromName("astar", 1, 0, 0, 0));
+        assertThrows(CDKException.class, () -> AssemblyStrategy.fromName("beam", 0, 0, 0, 0));
+    }
+}
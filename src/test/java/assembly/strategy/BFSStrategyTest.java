@@ -0,0 +1,38 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2019 Michael Wenk [https://github.com/michaelwenk]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package assembly.strategy;
+
+import assembly.AssemblyStatistics;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Michael Wenk [https://github.com/michaelwenk]
+ */
+public class BFSStrategyTest {
+
+    @Test
+    public void testDuplicateStates() throws Exception {
+        final TestAssemblyEngine engine = TestAssemblyEngine.create(2, 2);
+        new BFSStrategy(0).assemble(engine);
+        engine.finish();
+        // all intermediates of a level have the same structure, so only the state with the lowest next SSC index is kept
+        assertEquals(Collections.singletonList(TestAssemblyEngine.SOLUTION), engine.getCandidates());
+        assertEquals(Collections.singletonList(2), engine.getCandidateDepths());
+        assertTrue(engine.getAssemblyStatistics().getPruneCount(AssemblyStatistics.PruneReason.DUPLICATE_STATE) > 0);
+        assertEquals(0, engine.getAssemblyStatistics().getPruneCount(AssemblyStatistics.PruneReason.FRONTIER_LIMIT));
+    }
+}
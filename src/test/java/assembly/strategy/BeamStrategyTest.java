@@ -0,0 +1,46 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2019 Michael Wenk [https://github.com/michaelwenk]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package assembly.strategy;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Michael Wenk [https://github.com/michaelwenk]
+ */
+public class BeamStrategyTest {
+
+    @Test
+    public void testBestIntermediatePerDepth() throws Exception {
+        final TestAssemblyEngine engine = TestAssemblyEngine.create(2, 2);
+        new BeamStrategy(1, 0).assemble(engine);
+        engine.finish();
+        // the best intermediate per depth is kept, and all intermediates have the same structure,
+        // so the alternative path is never reached
+        assertEquals(Collections.singletonList(TestAssemblyEngine.SOLUTION), engine.getCandidates());
+        assertEquals(1, engine.getSolutionSink().getSolutions().size());
+    }
+
+    @Test
+    public void testMaxDepth() throws Exception {
+        final TestAssemblyEngine engine = TestAssemblyEngine.create(2, 2);
+        // both candidates need two extensions
+        new BeamStrategy(10, 1).assemble(engine);
+        engine.finish();
+        assertTrue(engine.getCandidates().isEmpty());
+        assertTrue(engine.getSolutionSink().getSolutions().isEmpty());
+    }
+}
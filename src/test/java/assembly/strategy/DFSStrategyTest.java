@@ -0,0 +1,51 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2019 Michael Wenk [https://github.com/michaelwenk]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package assembly.strategy;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Michael Wenk [https://github.com/michaelwenk]
+ */
+public class DFSStrategyTest {
+
+    @Test
+    public void testExhaustive() throws Exception {
+        final TestAssemblyEngine engine = TestAssemblyEngine.create(2, 1);
+        new DFSStrategy().assemble(engine);
+        engine.finish();
+        // both paths are searched in ranking order; the candidates have the same structure
+        assertEquals(Arrays.asList(TestAssemblyEngine.SOLUTION, TestAssemblyEngine.ALTERNATIVE_SOLUTION), engine.getCandidates());
+        assertEquals(Arrays.asList(2, 2), engine.getCandidateDepths());
+        assertEquals(1, engine.getSolutionSink().getSolutions().size());
+    }
+
+    @Test
+    public void testStartSSCIndices() throws Exception {
+        // the start SSC is not the best ranked one, so better ranked SSCs are added too
+        final TestAssemblyEngine engine = TestAssemblyEngine.create(Collections.singletonList(1L), 1);
+        new DFSStrategy().assemble(engine);
+        engine.finish();
+        assertEquals(Collections.singletonList(TestAssemblyEngine.SOLUTION), engine.getCandidates());
+        assertEquals(Collections.singletonList(1L), engine.getStartSSCIndices());
+        // the expanded nodes are counted for the ranked SSC index of the start SSC
+        assertEquals(1L, engine.getAssemblyStatistics().toJson().getAsJsonArray("startSSCIndices").get(0).getAsLong());
+        assertEquals(engine.getAssemblyStatistics().getExpandedNodesCount(), engine.getAssemblyStatistics().toJson().getAsJsonArray("expandedNodesPerStart").get(0).getAsLong());
+        assertTrue(engine.getAssemblyStatistics().getExpandedNodesCount() > 0);
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2019 Michael Wenk [https://github.com/michaelwenk]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package assembly.strategy;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Michael Wenk [https://github.com/michaelwenk]
+ */
+public class IterativeDeepeningStrategyTest {
+
+    @Test
+    public void testDepthLimit() throws Exception {
+        final TestAssemblyEngine engine = TestAssemblyEngine.create(2, 2);
+        new IterativeDeepeningStrategy(0).assemble(engine);
+        engine.finish();
+        // each candidate is submitted only once, in the iteration of its depth
+        assertEquals(Arrays.asList(2, 2), engine.getCandidateDepths());
+        assertEquals(2, engine.getCandidates().size());
+        assertEquals(1, engine.getSolutionSink().getSolutions().size());
+        assertEquals(Integer.valueOf(2), engine.getSolutionSink().getSolutionDepths().values().iterator().next());
+    }
+
+    @Test
+    public void testMaxDepthLimit() throws Exception {
+        final TestAssemblyEngine engine = TestAssemblyEngine.create(2, 2);
+        // both candidates need two extensions
+        new IterativeDeepeningStrategy(1).assemble(engine);
+        engine.finish();
+        assertTrue(engine.getCandidates().isEmpty());
+        assertTrue(engine.getSolutionSink().getSolutions().isEmpty());
+    }
+}
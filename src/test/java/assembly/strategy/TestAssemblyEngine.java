@@ -0,0 +1,162 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2019 Michael Wenk [https://github.com/michaelwenk]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package assembly.strategy;
+
+import assembly.Assembly;
+import assembly.AssemblyEngine;
+import assembly.AssemblyStatistics;
+import assembly.DepictionStage;
+import assembly.OverlapCompatibility;
+import assembly.SearchBudget;
+import assembly.SolutionSink;
+import assembly.SolutionValidationStage;
+import assembly.SphereContainment;
+import assembly.SubspectrumValidator;
+import casekit.NMR.model.Spectrum;
+import model.SSC;
+import model.SSCLibrary;
+import model.TestSSCs;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Assembly engine for strategy tests with a synthetic extension instead of
+ * {@link Assembly#assemblyCore}: each ranked SSC is a single carbon atom
+ * and an extension appends it to the carbon chain of the intermediate, if
+ * the extended subspectrum is still valid. <br>
+ * The query spectrum is 10, 20, 30 ppm; the ranked SSCs have the shifts
+ * 10, 20, 30, 21 and 99 ppm. So the only final SSC candidates are the
+ * chains with the shifts 10, 20, 30 (path 0, 1, 2) and 10, 30, 21
+ * (path 0, 2, 3), both at depth 2. Both have the same structure.
+ *
+ * @author Michael Wenk [https://github.com/michaelwenk]
+ */
+public class TestAssemblyEngine extends AssemblyEngine {
+
+    public final static String SOLUTION = "10.0, 20.0, 30.0", ALTERNATIVE_SOLUTION = "10.0, 21.0, 30.0";
+
+    private final static double SHIFT_TOL = 1.0, THRS_MATCH_FACTOR = 1.0;
+    private final static double[] SHIFTS = new double[]{10.0, 20.0, 30.0, 21.0, 99.0};
+
+    private final SSCLibrary rankedSSCLibrary;
+    private final SolutionValidationStage solutionValidationStage;
+    private final SolutionSink solutionSink;
+    // sorted shifts and depth of each submitted final SSC candidate, in order of submission
+    private final List<String> candidates;
+    private final List<Integer> candidateDepths;
+
+    private TestAssemblyEngine(final SSCLibrary rankedSSCLibrary, final List<Long> startSSCIndices, final Spectrum querySpectrum, final SearchBudget searchBudget,
+                               final SolutionSink solutionSink, final SolutionValidationStage solutionValidationStage, final AssemblyStatistics assemblyStatistics, final int nThreads) {
+        super(rankedSSCLibrary, startSSCIndices, 1, querySpectrum, THRS_MATCH_FACTOR, SHIFT_TOL, searchBudget, DepictionStage.disabled(),
+                OverlapCompatibility.buildAll((int) rankedSSCLibrary.getSSCCount()), SphereContainment.build(rankedSSCLibrary), null, solutionValidationStage, assemblyStatistics, nThreads);
+        this.rankedSSCLibrary = rankedSSCLibrary;
+        this.solutionSink = solutionSink;
+        this.solutionValidationStage = solutionValidationStage;
+        this.candidates = Collections.synchronizedList(new ArrayList<>());
+        this.candidateDepths = Collections.synchronizedList(new ArrayList<>());
+    }
+
+    /**
+     * Creates an engine with an unlimited search budget and the first ranked
+     * SSCs as start SSCs.
+     *
+     * @param nStarts number of start SSCs
+     * @param nThreads number of threads
+     * @return
+     * @throws Exception
+     */
+    public static TestAssemblyEngine create(final long nStarts, final int nThreads) throws Exception {
+        final List<Long> startSSCIndices = new ArrayList<>();
+        for (long i = 0; i < nStarts; i++) {
+            startSSCIndices.add(i);
+        }
+
+        return TestAssemblyEngine.create(startSSCIndices, nThreads);
+    }
+
+    /**
+     * Creates an engine with an unlimited search budget.
+     *
+     * @param startSSCIndices ranked SSC indices of the start SSCs
+     * @param nThreads number of threads
+     * @return
+     * @throws Exception
+     */
+    public static TestAssemblyEngine create(final List<Long> startSSCIndices, final int nThreads) throws Exception {
+        final SSCLibrary rankedSSCLibrary = new SSCLibrary(1);
+        for (int i = 0; i < SHIFTS.length; i++) {
+            rankedSSCLibrary.insert(TestSSCs.buildSSC("C", i, SHIFTS[i]));
+        }
+        final Spectrum querySpectrum = TestSSCs.buildSpectrum(10.0, 20.0, 30.0);
+        final AssemblyStatistics assemblyStatistics = new AssemblyStatistics(startSSCIndices);
+        final SolutionSink solutionSink = new SolutionSink(querySpectrum, null);
+
+        return new TestAssemblyEngine(rankedSSCLibrary, startSSCIndices, querySpectrum, SearchBudget.unlimited(), solutionSink,
+                new SolutionValidationStage(querySpectrum, SHIFT_TOL, THRS_MATCH_FACTOR, 1, solutionSink, assemblyStatistics), assemblyStatistics, nThreads);
+    }
+
+    @Override
+    public SSC extend(final SSC intermediate, final long sscIndex, final SubspectrumValidator subspectrumValidator) throws Exception {
+        final double[] shifts = new double[intermediate.getSubspectrum().getSignalCount() + 1];
+        String smiles = "";
+        for (int i = 0; i < shifts.length - 1; i++) {
+            shifts[i] = intermediate.getSubspectrum().getShift(i, 0);
+            smiles += "C";
+        }
+        shifts[shifts.length - 1] = this.rankedSSCLibrary.getSSC(sscIndex).getSubspectrum().getShift(0, 0);
+        final SSC newIntermediate = TestSSCs.buildSSC(smiles + "C", -1, shifts);
+        if (!Assembly.isValidSubspectrum(newIntermediate.getSubspectrum(), this.getQuerySpectrum(), SHIFT_TOL, THRS_MATCH_FACTOR)) {
+            return null;
+        }
+
+        return newIntermediate;
+    }
+
+    @Override
+    public boolean submitIfFinalSSCCandidate(final SSC intermediate, final int depth) {
+        if (!this.isFinalSSCCandidate(intermediate)) {
+            return false;
+        }
+        synchronized (this.candidates) {
+            this.candidates.add(intermediate.getSubspectrum().getShifts(0).stream().sorted().map(String::valueOf).collect(Collectors.joining(", ")));
+            this.candidateDepths.add(depth);
+        }
+
+        return super.submitIfFinalSSCCandidate(intermediate, depth);
+    }
+
+    /**
+     * Waits for the validation of all candidates and closes this engine.
+     *
+     * @throws Exception
+     */
+    public void finish() throws Exception {
+        this.close();
+        this.solutionValidationStage.close();
+        this.solutionSink.close();
+    }
+
+    public List<String> getCandidates() {
+        return this.candidates;
+    }
+
+    public List<Integer> getCandidateDepths() {
+        return this.candidateDepths;
+    }
+
+    public SolutionSink getSolutionSink() {
+        return this.solutionSink;
+    }
+}
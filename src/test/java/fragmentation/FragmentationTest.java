@@ -0,0 +1,36 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2019 Michael Wenk [https://github.com/michaelwenk]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package fragmentation;
+
+import model.TestSSCs;
+import org.junit.jupiter.api.Test;
+import org.openscience.cdk.interfaces.IAtomContainer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * @author Michael Wenk [https://github.com/michaelwenk]
+ */
+public class FragmentationTest {
+
+    @Test
+    public void testGetSourceID() throws Exception {
+        final IAtomContainer structure = TestSSCs.parse("CCO");
+        // the index restarts with each SDF file, so it is qualified by the file name
+        assertEquals("nmrshiftdb_2.sdf:3", Fragmentation.getSourceID(structure, "nmrshiftdb_2.sdf", 3));
+        assertNull(Fragmentation.getSourceID(structure, null, 3));
+        // the NMRShiftDB ID is unique across files
+        structure.setProperty(Fragmentation.NMRSHIFTDB_ID_PROPERTY, "20019528");
+        assertEquals("nmrshiftdb2:20019528", Fragmentation.getSourceID(structure, "nmrshiftdb_2.sdf", 3));
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2019 Michael Wenk [https://github.com/michaelwenk]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package model;
+
+import casekit.NMR.model.Signal;
+import org.junit.jupiter.api.Test;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IBond;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * @author Michael Wenk [https://github.com/michaelwenk]
+ */
+public class SSCTest {
+
+    // appends a carbon atom with a signal to the last atom of the SSC's substructure
+    private static void appendCarbon(final SSC ssc, final double shift) {
+        final IAtomContainer substructure = ssc.getSubstructure();
+        final IAtom atom = substructure.getBuilder().newInstance(IAtom.class, "C");
+        atom.setImplicitHydrogenCount(2);
+        substructure.addAtom(atom);
+        substructure.addBond(substructure.getAtomCount() - 2, substructure.getAtomCount() - 1, IBond.Order.SINGLE);
+        ssc.getSubspectrum().addSignal(new Signal(TestSSCs.NUCLEI, new Double[]{shift}, "D", 1.0));
+        ssc.getAssignments().addAssignment(new int[]{substructure.getAtomCount() - 1});
+    }
+
+    @Test
+    public void testIncrementalUpdate() throws Exception {
+        final SSC ssc = TestSSCs.buildSSC("CCC", 0, 10.0, 20.0, 30.0);
+        appendCarbon(ssc, 42.0);
+        ssc.update(Arrays.asList(2, 3));
+
+        final SSC expected = TestSSCs.buildSSC("CCC", 0, 10.0, 20.0, 30.0);
+        appendCarbon(expected, 42.0);
+        expected.update();
+
+        assertEquals(expected.getMultiplicitySections(), ssc.getMultiplicitySections());
+        assertEquals(Arrays.asList(12), ssc.getMultiplicitySections().get("D"));
+        assertEquals(Arrays.asList(6, 8, 10), ssc.getMultiplicitySections().get("T"));
+        assertEquals(expected.getUnsaturatedAtomIndices(), ssc.getUnsaturatedAtomIndices());
+        for (int i = 0; i < ssc.getAtomCount(); i++) {
+            for (int s = 0; s <= ssc.getMaxSphere(); s++) {
+                assertEquals(expected.getHOSECode(i, s), ssc.getHOSECode(i, s));
+            }
+        }
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2019 Michael Wenk [https://github.com/michaelwenk]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package model;
+
+import org.junit.jupiter.api.Test;
+import org.openscience.cdk.interfaces.IAtomContainer;
+
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+/**
+ * @author Michael Wenk [https://github.com/michaelwenk]
+ */
+public class StructureHashTest {
+
+    @Test
+    public void testPermutationInvariance() throws Exception {
+        final IAtomContainer ac1 = TestSSCs.parse("CC(O)C(=O)CC=C");
+        final IAtomContainer ac2 = TestSSCs.parse("C=CCC(=O)C(O)C");
+        final IAtomContainer ac3 = TestSSCs.parse("OC(C)C(CC=C)=O");
+        assertEquals(StructureHash.calculate(ac1), StructureHash.calculate(ac2));
+        assertEquals(StructureHash.calculate(ac1), StructureHash.calculate(ac3));
+        // same atoms and bond count but different connectivity
+        assertNotEquals(StructureHash.calculate(ac1), StructureHash.calculate(TestSSCs.parse("CC(O)CC(=O)C=C")));
+    }
+
+    @Test
+    public void testBondOrders() throws Exception {
+        assertEquals(StructureHash.calculate(TestSSCs.parse("CC=CC")), StructureHash.calculate(TestSSCs.parse("C(C)=CC")));
+        assertNotEquals(StructureHash.calculate(TestSSCs.parse("CC=CC")), StructureHash.calculate(TestSSCs.parse("C=CCC")));
+        assertNotEquals(StructureHash.calculate(TestSSCs.parse("CCCC")), StructureHash.calculate(TestSSCs.parse("CC=CC")));
+    }
+
+    @Test
+    public void testSymmetryClasses() throws Exception {
+        final IAtomContainer ac = TestSSCs.parse("C1CC1.C1CCCCC1");
+        // all atoms have two ring neighbors, so the refinement can not split them
+        final long[] atomClasses = StructureHash.calculateAtomClasses(ac, null);
+        assertEquals(atomClasses[0], atomClasses[3]);
+        final long[] symmetryClasses = StructureHash.calculateSymmetryClasses(ac, null);
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, symmetryClasses[i]);
+        }
+        for (int i = 3; i < 9; i++) {
+            assertEquals(3, symmetryClasses[i]);
+        }
+        // additional invariants split the orbits
+        final long[] symmetryClassesWithInvariants = StructureHash.calculateSymmetryClasses(ac, new long[]{1, 2, 1, 0, 0, 0, 0, 0, 0});
+        assertEquals(0, symmetryClassesWithInvariants[0]);
+        assertEquals(1, symmetryClassesWithInvariants[1]);
+        assertEquals(0, symmetryClassesWithInvariants[2]);
+    }
+
+    @Test
+    public void testSymmetryClassesPermutationInvariance() throws Exception {
+        // 2-butanol in two atom orders: CH3 groups are not equivalent
+        final long[] symmetryClasses1 = StructureHash.calculateSymmetryClasses(TestSSCs.parse("CC(O)CC"), null);
+        final long[] symmetryClasses2 = StructureHash.calculateSymmetryClasses(TestSSCs.parse("CCC(O)C"), null);
+        assertNotEquals(symmetryClasses1[0], symmetryClasses1[4]);
+        assertNotEquals(symmetryClasses2[0], symmetryClasses2[4]);
+        // 3-pentanol: both ethyl groups are equivalent
+        final long[] symmetryClasses3 = StructureHash.calculateSymmetryClasses(TestSSCs.parse("CCC(O)CC"), null);
+        assertEquals(symmetryClasses3[0], symmetryClasses3[5]);
+        assertEquals(symmetryClasses3[1], symmetryClasses3[4]);
+    }
+
+    @Test
+    public void testStructureMapConfirmsHashCollisions() throws Exception {
+        // decalin and bicyclopentyl can not be distinguished by the refinement
+        final IAtomContainer decalin = TestSSCs.parse("C1CCC2CCCCC2C1");
+        final IAtomContainer bicyclopentyl = TestSSCs.parse("C1CCC(C1)C1CCCC1");
+        assertEquals(StructureHash.calculate(decalin), StructureHash.calculate(bicyclopentyl));
+
+        final StructureMap<IAtomContainer> structureMap = new StructureMap<>(Function.identity());
+        final long key = structureMap.getKey(decalin);
+        structureMap.put(key, decalin);
+        assertNotEquals(key, structureMap.getKey(bicyclopentyl));
+        assertEquals(key, structureMap.getKey(TestSSCs.parse("C1CCC2CCCCC2C1")));
+        structureMap.put(structureMap.getKey(bicyclopentyl), bicyclopentyl);
+        assertEquals(2, structureMap.size());
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2019 Michael Wenk [https://github.com/michaelwenk]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package model;
+
+import casekit.NMR.model.Assignment;
+import casekit.NMR.model.Signal;
+import casekit.NMR.model.Spectrum;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.silent.SilentChemObjectBuilder;
+import org.openscience.cdk.smiles.SmilesParser;
+
+/**
+ * Helper to build small SSCs and spectra for tests.
+ *
+ * @author Michael Wenk [https://github.com/michaelwenk]
+ */
+public class TestSSCs {
+
+    public final static String[] NUCLEI = new String[]{"13C"};
+    public final static String MULTIPLICITY = "T";
+
+    public static IAtomContainer parse(final String smiles) throws Exception {
+        return new SmilesParser(SilentChemObjectBuilder.getInstance()).parseSmiles(smiles);
+    }
+
+    /**
+     * Builds a spectrum with one signal per shift.
+     *
+     * @param shifts
+     * @return
+     */
+    public static Spectrum buildSpectrum(final double... shifts) {
+        final Spectrum spectrum = new Spectrum(NUCLEI);
+        for (final double shift : shifts) {
+            spectrum.addSignal(new Signal(NUCLEI, new Double[]{shift}, MULTIPLICITY, 1.0));
+        }
+        spectrum.detectEquivalences();
+
+        return spectrum;
+    }
+
+    /**
+     * Builds an SSC from a SMILES with root atom 0 and max. sphere 2; the
+     * shifts are assigned to the carbon atoms in atom order.
+     *
+     * @param smiles substructure
+     * @param index SSC index
+     * @param shifts one shift per carbon atom
+     * @return
+     * @throws Exception
+     */
+    public static SSC buildSSC(final String smiles, final long index, final double... shifts) throws Exception {
+        final IAtomContainer substructure = TestSSCs.parse(smiles);
+        final Spectrum subspectrum = new Spectrum(NUCLEI);
+        final Assignment assignment = new Assignment(subspectrum);
+        int signalIndex = 0;
+        for (int i = 0; i < substructure.getAtomCount(); i++) {
+            if (substructure.getAtom(i).getSymbol().equals("C")) {
+                subspectrum.addSignal(new Signal(NUCLEI, new Double[]{shifts[signalIndex]}, MULTIPLICITY, 1.0));
+                assignment.addAssignment(new int[]{i});
+                signalIndex++;
+            }
+        }
+        subspectrum.detectEquivalences();
+        final SSC ssc = new SSC(subspectrum, assignment, substructure, 0, 2);
+        ssc.setIndex(index);
+
+        return ssc;
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2019 Michael Wenk [https://github.com/michaelwenk]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package search;
+
+import model.SSCLibrary;
+import model.TestSSCs;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * @author Michael Wenk [https://github.com/michaelwenk]
+ */
+public class HitClassCollapserTest {
+
+    @Test
+    public void testCollapse() throws Exception {
+        final SSCLibrary rankedSSCLibrary = new SSCLibrary(1);
+        rankedSSCLibrary.insert(TestSSCs.buildSSC("CC(C)O", 0, 25.0, 64.0, 25.0));
+        // same structure in another atom order and within shift tolerance
+        rankedSSCLibrary.insert(TestSSCs.buildSSC("OC(C)C", 1, 64.0, 25.5, 25.5));
+        // shift of the CH carbon out of shift tolerance
+        rankedSSCLibrary.insert(TestSSCs.buildSSC("CC(C)O", 2, 25.0, 70.0, 25.0));
+        // other structure
+        rankedSSCLibrary.insert(TestSSCs.buildSSC("CCO", 3, 18.0, 58.0));
+        rankedSSCLibrary.insert(TestSSCs.buildSSC("CC(C)O", 4, 25.4, 64.0, 25.0));
+
+        final HitClassCollapser hitClassCollapser = new HitClassCollapser(rankedSSCLibrary);
+        hitClassCollapser.collapse(1.0);
+        assertEquals(Arrays.asList(Arrays.asList(0L, 1L, 4L), Collections.singletonList(2L), Collections.singletonList(3L)), hitClassCollapser.getHitClasses());
+        // the representatives keep the ranked order and get new indices
+        final SSCLibrary representatives = hitClassCollapser.getRepresentatives();
+        assertEquals(3, representatives.getSSCCount());
+        assertEquals(Double.valueOf(70.0), representatives.getSSC(1).getSubspectrum().getShift(1, 0));
+        assertEquals(1L, (long) representatives.getSSC(1).getIndex());
+        assertEquals(1, hitClassCollapser.toJson(null).getAsJsonArray("collapsedHitClasses").size());
+    }
+
+    @Test
+    public void testSymmetryClasses() throws Exception {
+        final SSCLibrary rankedSSCLibrary = new SSCLibrary(1);
+        // 2-butanol: the CH3 groups are not equivalent, so swapping their shifts leads to another class
+        rankedSSCLibrary.insert(TestSSCs.buildSSC("CC(O)CC", 0, 23.0, 69.0, 32.0, 10.0));
+        rankedSSCLibrary.insert(TestSSCs.buildSSC("CC(O)CC", 1, 10.0, 69.0, 32.0, 23.0));
+        // 3-pentanol: both ethyl groups are equivalent
+        rankedSSCLibrary.insert(TestSSCs.buildSSC("CCC(O)CC", 2, 10.0, 30.0, 74.0, 29.5, 10.5));
+        rankedSSCLibrary.insert(TestSSCs.buildSSC("CCC(O)CC", 3, 10.5, 29.5, 74.0, 30.0, 10.0));
+
+        final HitClassCollapser hitClassCollapser = new HitClassCollapser(rankedSSCLibrary);
+        hitClassCollapser.collapse(0.1);
+        assertEquals(Arrays.asList(Collections.singletonList(0L), Collections.singletonList(1L), Arrays.asList(2L, 3L)), hitClassCollapser.getHitClasses());
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2019 Michael Wenk [https://github.com/michaelwenk]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package search;
+
+import casekit.NMR.model.Spectrum;
+import model.SSCLibrary;
+import model.TestSSCs;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * @author Michael Wenk [https://github.com/michaelwenk]
+ */
+public class HitSetCoverTest {
+
+    private final static double SHIFT_TOL = 1.0;
+
+    private final Spectrum querySpectrum = TestSSCs.buildSpectrum(10.0, 20.0, 30.0, 40.0);
+
+    private static SSCLibrary buildRankedSSCLibrary() throws Exception {
+        final SSCLibrary rankedSSCLibrary = new SSCLibrary(1);
+        rankedSSCLibrary.insert(TestSSCs.buildSSC("C", 0, 40.0));
+        rankedSSCLibrary.insert(TestSSCs.buildSSC("CC", 1, 10.0, 20.0));
+        rankedSSCLibrary.insert(TestSSCs.buildSSC("CC", 2, 30.0, 40.0));
+        rankedSSCLibrary.insert(TestSSCs.buildSSC("CCC", 3, 10.0, 20.0, 30.0));
+        // covers no query signal
+        rankedSSCLibrary.insert(TestSSCs.buildSSC("C", 4, 55.0));
+
+        return rankedSSCLibrary;
+    }
+
+    @Test
+    public void testSingleCover() throws Exception {
+        final SSCLibrary rankedSSCLibrary = buildRankedSSCLibrary();
+        final HitSetCover hitSetCover = new HitSetCover(rankedSSCLibrary);
+        hitSetCover.select(this.querySpectrum, SHIFT_TOL, 1);
+        // the largest hit first, then the better ranked one of two hits with equal gain; the selection is in ranked order
+        assertEquals(Arrays.asList(0L, 3L), hitSetCover.getSelectedSSCIndices());
+        assertEquals(2, hitSetCover.getSelectedCount());
+        // ranked order with new indices
+        assertEquals(2, hitSetCover.getSelection().getSSCCount());
+        for (int i = 0; i < hitSetCover.getSelectedCount(); i++) {
+            assertEquals(i, hitSetCover.getSelection().getSSC(i).getIndex());
+            assertEquals(rankedSSCLibrary.getSSC(hitSetCover.getSelectedSSCIndices().get(i)).getAtomCount(), hitSetCover.getSelection().getSSC(i).getAtomCount());
+        }
+    }
+
+    @Test
+    public void testRedundancy() throws Exception {
+        final HitSetCover hitSetCover = new HitSetCover(buildRankedSSCLibrary());
+        // each query signal is covered by exactly two hits
+        hitSetCover.select(this.querySpectrum, SHIFT_TOL, 2);
+        assertEquals(Arrays.asList(0L, 1L, 2L, 3L), hitSetCover.getSelectedSSCIndices());
+        // the selection is rebuilt on each call
+        hitSetCover.select(this.querySpectrum, SHIFT_TOL, 1);
+        assertEquals(Arrays.asList(0L, 3L), hitSetCover.getSelectedSSCIndices());
+        assertEquals(2, hitSetCover.getSelection().getSSCCount());
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2019 Michael Wenk [https://github.com/michaelwenk]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package search;
+
+import casekit.NMR.model.Spectrum;
+import model.SSCLibrary;
+import model.TestSSCs;
+import org.junit.jupiter.api.Test;
+import org.openscience.cdk.exception.CDKException;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * @author Michael Wenk [https://github.com/michaelwenk]
+ */
+public class StartSSCSelectorTest {
+
+    private final static double SHIFT_TOL = 1.0;
+
+    private final Spectrum querySpectrum = TestSSCs.buildSpectrum(10.0, 20.0, 30.0);
+
+    private static SSCLibrary buildRankedSSCLibrary() throws Exception {
+        final SSCLibrary rankedSSCLibrary = new SSCLibrary(1);
+        rankedSSCLibrary.insert(TestSSCs.buildSSC("CC", 0, 10.0, 20.0));
+        // same root HOSE code as hit 0
+        rankedSSCLibrary.insert(TestSSCs.buildSSC("CC", 1, 10.0, 20.0));
+        // new root HOSE code and new signal
+        rankedSSCLibrary.insert(TestSSCs.buildSSC("CCC", 2, 10.0, 20.0, 30.0));
+        // new root HOSE code only
+        rankedSSCLibrary.insert(TestSSCs.buildSSC("CCO", 3, 10.0, 20.0));
+        // same root HOSE code as hit 3
+        rankedSSCLibrary.insert(TestSSCs.buildSSC("CCO", 4, 10.0, 20.0));
+
+        return rankedSSCLibrary;
+    }
+
+    @Test
+    public void testRank() throws Exception {
+        final StartSSCSelector startSSCSelector = new StartSSCSelector(buildRankedSSCLibrary());
+        startSSCSelector.select("rank", this.querySpectrum, SHIFT_TOL, 2, 3);
+        assertEquals(Arrays.asList(0L, 1L, 2L), startSSCSelector.getStartSSCIndices());
+    }
+
+    @Test
+    public void testDiverse() throws Exception {
+        final SSCLibrary rankedSSCLibrary = buildRankedSSCLibrary();
+        final StartSSCSelector startSSCSelector = new StartSSCSelector(rankedSSCLibrary);
+        // first pass: hits 0 and 2, second pass: hit 3
+        startSSCSelector.select("diverse", this.querySpectrum, SHIFT_TOL, 2, 3);
+        assertEquals(Arrays.asList(0L, 2L, 3L), startSSCSelector.getStartSSCIndices());
+        // the ranked SSC library itself is not reordered
+        for (int i = 0; i < 5; i++) {
+            assertEquals(i, rankedSSCLibrary.getSSC(i).getIndex());
+        }
+
+        // third pass: the remaining hits in ranked order
+        startSSCSelector.select("DIVERSE", this.querySpectrum, SHIFT_TOL, 2, 4);
+        assertEquals(Arrays.asList(0L, 1L, 2L, 3L), startSSCSelector.getStartSSCIndices());
+        startSSCSelector.select("diverse", this.querySpectrum, SHIFT_TOL, 2, 2);
+        assertEquals(Arrays.asList(0L, 2L), startSSCSelector.getStartSSCIndices());
+    }
+
+    @Test
+    public void testRootSphere() throws Exception {
+        final StartSSCSelector startSSCSelector = new StartSSCSelector(buildRankedSSCLibrary());
+        // all hits have the same root HOSE code at sphere 1
+        startSSCSelector.select("diverse", this.querySpectrum, SHIFT_TOL, 1, 3);
+        assertEquals(Arrays.asList(0L, 1L, 2L), startSSCSelector.getStartSSCIndices());
+    }
+
+    @Test
+    public void testUnknownPolicy() {
+        assertThrows(CDKException.class, () -> StartSSCSelector.checkPolicy("random"));
+        assertThrows(CDKException.class, () -> new StartSSCSelector(new SSCLibrary(1)).select("random", this.querySpectrum, SHIFT_TOL, 2, 1));
+    }
+}